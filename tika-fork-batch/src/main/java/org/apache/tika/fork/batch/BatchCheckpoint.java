@@ -0,0 +1,75 @@
+package org.apache.tika.fork.batch;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The documents that a batch crawl has finished, so that a crawl that is restarted skips them.
+ * <p>
+ * The checkpoint is a file with a line per document, its status and its path relative to the input directory
+ * separated by a tab. A line is appended and flushed once the outputs of the document are written, so a document
+ * that was being parsed when the crawl stopped is parsed again. A partly written last line never matches a path.
+ */
+public class BatchCheckpoint implements Closeable {
+  static final String STATUS_PARSED = "PARSED";
+  static final String STATUS_FAILED = "FAILED";
+  private static final char SEPARATOR = '\t';
+
+  private final Set<String> done = ConcurrentHashMap.newKeySet();
+  private final BufferedWriter writer;
+
+  /**
+   * Reads the documents that are done from the file if it exists, and appends to it.
+   */
+  public BatchCheckpoint(Path file) throws IOException {
+    if (Files.exists(file)) {
+      try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          int separator = line.indexOf(SEPARATOR);
+          if (separator > 0) {
+            done.add(line.substring(separator + 1));
+          }
+        }
+      }
+    }
+    writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+        StandardOpenOption.APPEND);
+  }
+
+  /**
+   * @return whether the document was parsed, or failed, in this or an earlier crawl.
+   */
+  public boolean isDone(String relativePath) {
+    return done.contains(relativePath);
+  }
+
+  /**
+   * @return the number of documents that are done.
+   */
+  public int size() {
+    return done.size();
+  }
+
+  public synchronized void markDone(String relativePath, boolean failed) throws IOException {
+    writer.write(failed ? STATUS_FAILED : STATUS_PARSED);
+    writer.write(SEPARATOR);
+    writer.write(relativePath);
+    writer.newLine();
+    writer.flush();
+    done.add(relativePath);
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    writer.close();
+  }
+}
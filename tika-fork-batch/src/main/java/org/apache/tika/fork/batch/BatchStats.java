@@ -0,0 +1,83 @@
+package org.apache.tika.fork.batch;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the documents of a batch crawl and the throughput of the parses.
+ */
+public class BatchStats {
+  private final long startNanos = System.nanoTime();
+  private final AtomicLong numParsed = new AtomicLong();
+  private final AtomicLong numFailed = new AtomicLong();
+  private final AtomicLong numSkipped = new AtomicLong();
+  private final AtomicLong numBytesParsed = new AtomicLong();
+
+  void parsed(long numBytes) {
+    numParsed.incrementAndGet();
+    numBytesParsed.addAndGet(numBytes);
+  }
+
+  void failed() {
+    numFailed.incrementAndGet();
+  }
+
+  void skipped() {
+    numSkipped.incrementAndGet();
+  }
+
+  /**
+   * @return the number of documents parsed in this crawl.
+   */
+  public long getNumParsed() {
+    return numParsed.get();
+  }
+
+  /**
+   * @return the number of documents whose parse failed in this crawl.
+   */
+  public long getNumFailed() {
+    return numFailed.get();
+  }
+
+  /**
+   * @return the number of documents skipped since the checkpoint has them from an earlier crawl.
+   */
+  public long getNumSkipped() {
+    return numSkipped.get();
+  }
+
+  /**
+   * @return the size of the documents parsed in this crawl.
+   */
+  public long getNumBytesParsed() {
+    return numBytesParsed.get();
+  }
+
+  public long getElapsedMs() {
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+  }
+
+  /**
+   * @return the parsed and failed documents per second since the crawl started.
+   */
+  public double getDocumentsPerSecond() {
+    return perSecond(numParsed.get() + numFailed.get());
+  }
+
+  public double getBytesPerSecond() {
+    return perSecond(numBytesParsed.get());
+  }
+
+  private double perSecond(long count) {
+    long elapsedMs = getElapsedMs();
+    return elapsedMs == 0 ? 0 : count * 1000.0 / elapsedMs;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("parsed=%d, failed=%d, skipped=%d, docs/s=%.1f, MB/s=%.2f, elapsed=%d s",
+        getNumParsed(), getNumFailed(), getNumSkipped(), getDocumentsPerSecond(),
+        getBytesPerSecond() / (1024 * 1024), getElapsedMs() / 1000);
+  }
+}
@@ -0,0 +1,368 @@
+package org.apache.tika.fork.batch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.tika.client.ParseStreams;
+import org.apache.tika.client.TikaProcessPool;
+import org.apache.tika.detect.DefaultDetector;
+import org.apache.tika.detect.Detector;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.utils.ExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Parses all files under a directory with a {@link TikaProcessPool}, into a text file and a metadata file per
+ * document in an output directory with the same layout.
+ * <p>
+ * The crawl is a pipeline of stages connected by bounded queues, so that a stage that falls behind slows down the
+ * stages before it instead of piling up documents in memory:
+ * <ul>
+ * <li>walk: directories are listed in parallel, and documents that the checkpoint has are skipped,</li>
+ * <li>detect: the content type of each document is detected from its name and first bytes,</li>
+ * <li>parse: a thread per fork of the pool parses the documents, writing the content straight to its file,</li>
+ * <li>write: the metadata is written as JSON and the document is added to the {@link BatchCheckpoint}.</li>
+ * </ul>
+ * A document whose parse fails gets an error file with the stack trace instead of the content and metadata files,
+ * and is not parsed again when the crawl is restarted. The throughput is logged periodically and returned as
+ * {@link BatchStats}.
+ */
+public class TikaBatchCrawler {
+  private static final Logger LOG = LoggerFactory.getLogger(TikaBatchCrawler.class);
+
+  static final String CONTENT_SUFFIX = ".txt";
+  static final String METADATA_SUFFIX = ".metadata.json";
+  static final String ERROR_SUFFIX = ".error.txt";
+  static final String CHECKPOINT_FILE = "tikafork-batch.checkpoint";
+
+  /**
+   * Documents that each stage may queue per parse thread, enough to keep the forks busy.
+   */
+  private static final int QUEUED_DOCUMENTS_PER_PARSE_THREAD = 2;
+  private static final long FAILURE_CHECK_MS = 100;
+
+  private final TikaProcessPool tikaProcessPool;
+  private final Path inputDirectory;
+  private final Path outputDirectory;
+  private final int numParseThreads;
+  private final int numWalkThreads;
+  private final long abortAfterMs;
+  private final long maxBytesToParse;
+  private final long reportIntervalMs;
+  private final Detector detector = new DefaultDetector();
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  /**
+   * A document as it moves through the stages.
+   */
+  private static class Document {
+    private static final Document END = new Document(null, null);
+
+    final Path path;
+    final String relativePath;
+    String contentType;
+    long length;
+    Metadata metadata;
+    Exception exception;
+
+    Document(Path path, String relativePath) {
+      this.path = path;
+      this.relativePath = relativePath;
+    }
+  }
+
+  /**
+   * @param tikaProcessPool  parses the documents. Its forks should have <code>parseContent</code> set.
+   * @param inputDirectory   the directory to crawl
+   * @param outputDirectory  where the outputs and the checkpoint are written, outside of the input directory
+   * @param numParseThreads  documents parsed at the same time, the number of forks of the pool
+   * @param numWalkThreads   directories listed and documents detected at the same time
+   * @param abortAfterMs     see {@link TikaProcessPool#parse}
+   * @param maxBytesToParse  see {@link TikaProcessPool#parse}
+   * @param reportIntervalMs how often the throughput is logged
+   */
+  public TikaBatchCrawler(TikaProcessPool tikaProcessPool,
+                          Path inputDirectory,
+                          Path outputDirectory,
+                          int numParseThreads,
+                          int numWalkThreads,
+                          long abortAfterMs,
+                          long maxBytesToParse,
+                          long reportIntervalMs) {
+    this.tikaProcessPool = tikaProcessPool;
+    this.inputDirectory = inputDirectory.toAbsolutePath().normalize();
+    this.outputDirectory = outputDirectory.toAbsolutePath().normalize();
+    if (this.outputDirectory.startsWith(this.inputDirectory)) {
+      throw new IllegalArgumentException("The output directory " + outputDirectory
+          + " must not be in the input directory " + inputDirectory);
+    }
+    if (numParseThreads < 1 || numWalkThreads < 1) {
+      throw new IllegalArgumentException("The crawl needs at least one parse thread and one walk thread");
+    }
+    this.numParseThreads = numParseThreads;
+    this.numWalkThreads = numWalkThreads;
+    this.abortAfterMs = abortAfterMs;
+    this.maxBytesToParse = maxBytesToParse;
+    this.reportIntervalMs = reportIntervalMs;
+  }
+
+  /**
+   * Parses the documents that are not in the checkpoint yet.
+   *
+   * @return the counts and throughput of this crawl
+   * @throws Exception if a stage failed for another reason than a document that could not be parsed, e.g. because
+   *                   an output could not be written. The crawl can be restarted from the checkpoint.
+   */
+  public BatchStats crawl() throws Exception {
+    if (!Files.isDirectory(inputDirectory)) {
+      throw new IOException("The input directory " + inputDirectory + " does not exist");
+    }
+    Files.createDirectories(outputDirectory);
+    try (BatchCheckpoint checkpoint = new BatchCheckpoint(outputDirectory.resolve(CHECKPOINT_FILE))) {
+      LOG.info("Crawling {} into {}, {} documents are done from an earlier crawl", inputDirectory, outputDirectory,
+          checkpoint.size());
+      BatchStats stats = new Crawl(checkpoint).run();
+      LOG.info("Finished the crawl of {}: {}", inputDirectory, stats);
+      return stats;
+    }
+  }
+
+  /**
+   * The stages of one crawl and the queues between them.
+   */
+  private class Crawl {
+    private final BatchCheckpoint checkpoint;
+    private final BatchStats stats = new BatchStats();
+    private final int queueCapacity = numParseThreads * QUEUED_DOCUMENTS_PER_PARSE_THREAD;
+    private final BlockingQueue<Document> detectQueue = new ArrayBlockingQueue<>(queueCapacity);
+    private final BlockingQueue<Document> parseQueue = new ArrayBlockingQueue<>(queueCapacity);
+    private final BlockingQueue<Document> writeQueue = new ArrayBlockingQueue<>(queueCapacity);
+    private final ExecutorService walkExecutor = Executors.newFixedThreadPool(numWalkThreads,
+        threadFactory("tikafork-batch-walk"));
+    private final ExecutorService stageExecutor = Executors.newCachedThreadPool(threadFactory("tikafork-batch"));
+    private final ScheduledExecutorService reportExecutor = Executors.newSingleThreadScheduledExecutor(
+        threadFactory("tikafork-batch-report"));
+    private final AtomicInteger numPendingDirectories = new AtomicInteger();
+    private final CountDownLatch walked = new CountDownLatch(1);
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    Crawl(BatchCheckpoint checkpoint) {
+      this.checkpoint = checkpoint;
+    }
+
+    BatchStats run() throws Exception {
+      try {
+        reportExecutor.scheduleAtFixedRate(() -> LOG.info("Crawling {}: {}, queued to detect={}, parse={}, write={}",
+            inputDirectory, stats, detectQueue.size(), parseQueue.size(), writeQueue.size()),
+            reportIntervalMs, reportIntervalMs, TimeUnit.MILLISECONDS);
+        List<Future<?>> detectFutures = startStage(numWalkThreads, this::detect);
+        List<Future<?>> parseFutures = startStage(numParseThreads, this::parse);
+        List<Future<?>> writeFutures = startStage(1, this::write);
+
+        walk(inputDirectory);
+        while (!walked.await(FAILURE_CHECK_MS, TimeUnit.MILLISECONDS)) {
+          checkFailure();
+        }
+        // Each stage finishes its queue before the next one is told that no more documents come.
+        endStage(detectQueue, detectFutures);
+        endStage(parseQueue, parseFutures);
+        endStage(writeQueue, writeFutures);
+        return stats;
+      } finally {
+        reportExecutor.shutdownNow();
+        walkExecutor.shutdownNow();
+        stageExecutor.shutdownNow();
+      }
+    }
+
+    private void walk(Path directory) {
+      numPendingDirectories.incrementAndGet();
+      walkExecutor.submit(() -> {
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+          for (Path entry : entries) {
+            // Linked directories are not followed, so that links cannot make the walk loop.
+            if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+              walk(entry);
+            } else if (Files.isRegularFile(entry)) {
+              String relativePath = inputDirectory.relativize(entry).toString().replace(File.separatorChar, '/');
+              if (checkpoint.isDone(relativePath)) {
+                stats.skipped();
+              } else {
+                detectQueue.put(new Document(entry, relativePath));
+              }
+            }
+          }
+        } catch (IOException e) {
+          LOG.warn("Could not list the directory {}", directory, e);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+          fail(e);
+        } finally {
+          if (numPendingDirectories.decrementAndGet() == 0) {
+            walked.countDown();
+          }
+        }
+      });
+    }
+
+    private void detect() throws Exception {
+      Document document;
+      while ((document = detectQueue.take()) != Document.END) {
+        Metadata metadata = new Metadata();
+        metadata.set(Metadata.RESOURCE_NAME_KEY, document.path.getFileName().toString());
+        try (TikaInputStream stream = TikaInputStream.get(document.path)) {
+          document.contentType = detector.detect(stream, metadata).toString();
+        } catch (IOException e) {
+          // The parse fails too if the file cannot be read, and reports it.
+          LOG.debug("Could not detect the content type of {}", document.path, e);
+          document.contentType = "";
+        }
+        parseQueue.put(document);
+      }
+    }
+
+    private void parse() throws Exception {
+      Document document;
+      while ((document = parseQueue.take()) != Document.END) {
+        Path contentFile = outputFile(document, CONTENT_SUFFIX);
+        try {
+          Files.createDirectories(contentFile.getParent());
+          document.length = Files.size(document.path);
+          try (InputStream contentInputStream = ParseStreams.open(document.path);
+               OutputStream contentOutputStream = ParseStreams.create(contentFile)) {
+            document.metadata = tikaProcessPool.parse(document.path.toString(), document.contentType,
+                contentInputStream, contentOutputStream, abortAfterMs, maxBytesToParse);
+          }
+        } catch (InterruptedException e) {
+          throw e;
+        } catch (Exception e) {
+          document.exception = e;
+        }
+        writeQueue.put(document);
+      }
+    }
+
+    private void write() throws Exception {
+      Document document;
+      while ((document = writeQueue.take()) != Document.END) {
+        if (document.exception == null) {
+          writeMetadata(document.metadata, outputFile(document, METADATA_SUFFIX));
+          Files.deleteIfExists(outputFile(document, ERROR_SUFFIX));
+          stats.parsed(document.length);
+        } else {
+          LOG.warn("Could not parse {}", document.path, document.exception);
+          Files.deleteIfExists(outputFile(document, CONTENT_SUFFIX));
+          Files.deleteIfExists(outputFile(document, METADATA_SUFFIX));
+          Files.write(outputFile(document, ERROR_SUFFIX),
+              ExceptionUtils.getStackTrace(document.exception).getBytes(StandardCharsets.UTF_8));
+          stats.failed();
+        }
+        checkpoint.markDone(document.relativePath, document.exception != null);
+      }
+    }
+
+    private List<Future<?>> startStage(int numThreads, Stage stage) {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < numThreads; ++i) {
+        futures.add(stageExecutor.submit(() -> {
+          try {
+            stage.run();
+          } catch (Exception e) {
+            fail(e);
+            throw e;
+          }
+          return null;
+        }));
+      }
+      return futures;
+    }
+
+    private void endStage(BlockingQueue<Document> queue, List<Future<?>> futures) throws Exception {
+      for (int i = 0; i < futures.size(); ++i) {
+        while (!queue.offer(Document.END, FAILURE_CHECK_MS, TimeUnit.MILLISECONDS)) {
+          checkFailure();
+        }
+      }
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException e) {
+          checkFailure();
+          throw e;
+        }
+      }
+    }
+
+    /**
+     * Stops all stages, since the stages before a failed one would wait for it forever.
+     */
+    private void fail(Throwable t) {
+      if (failure.compareAndSet(null, t)) {
+        walkExecutor.shutdownNow();
+        stageExecutor.shutdownNow();
+      }
+    }
+
+    private void checkFailure() throws Exception {
+      Throwable t = failure.get();
+      if (t != null) {
+        throw new IOException("The crawl of " + inputDirectory + " failed", t);
+      }
+    }
+  }
+
+  /**
+   * A stage that takes documents from its queue until it gets {@link Document#END}.
+   */
+  private interface Stage {
+    void run() throws Exception;
+  }
+
+  private Path outputFile(Document document, String suffix) {
+    return outputDirectory.resolve(document.relativePath + suffix);
+  }
+
+  private void writeMetadata(Metadata metadata, Path file) throws IOException {
+    Map<String, Object> fields = new TreeMap<>();
+    for (String name : metadata.names()) {
+      String[] values = metadata.getValues(name);
+      fields.put(name, values.length == 1 ? values[0] : values);
+    }
+    objectMapper.writeValue(file.toFile(), fields);
+  }
+
+  private static ThreadFactory threadFactory(String name) {
+    return r -> {
+      Thread thread = new Thread(r, name);
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+}
@@ -0,0 +1,87 @@
+package org.apache.tika.fork.batch;
+
+import org.apache.tika.client.TikaProcessPool;
+import org.kohsuke.args4j.CmdLineParser;
+import org.kohsuke.args4j.Option;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileReader;
+import java.nio.file.Paths;
+import java.util.Properties;
+
+/**
+ * Crawls a directory with a pool of forks, see {@link TikaBatchCrawler}. Run it again with the same output directory
+ * to resume a crawl that was stopped.
+ */
+public class TikaBatchMain {
+  private static final Logger LOG = LoggerFactory.getLogger(TikaBatchMain.class);
+
+  @Option(name = "-inputDirectoryPath", required = true, usage = "The directory with the documents to parse.")
+  private String inputDirectoryPath;
+  @Option(name = "-outputDirectoryPath", required = true, usage = "The directory that the text and metadata of each document and the checkpoint of the crawl are written to. Must not be in the input directory.")
+  private String outputDirectoryPath;
+  @Option(name = "-workDirectoryPath", required = true, usage = "The work directory of the fork pool.")
+  private String workDirectoryPath;
+  @Option(name = "-tikaDistPath", required = true, usage = "The directory of the tika-fork-main distribution.")
+  private String tikaDistPath;
+  @Option(name = "-parserPropertiesFilePath", usage = "The parse properties of the forks. parseContent is set unless the file sets it.")
+  private String parserPropertiesFilePath;
+  @Option(name = "-javaPath", usage = "The java executable that the forks run with.")
+  private String javaPath = "java";
+  @Option(name = "-tikaMaxHeapSizeMb", usage = "The maximum heap size of each fork.")
+  private int tikaMaxHeapSizeMb = 512;
+  @Option(name = "-numForks", usage = "The number of forks, and of documents parsed at the same time.")
+  private int numForks = Runtime.getRuntime().availableProcessors();
+  @Option(name = "-numWalkThreads", usage = "The number of directories listed and documents detected at the same time.")
+  private int numWalkThreads = 2;
+  @Option(name = "-abortAfterMs", usage = "How long a document may take to parse.")
+  private long abortAfterMs = 300000L;
+  @Option(name = "-maxBytesToParse", usage = "The maximum size of the text of a document.")
+  private long maxBytesToParse = 10L * 1024 * 1024;
+  @Option(name = "-reportIntervalMs", usage = "How often the throughput is logged.")
+  private long reportIntervalMs = 30000L;
+
+  private BatchStats run() throws Exception {
+    Properties parseProperties = new Properties();
+    if (parserPropertiesFilePath != null) {
+      try (FileReader fr = new FileReader(parserPropertiesFilePath)) {
+        parseProperties.load(fr);
+      }
+    }
+    // The crawl writes the text of each document.
+    if (!parseProperties.containsKey("parseContent")) {
+      parseProperties.setProperty("parseContent", "true");
+    }
+    try (TikaProcessPool tikaProcessPool = new TikaProcessPool(javaPath,
+        workDirectoryPath,
+        tikaDistPath,
+        tikaMaxHeapSizeMb,
+        parseProperties,
+        0,
+        -1,
+        numForks,
+        true,
+        abortAfterMs,
+        30000,
+        -1,
+        -1)) {
+      return new TikaBatchCrawler(tikaProcessPool,
+          Paths.get(inputDirectoryPath),
+          Paths.get(outputDirectoryPath),
+          numForks,
+          numWalkThreads,
+          abortAfterMs,
+          maxBytesToParse,
+          reportIntervalMs).crawl();
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    TikaBatchMain tikaBatchMain = new TikaBatchMain();
+    CmdLineParser cmdLineParser = new CmdLineParser(tikaBatchMain);
+    cmdLineParser.parseArgument(args);
+    BatchStats stats = tikaBatchMain.run();
+    LOG.info("Crawled {}: {}", tikaBatchMain.inputDirectoryPath, stats);
+  }
+}
@@ -0,0 +1,39 @@
+package org.apache.tika.fork.batch;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class BatchCheckpointTest {
+
+  @Test
+  public void testResume() throws Exception {
+    File dir = new File("build", "test_checkpoint");
+    FileUtils.deleteQuietly(dir);
+    dir.mkdirs();
+    Path file = new File(dir, "checkpoint").toPath();
+    try {
+      try (BatchCheckpoint checkpoint = new BatchCheckpoint(file)) {
+        Assert.assertFalse(checkpoint.isDone("a/b.pdf"));
+        checkpoint.markDone("a/b.pdf", false);
+        checkpoint.markDone("c d.doc", true);
+        Assert.assertTrue(checkpoint.isDone("a/b.pdf"));
+      }
+      // The crawl stopped while it wrote a line.
+      Files.write(file, "PARSED\ta/e".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+      try (BatchCheckpoint checkpoint = new BatchCheckpoint(file)) {
+        Assert.assertTrue(checkpoint.isDone("a/b.pdf"));
+        Assert.assertTrue(checkpoint.isDone("c d.doc"));
+        Assert.assertFalse(checkpoint.isDone("a/e.txt"));
+      }
+    } finally {
+      FileUtils.deleteQuietly(dir);
+    }
+  }
+}
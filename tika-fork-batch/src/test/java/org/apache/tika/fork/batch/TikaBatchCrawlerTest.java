@@ -0,0 +1,92 @@
+package org.apache.tika.fork.batch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.io.FileUtils;
+import org.apache.tika.client.TikaProcessPool;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Properties;
+
+public class TikaBatchCrawlerTest {
+  private String tikaDistPath = ".." + File.separator + "tika-fork-main" + File.separator + "build" + File.separator + "dist";
+  private String testFilesPath = ".." + File.separator + "tika-fork-client" + File.separator + "test-files";
+  private File inputDirectory = new File("build", "test_batch_input");
+  private File outputDirectory = new File("build", "test_batch_output");
+
+  @Before
+  public void init() throws Exception {
+    FileUtils.deleteQuietly(inputDirectory);
+    FileUtils.deleteQuietly(outputDirectory);
+    FileUtils.copyFile(new File(testFilesPath, "pdf-sample.pdf"), new File(inputDirectory, "pdf-sample.pdf"));
+    FileUtils.copyFile(new File(testFilesPath, "html-sample.html"), new File(inputDirectory, "a/html-sample.html"));
+    FileUtils.copyFile(new File(testFilesPath, "xls-sample.xls"), new File(inputDirectory, "a/b/xls-sample.xls"));
+    FileUtils.writeStringToFile(new File(inputDirectory, "a/b/c/notes.txt"), "Some notes", "UTF-8");
+  }
+
+  @After
+  public void cleanup() {
+    FileUtils.deleteQuietly(inputDirectory);
+    FileUtils.deleteQuietly(outputDirectory);
+  }
+
+  @Test
+  public void testCrawlAndResume() throws Exception {
+    Properties parseProperties = new Properties();
+    parseProperties.setProperty("parseContent", "true");
+    try (TikaProcessPool tikaProcessPool = new TikaProcessPool("java",
+        System.getProperty("java.io.tmpdir"),
+        tikaDistPath,
+        200,
+        parseProperties,
+        0,
+        -1,
+        2,
+        true,
+        30000,
+        3000,
+        -1,
+        -1)) {
+      BatchStats stats = crawler(tikaProcessPool).crawl();
+      Assert.assertEquals(4, stats.getNumParsed());
+      Assert.assertEquals(0, stats.getNumFailed());
+      Assert.assertEquals(0, stats.getNumSkipped());
+      String notes = new String(Files.readAllBytes(output("a/b/c/notes.txt" + TikaBatchCrawler.CONTENT_SUFFIX)),
+          StandardCharsets.UTF_8);
+      Assert.assertEquals("Some notes", notes.trim());
+      Map<?, ?> metadata = new ObjectMapper().readValue(
+          output("a/b/xls-sample.xls" + TikaBatchCrawler.METADATA_SUFFIX).toFile(), Map.class);
+      Assert.assertEquals("application/vnd.ms-excel", metadata.get("Content-Type"));
+      Assert.assertTrue(Files.size(output("pdf-sample.pdf" + TikaBatchCrawler.CONTENT_SUFFIX)) > 0);
+
+      // A restarted crawl only parses what is not in the checkpoint.
+      FileUtils.writeStringToFile(new File(inputDirectory, "a/more-notes.txt"), "More notes", "UTF-8");
+      stats = crawler(tikaProcessPool).crawl();
+      Assert.assertEquals(1, stats.getNumParsed());
+      Assert.assertEquals(4, stats.getNumSkipped());
+      Assert.assertTrue(Files.exists(output("a/more-notes.txt" + TikaBatchCrawler.METADATA_SUFFIX)));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testOutputInInput() {
+    new TikaBatchCrawler(null, inputDirectory.toPath(), new File(inputDirectory, "out").toPath(), 1, 1, 30000L, 1000L,
+        1000L);
+  }
+
+  private TikaBatchCrawler crawler(TikaProcessPool tikaProcessPool) {
+    return new TikaBatchCrawler(tikaProcessPool, inputDirectory.toPath(), outputDirectory.toPath(), 2, 2, 30000L,
+        10L * 1024 * 1024, 1000L);
+  }
+
+  private Path output(String relativePath) {
+    return outputDirectory.toPath().resolve(relativePath);
+  }
+}
@@ -0,0 +1,201 @@
+package org.apache.tika.fork.benchmarks;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+import org.apache.tika.fork.main.ExtendedHtmlMapper;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.html.HtmlMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Representative HTML, PDF and DOCX documents, generated with a fixed seed so that every run replays the same events:
+ * a web page with navigation, links, lists and a table, a text-heavy report of several pages, and a Word document
+ * with headings, styled runs and a table.
+ */
+public class BenchmarkDocuments {
+  public static final String HTML = "html";
+  public static final String PDF = "pdf";
+  public static final String DOCX = "docx";
+
+  public static final String BASE_URI = "http://www.example.com/docs/page.html";
+
+  private static final String[] WORDS = {"the", "fork", "parser", "content", "document", "metadata", "stream", "of",
+      "and", "a", "to", "pool", "handler", "text", "in", "is", "with", "for", "page", "link"};
+
+  /**
+   * The events of a document, and for HTML the calls to the HTML mapper, as the fork's parser produces them.
+   */
+  public static class Recording {
+    private final SaxEventStream events;
+    private final HtmlMapperCalls htmlMapperCalls;
+
+    Recording(SaxEventStream events, HtmlMapperCalls htmlMapperCalls) {
+      this.events = events;
+      this.htmlMapperCalls = htmlMapperCalls;
+    }
+
+    public SaxEventStream getEvents() {
+      return events;
+    }
+
+    public HtmlMapperCalls getHtmlMapperCalls() {
+      return htmlMapperCalls;
+    }
+  }
+
+  /**
+   * Parses the document with the parsers of the fork, with {@link ExtendedHtmlMapper} like the fork, and records what
+   * the handlers and the mapper get.
+   */
+  public static Recording record(String document) throws Exception {
+    byte[] content;
+    String contentType;
+    switch (document) {
+      case HTML:
+        content = html().getBytes(StandardCharsets.UTF_8);
+        contentType = "text/html";
+        break;
+      case PDF:
+        content = pdf();
+        contentType = "application/pdf";
+        break;
+      case DOCX:
+        content = docx();
+        contentType = "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown document " + document);
+    }
+    HtmlMapperCalls htmlMapperCalls = new HtmlMapperCalls();
+    ParseContext context = new ParseContext();
+    context.set(HtmlMapper.class, htmlMapperCalls.recording(ExtendedHtmlMapper.INSTANCE));
+    Metadata metadata = new Metadata();
+    metadata.set(Metadata.CONTENT_TYPE, contentType);
+    SaxEventStream.Recorder recorder = SaxEventStream.recorder();
+    new AutoDetectParser().parse(new ByteArrayInputStream(content), recorder, metadata, context);
+    return new Recording(recorder.getEvents(), htmlMapperCalls);
+  }
+
+  static String html() {
+    Random random = new Random(42);
+    StringBuilder html = new StringBuilder();
+    html.append("<!DOCTYPE html><html><head><meta charset=\"UTF-8\"><title>Benchmark page</title>")
+        .append("<meta name=\"description\" content=\"A page for the handler benchmarks\">")
+        .append("<link rel=\"stylesheet\" href=\"/css/site.css\">")
+        .append("<script>var tracking = {id: 42}; function track() { return tracking; }</script>")
+        .append("<style>body { font-family: sans-serif; }</style></head><body>");
+    html.append("<header><nav><ul>");
+    for (int i = 0; i < 30; ++i) {
+      html.append("<li><a href=\"/section/").append(i).append("\" title=\"Section ").append(i).append("\">")
+          .append(words(random, 2)).append("</a></li>");
+    }
+    html.append("</ul></nav></header><article><h1>").append(words(random, 6)).append("</h1>");
+    for (int i = 0; i < 60; ++i) {
+      html.append("<h2 id=\"h").append(i).append("\">").append(words(random, 4)).append("</h2><p>")
+          .append(words(random, 40)).append(" <a href=\"http://other.example.org/doc/").append(i)
+          .append("?ref=page#part\">").append(words(random, 3)).append("</a> <b>").append(words(random, 3))
+          .append("</b> <span class=\"note\">").append(words(random, 12)).append("</span> <em>")
+          .append(words(random, 2)).append("</em> ").append(words(random, 30)).append("</p>");
+      if (i % 10 == 0) {
+        html.append("<div class=\"figure\"><img src=\"/img/").append(i).append(".png\" alt=\"")
+            .append(words(random, 3)).append("\"><small>").append(words(random, 8)).append("</small></div>")
+            .append("<table><tr><th>Name</th><th>Value</th></tr>");
+        for (int row = 0; row < 10; ++row) {
+          html.append("<tr><td>").append(words(random, 2)).append("</td><td>").append(random.nextInt(10000))
+              .append("</td></tr>");
+        }
+        html.append("</table><ul>");
+        for (int item = 0; item < 8; ++item) {
+          html.append("<li>").append(words(random, 10)).append("</li>");
+        }
+        html.append("</ul>");
+      }
+    }
+    html.append("</article><footer><p>").append(words(random, 20)).append("</p>")
+        .append("<a href=\"mailto:info@example.com\">Contact</a></footer></body></html>");
+    return html.toString();
+  }
+
+  static byte[] pdf() throws IOException {
+    Random random = new Random(42);
+    try (PDDocument document = new PDDocument()) {
+      for (int page = 0; page < 10; ++page) {
+        PDPage pdPage = new PDPage();
+        document.addPage(pdPage);
+        try (PDPageContentStream contentStream = new PDPageContentStream(document, pdPage)) {
+          contentStream.beginText();
+          contentStream.setFont(PDType1Font.HELVETICA_BOLD, 14);
+          contentStream.newLineAtOffset(50, 740);
+          contentStream.showText(words(random, 6));
+          contentStream.setFont(PDType1Font.HELVETICA, 10);
+          contentStream.setLeading(13);
+          for (int line = 0; line < 50; ++line) {
+            contentStream.newLine();
+            contentStream.showText(words(random, 14));
+          }
+          contentStream.endText();
+        }
+      }
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      document.save(bytes);
+      return bytes.toByteArray();
+    }
+  }
+
+  static byte[] docx() throws IOException {
+    Random random = new Random(42);
+    try (XWPFDocument document = new XWPFDocument()) {
+      document.getProperties().getCoreProperties().setTitle("Benchmark document");
+      for (int section = 0; section < 20; ++section) {
+        XWPFParagraph heading = document.createParagraph();
+        heading.setStyle("Heading1");
+        heading.createRun().setText(words(random, 5));
+        for (int i = 0; i < 6; ++i) {
+          XWPFParagraph paragraph = document.createParagraph();
+          paragraph.createRun().setText(words(random, 30) + " ");
+          XWPFRun bold = paragraph.createRun();
+          bold.setBold(true);
+          bold.setText(words(random, 3) + " ");
+          XWPFRun italic = paragraph.createRun();
+          italic.setItalic(true);
+          italic.setText(words(random, 20));
+        }
+        if (section % 4 == 0) {
+          XWPFTable table = document.createTable(6, 3);
+          for (int row = 0; row < 6; ++row) {
+            for (int cell = 0; cell < 3; ++cell) {
+              table.getRow(row).getCell(cell).setText(words(random, 2));
+            }
+          }
+        }
+      }
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      document.write(bytes);
+      return bytes.toByteArray();
+    }
+  }
+
+  private static String words(Random random, int numWords) {
+    StringBuilder words = new StringBuilder();
+    for (int i = 0; i < numWords; ++i) {
+      if (i > 0) {
+        words.append(' ');
+      }
+      words.append(WORDS[random.nextInt(WORDS.length)]);
+    }
+    return words.toString();
+  }
+}
@@ -0,0 +1,80 @@
+package org.apache.tika.fork.benchmarks;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.commons.io.output.NullWriter;
+import org.apache.tika.fork.main.TikaBodyContentHandler;
+import org.apache.tika.fork.main.TikaLinkContentHandler;
+import org.apache.tika.fork.main.TikaParsingHandler;
+import org.apache.tika.fork.main.TikaStreamingBodyContentHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.SAXException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays the recorded SAX events of a document through each of the fork's handlers. A handler is created per
+ * operation like the fork does per document, and writes to a sink that discards the text, so an operation measures
+ * one document through the handler. Run with the GC profiler, see the <code>jmh</code> task, for the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandlerBenchmark {
+
+  @Param({BenchmarkDocuments.HTML, BenchmarkDocuments.PDF, BenchmarkDocuments.DOCX})
+  public String document;
+
+  private SaxEventStream events;
+
+  @Setup
+  public void setup() throws Exception {
+    events = BenchmarkDocuments.record(document).getEvents();
+  }
+
+  @Benchmark
+  public TikaBodyContentHandler bodyContentHandler() throws SAXException {
+    TikaBodyContentHandler handler = new TikaBodyContentHandler(new NullWriter());
+    events.replay(handler);
+    return handler;
+  }
+
+  @Benchmark
+  public TikaStreamingBodyContentHandler streamingBodyContentHandler() throws SAXException {
+    TikaStreamingBodyContentHandler handler = new TikaStreamingBodyContentHandler(new NullWriter(), -1);
+    events.replay(handler);
+    return handler;
+  }
+
+  @Benchmark
+  public TikaLinkContentHandler linkContentHandler() throws SAXException {
+    TikaLinkContentHandler handler = new TikaLinkContentHandler(BenchmarkDocuments.BASE_URI, true);
+    events.replay(handler);
+    return handler;
+  }
+
+  /**
+   * The handler chain of the fork when links are extracted: the body handler and the link handler behind the
+   * parsing handler.
+   */
+  @Benchmark
+  public TikaParsingHandler parsingHandler() throws SAXException {
+    TikaParsingHandler handler = new TikaParsingHandler(BenchmarkDocuments.BASE_URI, new NullOutputStream(),
+        new TikaStreamingBodyContentHandler(new NullWriter(), -1),
+        new TikaLinkContentHandler(BenchmarkDocuments.BASE_URI, true));
+    events.replay(handler);
+    return handler;
+  }
+}
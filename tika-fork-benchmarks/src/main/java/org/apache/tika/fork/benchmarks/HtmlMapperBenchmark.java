@@ -0,0 +1,47 @@
+package org.apache.tika.fork.benchmarks;
+
+import org.apache.tika.fork.main.ExtendedHtmlMapper;
+import org.apache.tika.parser.html.DefaultHtmlMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays the calls that the HTML parser made to its mapper for the HTML document, on {@link ExtendedHtmlMapper} and
+ * on the {@link DefaultHtmlMapper} that it delegates to as the baseline. Only HTML documents go through a mapper.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HtmlMapperBenchmark {
+
+  private HtmlMapperCalls calls;
+
+  @Setup
+  public void setup() throws Exception {
+    calls = BenchmarkDocuments.record(BenchmarkDocuments.HTML).getHtmlMapperCalls();
+  }
+
+  @Benchmark
+  public void extendedHtmlMapper(Blackhole blackhole) {
+    calls.replay(ExtendedHtmlMapper.INSTANCE, blackhole);
+  }
+
+  @Benchmark
+  public void defaultHtmlMapper(Blackhole blackhole) {
+    calls.replay(DefaultHtmlMapper.INSTANCE, blackhole);
+  }
+}
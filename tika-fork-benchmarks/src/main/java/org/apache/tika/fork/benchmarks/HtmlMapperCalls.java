@@ -0,0 +1,79 @@
+package org.apache.tika.fork.benchmarks;
+
+import org.apache.tika.parser.html.HtmlMapper;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The calls that the HTML parser made to its {@link HtmlMapper} for a document, recorded by wrapping the mapper so
+ * that other mappers can be measured with the same calls.
+ */
+public class HtmlMapperCalls {
+  private static final byte MAP_SAFE_ELEMENT = 0;
+  private static final byte MAP_SAFE_ATTRIBUTE = 1;
+  private static final byte IS_DISCARD_ELEMENT = 2;
+
+  private final List<Byte> types = new ArrayList<>();
+  private final List<String[]> arguments = new ArrayList<>();
+
+  /**
+   * @return a mapper that delegates to the given one and records each call.
+   */
+  public HtmlMapper recording(HtmlMapper mapper) {
+    return new HtmlMapper() {
+      @Override
+      public String mapSafeElement(String name) {
+        add(MAP_SAFE_ELEMENT, name, null);
+        return mapper.mapSafeElement(name);
+      }
+
+      @Override
+      public boolean isDiscardElement(String name) {
+        add(IS_DISCARD_ELEMENT, name, null);
+        return mapper.isDiscardElement(name);
+      }
+
+      @Override
+      public String mapSafeAttribute(String elementName, String attributeName) {
+        add(MAP_SAFE_ATTRIBUTE, elementName, attributeName);
+        return mapper.mapSafeAttribute(elementName, attributeName);
+      }
+    };
+  }
+
+  private synchronized void add(byte type, String name, String attributeName) {
+    types.add(type);
+    arguments.add(new String[] {name, attributeName});
+  }
+
+  /**
+   * Makes the recorded calls on the mapper and consumes the results.
+   */
+  public void replay(HtmlMapper mapper, Blackhole blackhole) {
+    for (int i = 0; i < types.size(); ++i) {
+      String[] args = arguments.get(i);
+      switch (types.get(i)) {
+        case MAP_SAFE_ELEMENT:
+          blackhole.consume(mapper.mapSafeElement(args[0]));
+          break;
+        case MAP_SAFE_ATTRIBUTE:
+          blackhole.consume(mapper.mapSafeAttribute(args[0], args[1]));
+          break;
+        case IS_DISCARD_ELEMENT:
+          blackhole.consume(mapper.isDiscardElement(args[0]));
+          break;
+        default:
+          throw new IllegalStateException("Unknown call type " + types.get(i));
+      }
+    }
+  }
+
+  /**
+   * @return the number of calls.
+   */
+  public int size() {
+    return types.size();
+  }
+}
@@ -0,0 +1,163 @@
+package org.apache.tika.fork.benchmarks;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The SAX events that a parser sent for a document, recorded once so that the handlers can be measured without the
+ * parser. Character events keep their own copy of the characters and are replayed with the whole array.
+ */
+public class SaxEventStream {
+  private static final byte START_DOCUMENT = 0;
+  private static final byte END_DOCUMENT = 1;
+  private static final byte START_PREFIX_MAPPING = 2;
+  private static final byte END_PREFIX_MAPPING = 3;
+  private static final byte START_ELEMENT = 4;
+  private static final byte END_ELEMENT = 5;
+  private static final byte CHARACTERS = 6;
+  private static final byte IGNORABLE_WHITESPACE = 7;
+
+  private final byte[] types;
+  private final Object[][] arguments;
+  private final long numCharacters;
+
+  private SaxEventStream(byte[] types, Object[][] arguments, long numCharacters) {
+    this.types = types;
+    this.arguments = arguments;
+    this.numCharacters = numCharacters;
+  }
+
+  /**
+   * @return a handler that records the events it gets, see {@link Recorder#getEvents()}.
+   */
+  public static Recorder recorder() {
+    return new Recorder();
+  }
+
+  /**
+   * Sends the events to the handler in the order they were recorded.
+   */
+  public void replay(ContentHandler handler) throws SAXException {
+    for (int i = 0; i < types.length; ++i) {
+      Object[] args = arguments[i];
+      switch (types[i]) {
+        case START_DOCUMENT:
+          handler.startDocument();
+          break;
+        case END_DOCUMENT:
+          handler.endDocument();
+          break;
+        case START_PREFIX_MAPPING:
+          handler.startPrefixMapping((String) args[0], (String) args[1]);
+          break;
+        case END_PREFIX_MAPPING:
+          handler.endPrefixMapping((String) args[0]);
+          break;
+        case START_ELEMENT:
+          handler.startElement((String) args[0], (String) args[1], (String) args[2], (Attributes) args[3]);
+          break;
+        case END_ELEMENT:
+          handler.endElement((String) args[0], (String) args[1], (String) args[2]);
+          break;
+        case CHARACTERS:
+          char[] ch = (char[]) args[0];
+          handler.characters(ch, 0, ch.length);
+          break;
+        case IGNORABLE_WHITESPACE:
+          char[] whitespace = (char[]) args[0];
+          handler.ignorableWhitespace(whitespace, 0, whitespace.length);
+          break;
+        default:
+          throw new IllegalStateException("Unknown event type " + types[i]);
+      }
+    }
+  }
+
+  /**
+   * @return the number of events.
+   */
+  public int size() {
+    return types.length;
+  }
+
+  /**
+   * @return the number of characters in the character and whitespace events.
+   */
+  public long getNumCharacters() {
+    return numCharacters;
+  }
+
+  public static class Recorder extends DefaultHandler {
+    private final List<Byte> types = new ArrayList<>();
+    private final List<Object[]> arguments = new ArrayList<>();
+    private long numCharacters;
+
+    private void add(byte type, Object... args) {
+      types.add(type);
+      arguments.add(args);
+    }
+
+    @Override
+    public void startDocument() {
+      add(START_DOCUMENT);
+    }
+
+    @Override
+    public void endDocument() {
+      add(END_DOCUMENT);
+    }
+
+    @Override
+    public void startPrefixMapping(String prefix, String uri) {
+      add(START_PREFIX_MAPPING, prefix, uri);
+    }
+
+    @Override
+    public void endPrefixMapping(String prefix) {
+      add(END_PREFIX_MAPPING, prefix);
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) {
+      // Parsers reuse their attributes.
+      add(START_ELEMENT, uri, localName, qName, new AttributesImpl(attributes));
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) {
+      add(END_ELEMENT, uri, localName, qName);
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+      add(CHARACTERS, (Object) copy(ch, start, length));
+      numCharacters += length;
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) {
+      add(IGNORABLE_WHITESPACE, (Object) copy(ch, start, length));
+      numCharacters += length;
+    }
+
+    private static char[] copy(char[] ch, int start, int length) {
+      char[] copy = new char[length];
+      System.arraycopy(ch, start, copy, 0, length);
+      return copy;
+    }
+
+    public SaxEventStream getEvents() {
+      byte[] typeArray = new byte[types.size()];
+      for (int i = 0; i < typeArray.length; ++i) {
+        typeArray[i] = types.get(i);
+      }
+      return new SaxEventStream(typeArray, arguments.toArray(new Object[0][]), numCharacters);
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package org.apache.tika.fork.benchmarks;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.tika.fork.main.TikaUtf8Writer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes text in the small chunks that parsers pass to <code>characters()</code>, each followed by a separator like
+ * the body handler writes, through {@link TikaUtf8Writer} and through the <code>OutputStreamWriter</code> that it
+ * replaces, to a stream that discards the bytes. The text is ASCII, mostly ASCII with about 1 in 60 accented chars,
+ * or CJK.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Utf8WriterBenchmark {
+  private static final int NUM_CHUNKS = 200000;
+
+  @Param({"ascii", "latin", "cjk"})
+  public String text;
+
+  private char[][] chunks;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(42);
+    chunks = new char[NUM_CHUNKS][];
+    for (int i = 0; i < NUM_CHUNKS; ++i) {
+      char[] chunk = new char[5 + random.nextInt(41)];
+      for (int j = 0; j < chunk.length; ++j) {
+        chunk[j] = nextChar(random);
+      }
+      chunks[i] = chunk;
+    }
+  }
+
+  private char nextChar(Random random) {
+    switch (text) {
+      case "ascii":
+        return (char) ('a' + random.nextInt(26));
+      case "latin":
+        if (random.nextInt(60) == 0) {
+          return (char) ('\u00e0' + random.nextInt(26));
+        }
+        return (char) ('a' + random.nextInt(26));
+      case "cjk":
+        return (char) ('\u4e00' + random.nextInt(20000));
+      default:
+        throw new IllegalArgumentException("Unknown text " + text);
+    }
+  }
+
+  @Benchmark
+  public Writer outputStreamWriter() throws IOException {
+    return write(new OutputStreamWriter(new NullOutputStream(), StandardCharsets.UTF_8));
+  }
+
+  @Benchmark
+  public Writer tikaUtf8Writer() throws IOException {
+    return write(new TikaUtf8Writer(new NullOutputStream()));
+  }
+
+  private Writer write(Writer writer) throws IOException {
+    for (char[] chunk : chunks) {
+      writer.write(chunk, 0, chunk.length);
+      writer.write('\n');
+    }
+    writer.flush();
+    return writer;
+  }
+}
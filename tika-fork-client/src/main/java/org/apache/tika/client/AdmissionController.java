@@ -0,0 +1,440 @@
+package org.apache.tika.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission layer in front of the fork pool. At most <code>maxConcurrent</code> parses hold a permit at once, and
+ * the rest wait in a bounded queue with one FIFO per {@link ParsePriority}. The {@link SchedulingPolicy} decides
+ * which priority gets the next free permit. When the queue is full the {@link ShedPolicy} decides which request is
+ * rejected, and requests that wait longer than <code>maxQueueTimeMs</code> are rejected as well.
+ * <p>
+ * Rejections are reported with a {@link ParseRejectedException} so callers get a backpressure signal instead of
+ * threads silently blocking inside the object pool.
+ */
+public class AdmissionController {
+  private static final Logger LOG = LoggerFactory.getLogger(AdmissionController.class);
+
+  private static final ParsePriority[] PRIORITIES = ParsePriority.values();
+
+  /**
+   * Stride scheduling constant, divided by the weight of a priority to get how far it advances per admission.
+   */
+  private static final long STRIDE = 1L << 20;
+
+  public enum ShedPolicy {
+    /**
+     * Reject the incoming request.
+     */
+    REJECT_NEWEST,
+    /**
+     * Reject the request that has been waiting the longest to make room for the incoming one.
+     */
+    REJECT_OLDEST,
+    /**
+     * Reject the largest request, which may be the incoming one.
+     */
+    REJECT_LARGEST
+  }
+
+  public enum SchedulingPolicy {
+    /**
+     * Always admit the highest priority waiting request, unless a lower priority request has waited longer than the
+     * starvation threshold.
+     */
+    STRICT,
+    /**
+     * Share permits between the priorities in proportion to their weights.
+     */
+    WEIGHTED
+  }
+
+  /**
+   * A granted admission. Must be closed when the parse is done.
+   */
+  public class Permit implements AutoCloseable {
+    private boolean released;
+
+    @Override
+    public void close() {
+      lock.lock();
+      try {
+        if (!released) {
+          released = true;
+          --numRunning;
+          admitWaiting();
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  private enum TicketState {
+    WAITING, ADMITTED, REJECTED
+  }
+
+  private static class Ticket {
+    private final ParsePriority priority;
+    private final long sizeHint;
+    private final long enqueuedAtNanos = System.nanoTime();
+    private TicketState state = TicketState.WAITING;
+    private ParseRejectedException.Reason rejectReason;
+
+    Ticket(ParsePriority priority, long sizeHint) {
+      this.priority = priority;
+      this.sizeHint = sizeHint;
+    }
+  }
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition stateChanged = lock.newCondition();
+  private final List<Deque<Ticket>> queues;
+  private final int maxConcurrent;
+  private final int maxQueueSize;
+  private final long maxQueueTimeMs;
+  private final ShedPolicy shedPolicy;
+  private final SchedulingPolicy schedulingPolicy;
+  private final long starvationThresholdNanos;
+  private final long[] strides;
+  private final long[] passes;
+  private long virtualTime;
+  private int numQueued;
+  private int numRunning;
+
+  private final AtomicLongArray numAdmitted = new AtomicLongArray(PRIORITIES.length);
+  private final AtomicLongArray numRejected = new AtomicLongArray(PRIORITIES.length);
+  private final AtomicLongArray totalQueueTimeNanos = new AtomicLongArray(PRIORITIES.length);
+
+  /**
+   * Creates a controller that admits requests in FIFO order within each priority and always prefers higher
+   * priorities.
+   *
+   * @param maxConcurrent  how many parses may run at once, normally the max size of the pool.
+   * @param maxQueueSize   how many requests may wait for a permit.
+   * @param maxQueueTimeMs how long a request may wait for a permit. -1 for no limit.
+   * @param shedPolicy     which request to reject when the queue is full.
+   */
+  public AdmissionController(int maxConcurrent, int maxQueueSize, long maxQueueTimeMs, ShedPolicy shedPolicy) {
+    this(maxConcurrent, maxQueueSize, maxQueueTimeMs, shedPolicy, SchedulingPolicy.STRICT, -1, new int[] {1, 1, 1});
+  }
+
+  /**
+   * @param maxConcurrent         how many parses may run at once, normally the max size of the pool.
+   * @param maxQueueSize          how many requests may wait for a permit.
+   * @param maxQueueTimeMs        how long a request may wait for a permit. -1 for no limit.
+   * @param shedPolicy            which request to reject when the queue is full.
+   * @param schedulingPolicy      how to pick the priority that gets the next permit.
+   * @param starvationThresholdMs with {@link SchedulingPolicy#STRICT}, a request that has waited this long is
+   *                              admitted before higher priority ones. -1 to disable.
+   * @param weights               with {@link SchedulingPolicy#WEIGHTED}, the share of each priority, indexed by
+   *                              {@link ParsePriority#ordinal()}.
+   */
+  public AdmissionController(int maxConcurrent,
+                             int maxQueueSize,
+                             long maxQueueTimeMs,
+                             ShedPolicy shedPolicy,
+                             SchedulingPolicy schedulingPolicy,
+                             long starvationThresholdMs,
+                             int[] weights) {
+    if (weights.length != PRIORITIES.length) {
+      throw new IllegalArgumentException("Expected one weight per priority, got " + weights.length);
+    }
+    this.maxConcurrent = maxConcurrent;
+    this.maxQueueSize = maxQueueSize;
+    this.maxQueueTimeMs = maxQueueTimeMs;
+    this.shedPolicy = shedPolicy;
+    this.schedulingPolicy = schedulingPolicy;
+    this.starvationThresholdNanos = starvationThresholdMs < 0 ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(starvationThresholdMs);
+    queues = new ArrayList<>(PRIORITIES.length);
+    strides = new long[PRIORITIES.length];
+    passes = new long[PRIORITIES.length];
+    for (int i = 0; i < PRIORITIES.length; ++i) {
+      queues.add(new ArrayDeque<>());
+      strides[i] = STRIDE / Math.max(1, weights[i]);
+    }
+  }
+
+  /**
+   * Waits for a permit with {@link ParsePriority#NORMAL} priority.
+   */
+  public Permit acquire(long sizeHint) throws ParseRejectedException, InterruptedException {
+    return acquire(ParsePriority.NORMAL, sizeHint);
+  }
+
+  /**
+   * Waits for a permit.
+   *
+   * @param priority the priority class of the request.
+   * @param sizeHint the size of the input if known, used by {@link ShedPolicy#REJECT_LARGEST}.
+   * @throws ParseRejectedException if the request was shed or waited too long.
+   */
+  public Permit acquire(ParsePriority priority, long sizeHint) throws ParseRejectedException, InterruptedException {
+    lock.lock();
+    try {
+      if (numQueued == 0 && numRunning < maxConcurrent) {
+        return admitNow(priority);
+      }
+      Ticket ticket = new Ticket(priority, sizeHint);
+      if (numQueued >= maxQueueSize) {
+        Ticket victim = pickVictim(ticket);
+        if (victim == ticket) {
+          numRejected.incrementAndGet(priority.ordinal());
+          throw new ParseRejectedException(ParseRejectedException.Reason.QUEUE_FULL, numQueued);
+        }
+        dequeue(victim);
+        reject(victim, ParseRejectedException.Reason.QUEUE_FULL);
+      }
+      enqueue(ticket);
+      return await(ticket);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Takes a permit only if one is free right now and nobody is waiting for it.
+   *
+   * @return the permit, or null if the request would have to wait.
+   */
+  public Permit tryAcquire() {
+    lock.lock();
+    try {
+      if (numQueued == 0 && numRunning < maxConcurrent) {
+        return admitNow(ParsePriority.NORMAL);
+      }
+      return null;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private Permit await(Ticket ticket) throws ParseRejectedException, InterruptedException {
+    long deadlineNanos = maxQueueTimeMs < 0 ? Long.MAX_VALUE : ticket.enqueuedAtNanos + TimeUnit.MILLISECONDS.toNanos(maxQueueTimeMs);
+    try {
+      while (ticket.state == TicketState.WAITING) {
+        long remainingNanos = deadlineNanos - System.nanoTime();
+        if (remainingNanos <= 0) {
+          dequeue(ticket);
+          reject(ticket, ParseRejectedException.Reason.QUEUE_TIMEOUT);
+          break;
+        }
+        stateChanged.awaitNanos(remainingNanos);
+      }
+    } catch (InterruptedException e) {
+      if (ticket.state == TicketState.WAITING) {
+        dequeue(ticket);
+      } else if (ticket.state == TicketState.ADMITTED) {
+        --numRunning;
+        admitWaiting();
+      }
+      throw e;
+    }
+    if (ticket.state == TicketState.REJECTED) {
+      throw new ParseRejectedException(ticket.rejectReason, numQueued);
+    }
+    return new Permit();
+  }
+
+  private Permit admitNow(ParsePriority priority) {
+    ++numRunning;
+    numAdmitted.incrementAndGet(priority.ordinal());
+    return new Permit();
+  }
+
+  private void enqueue(Ticket ticket) {
+    int p = ticket.priority.ordinal();
+    if (queues.get(p).isEmpty()) {
+      // A priority that was idle does not get to spend the share it did not use.
+      passes[p] = Math.max(passes[p], virtualTime);
+    }
+    queues.get(p).addLast(ticket);
+    ++numQueued;
+  }
+
+  private void dequeue(Ticket ticket) {
+    if (queues.get(ticket.priority.ordinal()).remove(ticket)) {
+      --numQueued;
+    }
+  }
+
+  /**
+   * Hands free permits to waiting requests. Must hold the lock.
+   */
+  private void admitWaiting() {
+    boolean changed = false;
+    while (numRunning < maxConcurrent && numQueued > 0) {
+      int p = schedulingPolicy == SchedulingPolicy.WEIGHTED ? nextWeighted() : nextStrict();
+      Ticket next = queues.get(p).pollFirst();
+      --numQueued;
+      ++numRunning;
+      numAdmitted.incrementAndGet(p);
+      totalQueueTimeNanos.addAndGet(p, System.nanoTime() - next.enqueuedAtNanos);
+      next.state = TicketState.ADMITTED;
+      changed = true;
+    }
+    if (changed) {
+      stateChanged.signalAll();
+    }
+  }
+
+  private int nextStrict() {
+    long now = System.nanoTime();
+    int starved = -1;
+    long longestWait = starvationThresholdNanos;
+    int highest = -1;
+    for (int p = 0; p < PRIORITIES.length; ++p) {
+      Ticket head = queues.get(p).peekFirst();
+      if (head == null) {
+        continue;
+      }
+      if (highest < 0) {
+        highest = p;
+      }
+      long waited = now - head.enqueuedAtNanos;
+      if (waited >= longestWait) {
+        longestWait = waited;
+        starved = p;
+      }
+    }
+    return starved >= 0 ? starved : highest;
+  }
+
+  private int nextWeighted() {
+    int next = -1;
+    for (int p = 0; p < PRIORITIES.length; ++p) {
+      if (!queues.get(p).isEmpty() && (next < 0 || passes[p] < passes[next])) {
+        next = p;
+      }
+    }
+    virtualTime = passes[next];
+    passes[next] += strides[next];
+    return next;
+  }
+
+  private void reject(Ticket ticket, ParseRejectedException.Reason reason) {
+    ticket.state = TicketState.REJECTED;
+    ticket.rejectReason = reason;
+    numRejected.incrementAndGet(ticket.priority.ordinal());
+    LOG.debug("Rejected {} priority parse request: {}, queue depth {}", ticket.priority, reason, numQueued);
+    stateChanged.signalAll();
+  }
+
+  /**
+   * Picks the request to shed among the incoming one and the waiting requests of the lowest priority.
+   */
+  private Ticket pickVictim(Ticket incoming) {
+    int lowest = incoming.priority.ordinal();
+    for (int p = PRIORITIES.length - 1; p > lowest; --p) {
+      if (!queues.get(p).isEmpty()) {
+        lowest = p;
+        break;
+      }
+    }
+    Deque<Ticket> candidates = queues.get(lowest);
+    boolean incomingIsCandidate = incoming.priority.ordinal() == lowest;
+    if (candidates.isEmpty()) {
+      return incoming;
+    }
+    switch (shedPolicy) {
+      case REJECT_OLDEST:
+        return candidates.peekFirst();
+      case REJECT_LARGEST:
+        Ticket largest = incomingIsCandidate ? incoming : null;
+        for (Ticket next : candidates) {
+          if (largest == null || next.sizeHint > largest.sizeHint) {
+            largest = next;
+          }
+        }
+        return largest;
+      case REJECT_NEWEST:
+      default:
+        return incomingIsCandidate ? incoming : candidates.peekLast();
+    }
+  }
+
+  /**
+   * @return the number of requests waiting for a permit.
+   */
+  public int getQueueDepth() {
+    lock.lock();
+    try {
+      return numQueued;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return the number of requests of the given priority waiting for a permit.
+   */
+  public int getQueueDepth(ParsePriority priority) {
+    lock.lock();
+    try {
+      return queues.get(priority.ordinal()).size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return the number of parses currently holding a permit.
+   */
+  public int getNumRunning() {
+    lock.lock();
+    try {
+      return numRunning;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public long getNumAdmitted() {
+    return sum(numAdmitted);
+  }
+
+  public long getNumAdmitted(ParsePriority priority) {
+    return numAdmitted.get(priority.ordinal());
+  }
+
+  public long getNumRejected() {
+    return sum(numRejected);
+  }
+
+  public long getNumRejected(ParsePriority priority) {
+    return numRejected.get(priority.ordinal());
+  }
+
+  /**
+   * @return the average time admitted requests spent waiting in the queue, in milliseconds.
+   */
+  public double getAverageQueueTimeMs() {
+    long admitted = getNumAdmitted();
+    return admitted == 0 ? 0 : sum(totalQueueTimeNanos) / 1000000.0 / admitted;
+  }
+
+  /**
+   * @return the average time admitted requests of the given priority spent waiting in the queue, in milliseconds.
+   */
+  public double getAverageQueueTimeMs(ParsePriority priority) {
+    long admitted = numAdmitted.get(priority.ordinal());
+    return admitted == 0 ? 0 : totalQueueTimeNanos.get(priority.ordinal()) / 1000000.0 / admitted;
+  }
+
+  private static long sum(AtomicLongArray values) {
+    long sum = 0;
+    for (int i = 0; i < values.length(); ++i) {
+      sum += values.get(i);
+    }
+    return sum;
+  }
+}
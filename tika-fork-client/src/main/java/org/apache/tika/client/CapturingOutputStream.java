@@ -0,0 +1,61 @@
+package org.apache.tika.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Passes everything through to the target stream and keeps a copy of the first <code>captureLimit</code> bytes.
+ * The target stream is not closed by {@link #close()}.
+ */
+class CapturingOutputStream extends OutputStream {
+  private final OutputStream target;
+  private final long captureLimit;
+  private final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+  private boolean overflowed;
+
+  CapturingOutputStream(OutputStream target, long captureLimit) {
+    this.target = target;
+    this.captureLimit = captureLimit;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    target.write(b);
+    capture(new byte[] {(byte) b}, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    target.write(b, off, len);
+    capture(b, off, len);
+  }
+
+  @Override
+  public void flush() throws IOException {
+    target.flush();
+  }
+
+  private void capture(byte[] b, int off, int len) {
+    if (overflowed) {
+      return;
+    }
+    if (captured.size() + (long) len > captureLimit) {
+      overflowed = true;
+      captured.reset();
+      return;
+    }
+    captured.write(b, off, len);
+  }
+
+  /**
+   * @return true if more than <code>captureLimit</code> bytes were written, in which case nothing is kept.
+   */
+  boolean isOverflowed() {
+    return overflowed;
+  }
+
+  byte[] toByteArray() {
+    return captured.toByteArray();
+  }
+}
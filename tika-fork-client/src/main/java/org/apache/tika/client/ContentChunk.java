@@ -0,0 +1,61 @@
+package org.apache.tika.client;
+
+/**
+ * A bounded piece of the extracted text with where it came from, sent by a fork with <code>chunkedContent</code> set.
+ * A chunk never spans two pages or two embedded resources.
+ */
+public class ContentChunk {
+  private final long offset;
+  private final String text;
+  private final int page;
+  private final String sheet;
+  private final String embeddedPath;
+
+  public ContentChunk(long offset, String text, int page, String sheet, String embeddedPath) {
+    this.offset = offset;
+    this.text = text;
+    this.page = page;
+    this.sheet = sheet;
+    this.embeddedPath = embeddedPath;
+  }
+
+  /**
+   * @return the offset of the chunk in the text of the document, in chars. Chunks follow each other without gaps.
+   */
+  public long getOffset() {
+    return offset;
+  }
+
+  public String getText() {
+    return text;
+  }
+
+  /**
+   * @return the page of a PDF, the sheet of a spreadsheet or the slide of a presentation, counted from 1 within the
+   * embedded resource, or 0 if the document has no pages.
+   */
+  public int getPage() {
+    return page;
+  }
+
+  /**
+   * @return the name of the spreadsheet sheet, or null.
+   */
+  public String getSheet() {
+    return sheet;
+  }
+
+  /**
+   * @return the names of the embedded resources from the document down to the one the text is from, e.g.
+   * <code>/report.zip/report.pdf</code>, or null for text of the document itself.
+   */
+  public String getEmbeddedPath() {
+    return embeddedPath;
+  }
+
+  @Override
+  public String toString() {
+    return "ContentChunk [offset=" + offset + ", length=" + text.length() + ", page=" + page + ", sheet=" + sheet
+        + ", embeddedPath=" + embeddedPath + "]";
+  }
+}
@@ -0,0 +1,154 @@
+package org.apache.tika.client;
+
+import org.apache.commons.io.FilenameUtils;
+import org.apache.tika.detect.DefaultDetector;
+import org.apache.tika.detect.Detector;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.mime.MediaTypeRegistry;
+import org.apache.tika.mime.MimeTypes;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides in the client which content types are sent to a fork at all, so that documents such as videos or disk
+ * images are not copied to a fork only to find out that there is no text in them.
+ * <p>
+ * The content type passed by the caller is used if there is one. Otherwise it is detected with the tika-core
+ * detectors from the first bytes of the input and the file name in the base URI. Detection only sees the generic
+ * container type of some formats, e.g. <code>application/zip</code> for OOXML documents, since the container
+ * detectors are in the parsers that only the forks load.
+ * <p>
+ * Types are given as a comma separated list of media types, or of <code>type/*</code> to match all subtypes of a
+ * type. A type is rejected if it is denied, or if there is an allow list and it is not on it.
+ */
+public class ContentTypeFilter {
+  private static final Logger LOG = LoggerFactory.getLogger(ContentTypeFilter.class);
+
+  /**
+   * Set in the metadata returned for a rejected document.
+   */
+  public static final String CONTENT_TYPE_REJECTED =
+      TikaCoreProperties.TIKA_META_EXCEPTION_PREFIX + "content_type_rejected";
+
+  private static final String WILDCARD = "*";
+
+  private final MediaTypeRegistry registry = MimeTypes.getDefaultMimeTypes().getMediaTypeRegistry();
+  private final Detector detector = new DefaultDetector();
+  private final Set<MediaType> allowed;
+  private final Set<MediaType> denied;
+  private final AtomicLong numRejected = new AtomicLong();
+
+  /**
+   * @param allowedContentTypes comma separated types that are sent to a fork, or empty to allow all types
+   * @param deniedContentTypes  comma separated types that are never sent to a fork
+   */
+  public ContentTypeFilter(String allowedContentTypes, String deniedContentTypes) {
+    this.allowed = parseTypes(allowedContentTypes);
+    this.denied = parseTypes(deniedContentTypes);
+  }
+
+  /**
+   * @return the stream itself if it supports mark or is a file, which {@link #detect} needs, or a buffered stream
+   * around it. Files are not wrapped so that they can still be sent to the fork with a file transfer.
+   */
+  public static InputStream detectable(InputStream contentInputStream) {
+    return contentInputStream.markSupported() || contentInputStream instanceof FileInputStream
+        ? contentInputStream
+        : new BufferedInputStream(contentInputStream);
+  }
+
+  /**
+   * @param contentInputStream the input, which must support mark or be a {@link FileInputStream}. It is reset to
+   *                           where it was after the first bytes have been read.
+   * @return the content type given by the caller, or if it is blank the detected content type.
+   */
+  public String detect(String baseUri, String contentType, InputStream contentInputStream) throws IOException {
+    if (contentType != null && !contentType.trim().isEmpty()) {
+      return contentType;
+    }
+    Metadata metadata = new Metadata();
+    if (baseUri != null) {
+      metadata.set(Metadata.RESOURCE_NAME_KEY, FilenameUtils.getName(baseUri));
+    }
+    if (contentInputStream instanceof FileInputStream) {
+      FileChannel channel = ((FileInputStream) contentInputStream).getChannel();
+      long position = channel.position();
+      try {
+        return detector.detect(new BufferedInputStream(Channels.newInputStream(channel)), metadata).toString();
+      } finally {
+        channel.position(position);
+      }
+    }
+    return detector.detect(contentInputStream, metadata).toString();
+  }
+
+  /**
+   * @return whether documents of the content type may be sent to a fork.
+   */
+  public boolean isAllowed(String contentType) {
+    MediaType mediaType = MediaType.parse(contentType);
+    if (mediaType == null) {
+      return allowed.isEmpty();
+    }
+    mediaType = registry.normalize(mediaType.getBaseType());
+    if (matches(denied, mediaType)) {
+      return false;
+    }
+    return allowed.isEmpty() || matches(allowed, mediaType);
+  }
+
+  /**
+   * @return the metadata returned for a rejected document, with only its content type and the
+   * {@link #CONTENT_TYPE_REJECTED} flag.
+   */
+  public Metadata reject(String baseUri, String contentType) {
+    LOG.debug("Not parsing {} of content type {}", baseUri, contentType);
+    numRejected.incrementAndGet();
+    Metadata metadata = new Metadata();
+    metadata.set(Metadata.CONTENT_TYPE, contentType);
+    metadata.set(CONTENT_TYPE_REJECTED, "true");
+    return metadata;
+  }
+
+  /**
+   * @return the number of documents that were not sent to a fork because of their content type.
+   */
+  public long getNumRejected() {
+    return numRejected.get();
+  }
+
+  private static boolean matches(Set<MediaType> types, MediaType mediaType) {
+    return types.contains(mediaType) || types.contains(new MediaType(mediaType.getType(), WILDCARD));
+  }
+
+  private Set<MediaType> parseTypes(String types) {
+    Set<MediaType> result = new HashSet<>();
+    if (types == null) {
+      return result;
+    }
+    for (String type : types.split(",")) {
+      type = type.trim();
+      if (type.isEmpty()) {
+        continue;
+      }
+      MediaType mediaType = MediaType.parse(type);
+      if (mediaType == null) {
+        throw new IllegalArgumentException("Invalid content type: " + type);
+      }
+      result.add(WILDCARD.equals(mediaType.getSubtype()) ? mediaType.getBaseType() : registry.normalize(mediaType.getBaseType()));
+    }
+    return result;
+  }
+}
@@ -0,0 +1,49 @@
+package org.apache.tika.client;
+
+import org.apache.tika.metadata.Metadata;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An embedded resource of a container, such as a ZIP entry or an email attachment, parsed on its own by a fork with
+ * <code>recursiveEmbedded</code> set.
+ */
+public class EmbeddedDocument {
+  private final String path;
+  private final Metadata metadata;
+  private final byte[] content;
+
+  public EmbeddedDocument(String path, Metadata metadata, byte[] content) {
+    this.path = path;
+    this.metadata = metadata;
+    this.content = content;
+  }
+
+  /**
+   * @return the names of the resources from the container down to this one, e.g.
+   * <code>/mail.eml/report.zip/report.pdf</code>.
+   */
+  public String getPath() {
+    return path;
+  }
+
+  public Metadata getMetadata() {
+    return metadata;
+  }
+
+  /**
+   * @return the extracted text as UTF-8.
+   */
+  public byte[] getContent() {
+    return content;
+  }
+
+  public String getContentAsString() {
+    return new String(content, StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public String toString() {
+    return "EmbeddedDocument [path=" + path + ", contentLength=" + content.length + "]";
+  }
+}
@@ -0,0 +1,47 @@
+package org.apache.tika.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The content output of a parse into a file. {@link TikaRunner} recognizes it and moves the content from the fork
+ * socket into the file with {@link FileChannel#transferFrom}, without the copy loop through a heap buffer. Stages
+ * that wrap the output, such as the parse result cache, write to it like to any other stream.
+ */
+class FileChannelOutputStream extends OutputStream {
+  private final FileChannel channel;
+
+  /**
+   * Creates the file, or truncates it if it exists.
+   */
+  FileChannelOutputStream(Path file) throws IOException {
+    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING);
+  }
+
+  FileChannel getChannel() {
+    return channel;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    write(new byte[] {(byte) b}, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
@@ -0,0 +1,45 @@
+package org.apache.tika.client;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A file read at any position, with positional reads that leave the position of the channel alone.
+ */
+public class FileRandomAccessContent implements RandomAccessContent {
+  private final FileChannel channel;
+  private final boolean ownsChannel;
+
+  public FileRandomAccessContent(Path file) throws IOException {
+    this.channel = FileChannel.open(file, StandardOpenOption.READ);
+    this.ownsChannel = true;
+  }
+
+  /**
+   * Reads a channel that belongs to the caller, and is not closed by {@link #close()}.
+   */
+  FileRandomAccessContent(FileChannel channel) {
+    this.channel = channel;
+    this.ownsChannel = false;
+  }
+
+  @Override
+  public long length() throws IOException {
+    return channel.size();
+  }
+
+  @Override
+  public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+    return channel.read(ByteBuffer.wrap(buffer, offset, length), position);
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (ownsChannel) {
+      channel.close();
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package org.apache.tika.client;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A link found in an HTML document by the fork, when <code>extractHtmlLinks</code> is set.
+ */
+public class Link {
+  private final String type;
+  private final String sourceUri;
+  private final String targetUri;
+  private final String title;
+  private final String anchor;
+  private final String rel;
+  private final Map<String, String> params;
+
+  public Link(String type,
+              String sourceUri,
+              String targetUri,
+              String title,
+              String anchor,
+              String rel,
+              Map<String, String> params) {
+    this.type = type;
+    this.sourceUri = sourceUri;
+    this.targetUri = targetUri;
+    this.title = title;
+    this.anchor = anchor;
+    this.rel = rel;
+    this.params = Collections.unmodifiableMap(params);
+  }
+
+  /**
+   * @return the element the link came from, e.g. a, img, link, iframe or script.
+   */
+  public String getType() {
+    return type;
+  }
+
+  /**
+   * @return the base URI of the document that was parsed.
+   */
+  public String getSourceUri() {
+    return sourceUri;
+  }
+
+  /**
+   * @return the link target as written in the document, it is not resolved against the source URI.
+   */
+  public String getTargetUri() {
+    return targetUri;
+  }
+
+  public String getTitle() {
+    return title;
+  }
+
+  /**
+   * @return the text of the link, with whitespace collapsed.
+   */
+  public String getAnchor() {
+    return anchor;
+  }
+
+  public String getRel() {
+    return rel;
+  }
+
+  /**
+   * @return other attributes of the element that depend on its type, e.g. alt for images.
+   */
+  public Map<String, String> getParams() {
+    return params;
+  }
+
+  @Override
+  public String toString() {
+    return "Link [type=" + type + ", sourceUri=" + sourceUri + ", targetUri="
+        + targetUri + ", title=" + title + ", anchor=" + anchor + ", rel="
+        + rel + ", params=" + params + "]";
+  }
+}
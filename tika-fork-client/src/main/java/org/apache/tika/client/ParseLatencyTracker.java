@@ -0,0 +1,70 @@
+package org.apache.tika.client;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps the latencies of the most recent parses of each content type, so that the pool can tell when a parse is
+ * taking unusually long for its type.
+ */
+public class ParseLatencyTracker {
+
+  private static class Window {
+    private final long[] samples;
+    private int next;
+    private int count;
+
+    Window(int size) {
+      samples = new long[size];
+    }
+
+    synchronized void add(long latencyMs) {
+      samples[next] = latencyMs;
+      next = (next + 1) % samples.length;
+      if (count < samples.length) {
+        ++count;
+      }
+    }
+
+    synchronized long[] snapshot() {
+      return Arrays.copyOf(samples, count);
+    }
+  }
+
+  private final ConcurrentMap<String, Window> windows = new ConcurrentHashMap<>();
+  private final int windowSize;
+  private final int minSamples;
+
+  /**
+   * @param windowSize how many recent parses of each content type to keep
+   * @param minSamples how many parses of a content type must have been seen before a percentile is reported
+   */
+  public ParseLatencyTracker(int windowSize, int minSamples) {
+    this.windowSize = windowSize;
+    this.minSamples = Math.min(minSamples, windowSize);
+  }
+
+  public void record(String contentType, long latencyMs) {
+    windows.computeIfAbsent(contentType, k -> new Window(windowSize)).add(latencyMs);
+  }
+
+  /**
+   * @param percentile between 0 and 100
+   * @return the latency in ms that the given percentage of recent parses of the content type finished within, or
+   * -1 if there have not been enough parses of the content type yet.
+   */
+  public long getPercentileMs(String contentType, double percentile) {
+    Window window = windows.get(contentType);
+    if (window == null) {
+      return -1L;
+    }
+    long[] samples = window.snapshot();
+    if (samples.length == 0 || samples.length < minSamples) {
+      return -1L;
+    }
+    Arrays.sort(samples);
+    int index = (int) Math.ceil(percentile / 100.0 * samples.length) - 1;
+    return samples[Math.max(0, Math.min(index, samples.length - 1))];
+  }
+}
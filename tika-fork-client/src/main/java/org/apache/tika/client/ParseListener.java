@@ -0,0 +1,30 @@
+package org.apache.tika.client;
+
+/**
+ * Receives results of a parse that are streamed from the fork while the document is parsed, in addition to the
+ * content and metadata. Methods are called on a pool thread, not the thread that called parse, and before parse
+ * returns.
+ */
+public interface ParseListener {
+
+  /**
+   * Called for each link in an HTML document. Requires the <code>extractHtmlLinks</code> parse property.
+   */
+  default void onLink(Link link) {
+  }
+
+  /**
+   * Called for each embedded resource of a container once it has been parsed, with nested resources before the
+   * resource that contains them. Requires the <code>recursiveEmbedded</code> parse property, which also keeps the
+   * text of embedded resources out of the content of the container.
+   */
+  default void onEmbedded(EmbeddedDocument embeddedDocument) {
+  }
+
+  /**
+   * Called for each chunk of the extracted text, in order. Requires the <code>chunkedContent</code> parse property,
+   * which sends the text in chunks instead of to the content output stream.
+   */
+  default void onChunk(ContentChunk chunk) {
+  }
+}
@@ -0,0 +1,72 @@
+package org.apache.tika.client;
+
+/**
+ * The optional settings of a parse request, for
+ * {@link TikaProcessPool#parse(String, String, java.io.InputStream, java.io.OutputStream, long, long, ParseOptions)}.
+ * Each setter returns the options so that they can be chained.
+ */
+public class ParseOptions {
+  private String coalesceKey;
+  private ParsePriority priority = ParsePriority.NORMAL;
+  private boolean hedge;
+  private ParseListener listener;
+
+  public String getCoalesceKey() {
+    return coalesceKey;
+  }
+
+  /**
+   * @param coalesceKey when <code>coalesceRequests</code> is set, concurrent requests with the same key share one
+   *                    parse. Use this when the caller already knows that two inputs are identical, e.g. from a
+   *                    checksum. If null, the default, the hash of the input content is used as the key.
+   */
+  public ParseOptions setCoalesceKey(String coalesceKey) {
+    this.coalesceKey = coalesceKey;
+    return this;
+  }
+
+  public ParsePriority getPriority() {
+    return priority;
+  }
+
+  /**
+   * @param priority when <code>admissionControlEnabled</code> is set, decides the order in which waiting requests get
+   *                 a fork. Default {@link ParsePriority#NORMAL}.
+   */
+  public ParseOptions setPriority(ParsePriority priority) {
+    this.priority = priority;
+    return this;
+  }
+
+  public boolean isHedge() {
+    return hedge;
+  }
+
+  /**
+   * @param hedge for latency sensitive requests. If the parse has not finished after <code>hedgeDelayMs</code>, or
+   *              after the observed <code>hedgeLatencyPercentile</code> latency for the content type, the same
+   *              document is also sent to an idle fork and whichever parse finishes first is returned. The input is
+   *              buffered so that it can be sent twice, and the content is buffered until the winner is known. The
+   *              fork of the losing parse is destroyed and replaced by a new one. Default false.
+   */
+  public ParseOptions setHedge(boolean hedge) {
+    this.hedge = hedge;
+    return this;
+  }
+
+  public ParseListener getListener() {
+    return listener;
+  }
+
+  /**
+   * @param listener gets the links found in HTML documents when <code>extractHtmlLinks</code> is set, the embedded
+   *                 resources of containers when <code>recursiveEmbedded</code> is set, and the text in chunks instead
+   *                 of in the content output stream when <code>chunkedContent</code> is set. They are streamed from
+   *                 the fork while it parses. Requests with a listener are not served from the parse result cache or
+   *                 coalesced, since neither keeps them. Default null.
+   */
+  public ParseOptions setListener(ParseListener listener) {
+    this.listener = listener;
+    return this;
+  }
+}
@@ -0,0 +1,20 @@
+package org.apache.tika.client;
+
+/**
+ * Priority class of a parse request. When admission control is enabled, waiting requests are handed forks
+ * according to their priority, see {@link AdmissionController.SchedulingPolicy}.
+ */
+public enum ParsePriority {
+  /**
+   * Latency sensitive requests, such as interactive previews.
+   */
+  HIGH,
+  /**
+   * The default.
+   */
+  NORMAL,
+  /**
+   * Throughput oriented requests, such as bulk re-indexing.
+   */
+  LOW
+}
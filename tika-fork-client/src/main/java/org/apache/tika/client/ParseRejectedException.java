@@ -0,0 +1,39 @@
+package org.apache.tika.client;
+
+/**
+ * Thrown when a parse request is not admitted to the pool. This is the backpressure signal for callers: the pool is
+ * saturated and the caller should slow down.
+ */
+public class ParseRejectedException extends Exception {
+
+  public enum Reason {
+    /**
+     * The queue was full and the load shedding policy picked this request.
+     */
+    QUEUE_FULL,
+    /**
+     * The request waited in the queue longer than the configured queue time.
+     */
+    QUEUE_TIMEOUT
+  }
+
+  private final Reason reason;
+  private final int queueDepth;
+
+  public ParseRejectedException(Reason reason, int queueDepth) {
+    super("Parse request rejected: " + reason + ", queue depth " + queueDepth);
+    this.reason = reason;
+    this.queueDepth = queueDepth;
+  }
+
+  public Reason getReason() {
+    return reason;
+  }
+
+  /**
+   * @return the number of requests that were waiting in the queue when this one was rejected.
+   */
+  public int getQueueDepth() {
+    return queueDepth;
+  }
+}
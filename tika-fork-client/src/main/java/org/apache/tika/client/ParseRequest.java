@@ -0,0 +1,67 @@
+package org.apache.tika.client;
+
+/**
+ * The options of a single parse as it passes through the stages in front of the fork pool. The input and output
+ * streams are passed separately since stages replace them with spooled or capturing versions.
+ */
+class ParseRequest {
+  final String baseUri;
+  final String contentType;
+  final long abortAfterMs;
+  final long maxBytesToParse;
+  final String coalesceKey;
+  final ParsePriority priority;
+  final boolean hedge;
+  final ParseListener listener;
+
+  /**
+   * Set when the request was admitted before it entered the pipeline, see {@link TikaProcessPool#tryParse}.
+   */
+  AdmissionController.Permit permit;
+
+  ParseRequest(String baseUri,
+               String contentType,
+               long abortAfterMs,
+               long maxBytesToParse,
+               ParseOptions options) {
+    this(baseUri, contentType, abortAfterMs, maxBytesToParse, options.getCoalesceKey(), options.getPriority(),
+        options.isHedge(), options.getListener());
+  }
+
+  private ParseRequest(String baseUri,
+                       String contentType,
+                       long abortAfterMs,
+                       long maxBytesToParse,
+                       String coalesceKey,
+                       ParsePriority priority,
+                       boolean hedge,
+                       ParseListener listener) {
+    this.baseUri = baseUri;
+    this.contentType = contentType;
+    this.abortAfterMs = abortAfterMs;
+    this.maxBytesToParse = maxBytesToParse;
+    this.coalesceKey = coalesceKey;
+    this.priority = priority;
+    this.hedge = hedge;
+    this.listener = listener;
+  }
+
+  /**
+   * @return a copy of this request that runs on the given permit, used for the second attempt of a hedged parse.
+   */
+  ParseRequest withPermit(AdmissionController.Permit permit) {
+    ParseRequest copy = new ParseRequest(baseUri, contentType, abortAfterMs, maxBytesToParse, coalesceKey, priority, hedge, listener);
+    copy.permit = permit;
+    return copy;
+  }
+
+  /**
+   * @return a copy of this request that sends its events to the given listener, used to hold back the events of a
+   * hedged attempt until it is known to have won.
+   */
+  ParseRequest withListener(ParseListener listener) {
+    ParseRequest copy = new ParseRequest(baseUri, contentType, abortAfterMs, maxBytesToParse, coalesceKey, priority, hedge, listener);
+    copy.permit = permit;
+    return copy;
+  }
+}
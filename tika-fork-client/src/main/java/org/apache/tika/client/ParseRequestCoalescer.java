@@ -0,0 +1,114 @@
+package org.apache.tika.client;
+
+import org.apache.tika.metadata.Metadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Makes concurrent parse requests with the same key share a single parse. The first request for a key runs the
+ * parse and keeps a copy of the content, and requests for the same key that arrive while it is in flight wait for
+ * it and get the same metadata and content.
+ * <p>
+ * If the content of the parse is larger than <code>maxSharedContentBytes</code> it cannot be shared, and each
+ * waiting request runs its own parse instead.
+ */
+public class ParseRequestCoalescer {
+  private static final Logger LOG = LoggerFactory.getLogger(ParseRequestCoalescer.class);
+
+  /**
+   * A parse that writes its content to the given output stream.
+   */
+  public interface ParseCall {
+    Metadata parse(OutputStream contentOutputStream) throws Exception;
+  }
+
+  private static class SharedResult {
+    private final Metadata metadata;
+    private final byte[] content;
+
+    SharedResult(Metadata metadata, byte[] content) {
+      this.metadata = metadata;
+      this.content = content;
+    }
+  }
+
+  private final ConcurrentMap<String, CompletableFuture<SharedResult>> inFlight = new ConcurrentHashMap<>();
+  private final long maxSharedContentBytes;
+  private final AtomicLong numCoalesced = new AtomicLong();
+
+  public ParseRequestCoalescer(long maxSharedContentBytes) {
+    this.maxSharedContentBytes = maxSharedContentBytes;
+  }
+
+  /**
+   * Runs the parse, or waits for an identical one that is already running.
+   *
+   * @param key                 identifies identical requests
+   * @param contentOutputStream where the content is written
+   * @param maxWaitMs           how long to wait for an in flight parse before giving up with a TimeoutException
+   * @param call                the parse to run if there is no identical one in flight
+   */
+  public Metadata parse(String key, OutputStream contentOutputStream, long maxWaitMs, ParseCall call) throws Exception {
+    CompletableFuture<SharedResult> future = new CompletableFuture<>();
+    CompletableFuture<SharedResult> existing = inFlight.putIfAbsent(key, future);
+    if (existing == null) {
+      return lead(key, future, contentOutputStream, call);
+    }
+    numCoalesced.incrementAndGet();
+    LOG.debug("Waiting for in flight parse of {}", key);
+    SharedResult result;
+    try {
+      result = existing.get(maxWaitMs, TimeUnit.MILLISECONDS);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception) {
+        throw (Exception) e.getCause();
+      }
+      throw e;
+    }
+    if (result == null) {
+      // The in flight parse produced too much content to share.
+      return call.parse(contentOutputStream);
+    }
+    contentOutputStream.write(result.content);
+    return ParseResultCache.copy(result.metadata);
+  }
+
+  private Metadata lead(String key, CompletableFuture<SharedResult> future, OutputStream contentOutputStream, ParseCall call) throws Exception {
+    try {
+      CapturingOutputStream capturingOutputStream = new CapturingOutputStream(contentOutputStream, maxSharedContentBytes);
+      Metadata metadata = call.parse(capturingOutputStream);
+      future.complete(capturingOutputStream.isOverflowed() ? null :
+          new SharedResult(ParseResultCache.copy(metadata), capturingOutputStream.toByteArray()));
+      return metadata;
+    } catch (Exception e) {
+      future.completeExceptionally(e);
+      throw e;
+    } finally {
+      // Waiters run their own parse if this one died with an Error.
+      future.complete(null);
+      inFlight.remove(key, future);
+    }
+  }
+
+  /**
+   * @return the number of requests that waited for an identical in flight parse instead of parsing.
+   */
+  public long getNumCoalesced() {
+    return numCoalesced.get();
+  }
+
+  /**
+   * @return the number of distinct parses currently in flight.
+   */
+  public int getNumInFlight() {
+    return inFlight.size();
+  }
+}
@@ -0,0 +1,350 @@
+package org.apache.tika.client;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.tika.metadata.Metadata;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Content-addressed cache of parse results. Results are keyed by the hash of the input plus the hash of everything
+ * else that influences the parse (content type, byte limit, parser properties), so the same content fetched from
+ * different URLs is only parsed once.
+ * <p>
+ * There are two tiers, both evicting the least recently used entries first: a memory tier bounded by
+ * <code>maxMemoryBytes</code> and a disk tier under the cache directory bounded by <code>maxDiskBytes</code>.
+ * Entries larger than <code>maxEntryBytes</code> are never cached.
+ */
+public class ParseResultCache {
+  private static final Logger LOG = LoggerFactory.getLogger(ParseResultCache.class);
+
+  private static final String ENTRY_SUFFIX = ".cache";
+
+  /**
+   * Rough per-metadata-value overhead used when estimating the memory size of an entry.
+   */
+  private static final int METADATA_VALUE_OVERHEAD = 64;
+
+  /**
+   * Properties that do not change the result of a parse, see {@link #digestProperties(Properties)}.
+   */
+  private static final List<String> TRANSPORT_PROPERTY_PREFIXES = Arrays.asList("parseResultCache", "admission",
+      "coalesce", "hedge");
+  private static final Set<String> TRANSPORT_PROPERTIES = new HashSet<>(Arrays.asList("allowedContentTypes",
+      "deniedContentTypes", "transferBufferSize", "contentFromPath", "rangeRequests", "inputSpoolThresholdBytes",
+      "inputMemoryThresholdBytes"));
+
+  private final File cacheDirectory;
+  private final long maxMemoryBytes;
+  private final long maxDiskBytes;
+  private final long maxEntryBytes;
+
+  private final LinkedHashMap<String, CachedParseResult> memoryEntries = new LinkedHashMap<>(16, 0.75f, true);
+  private final LinkedHashMap<String, Long> diskEntries = new LinkedHashMap<>(16, 0.75f, true);
+  private long memoryBytes;
+  private long diskBytes;
+
+  private final AtomicLong memoryHits = new AtomicLong();
+  private final AtomicLong diskHits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * A cached parse result.
+   */
+  public static class CachedParseResult {
+    private final Metadata metadata;
+    private final byte[] content;
+
+    CachedParseResult(Metadata metadata, byte[] content) {
+      this.metadata = metadata;
+      this.content = content;
+    }
+
+    /**
+     * @return a copy of the cached metadata that the caller is free to modify.
+     */
+    public Metadata getMetadata() {
+      return copy(metadata);
+    }
+
+    public byte[] getContent() {
+      return content;
+    }
+
+    long estimateSize() {
+      long size = content.length;
+      for (String name : metadata.names()) {
+        for (String value : metadata.getValues(name)) {
+          size += METADATA_VALUE_OVERHEAD + 2L * (name.length() + value.length());
+        }
+      }
+      return size;
+    }
+  }
+
+  /**
+   * @param cacheDirectory where the disk tier is stored. Existing entries in it are reused.
+   * @param maxMemoryBytes the size of the memory tier. 0 to disable.
+   * @param maxDiskBytes   the size of the disk tier. 0 to disable.
+   * @param maxEntryBytes  the largest content that will be cached.
+   */
+  public ParseResultCache(File cacheDirectory, long maxMemoryBytes, long maxDiskBytes, long maxEntryBytes) {
+    this.cacheDirectory = cacheDirectory;
+    this.maxMemoryBytes = maxMemoryBytes;
+    this.maxDiskBytes = maxDiskBytes;
+    this.maxEntryBytes = maxEntryBytes;
+    if (maxDiskBytes > 0) {
+      cacheDirectory.mkdirs();
+      loadDiskEntries();
+    }
+  }
+
+  /**
+   * Builds the cache key for a parse.
+   *
+   * @param inputDigest      hash of the input content, see {@link SpooledInput#getDigest()}
+   * @param contentType      the content type passed to the parser
+   * @param maxBytesToParse  the content byte limit of the parse
+   * @param propertiesDigest hash of the parser properties, see {@link #digestProperties(Properties)}
+   */
+  public static String key(String inputDigest, String contentType, long maxBytesToParse, String propertiesDigest) {
+    return sha256(inputDigest + "\n" + contentType + "\n" + maxBytesToParse + "\n" + propertiesDigest);
+  }
+
+  /**
+   * Hashes the parser properties, ignoring the properties that only decide how a parse is scheduled and how its input
+   * is moved, and not its result, so that tuning them keeps the cache.
+   */
+  public static String digestProperties(Properties properties) {
+    StringBuilder sb = new StringBuilder();
+    for (String name : new TreeSet<>(properties.stringPropertyNames())) {
+      if (isTransportProperty(name)) {
+        continue;
+      }
+      sb.append(name).append('=').append(properties.getProperty(name)).append('\n');
+    }
+    return sha256(sb.toString());
+  }
+
+  private static boolean isTransportProperty(String name) {
+    for (String prefix : TRANSPORT_PROPERTY_PREFIXES) {
+      if (name.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return TRANSPORT_PROPERTIES.contains(name);
+  }
+
+  /**
+   * @return the cached result, or null if there is none.
+   */
+  public CachedParseResult get(String key) {
+    synchronized (this) {
+      CachedParseResult result = memoryEntries.get(key);
+      if (result != null) {
+        memoryHits.incrementAndGet();
+        return result;
+      }
+      if (diskEntries.get(key) == null) {
+        misses.incrementAndGet();
+        return null;
+      }
+    }
+    CachedParseResult result = readEntry(key);
+    if (result == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+    diskHits.incrementAndGet();
+    synchronized (this) {
+      putInMemory(key, result);
+    }
+    return result;
+  }
+
+  /**
+   * Stores a parse result if it is small enough.
+   */
+  public void put(String key, Metadata metadata, byte[] content) {
+    if (content.length > maxEntryBytes) {
+      return;
+    }
+    CachedParseResult result = new CachedParseResult(copy(metadata), content);
+    synchronized (this) {
+      putInMemory(key, result);
+    }
+    if (maxDiskBytes > 0) {
+      writeEntry(key, result);
+    }
+  }
+
+  public long getMaxEntryBytes() {
+    return maxEntryBytes;
+  }
+
+  public long getMemoryHits() {
+    return memoryHits.get();
+  }
+
+  public long getDiskHits() {
+    return diskHits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public synchronized long getMemoryBytes() {
+    return memoryBytes;
+  }
+
+  public synchronized long getDiskBytes() {
+    return diskBytes;
+  }
+
+  private void putInMemory(String key, CachedParseResult result) {
+    long size = result.estimateSize();
+    if (size > maxMemoryBytes) {
+      return;
+    }
+    CachedParseResult previous = memoryEntries.put(key, result);
+    if (previous != null) {
+      memoryBytes -= previous.estimateSize();
+    }
+    memoryBytes += size;
+    Iterator<Map.Entry<String, CachedParseResult>> it = memoryEntries.entrySet().iterator();
+    while (memoryBytes > maxMemoryBytes && it.hasNext()) {
+      memoryBytes -= it.next().getValue().estimateSize();
+      it.remove();
+    }
+  }
+
+  private void writeEntry(String key, CachedParseResult result) {
+    File entryFile = entryFile(key);
+    File tmpFile = null;
+    try {
+      // Concurrent misses of the same key each write their own file, and the last one to finish replaces the entry.
+      tmpFile = File.createTempFile(key + "-tmp", ".tmp", cacheDirectory);
+      try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+        oos.writeObject(result.metadata);
+        oos.writeInt(result.content.length);
+        oos.write(result.content);
+      }
+    } catch (IOException e) {
+      LOG.warn("Could not write parse result cache entry {}", entryFile, e);
+      FileUtils.deleteQuietly(tmpFile);
+      return;
+    }
+    synchronized (this) {
+      try {
+        Files.move(tmpFile.toPath(), entryFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        LOG.warn("Could not rename parse result cache entry {} to {}", tmpFile, entryFile, e);
+        FileUtils.deleteQuietly(tmpFile);
+        return;
+      }
+      Long previous = diskEntries.put(key, entryFile.length());
+      if (previous != null) {
+        diskBytes -= previous;
+      }
+      diskBytes += entryFile.length();
+      evictDiskEntries();
+    }
+  }
+
+  private CachedParseResult readEntry(String key) {
+    File entryFile = entryFile(key);
+    try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(entryFile)))) {
+      Metadata metadata = (Metadata) ois.readObject();
+      byte[] content = new byte[ois.readInt()];
+      ois.readFully(content);
+      entryFile.setLastModified(System.currentTimeMillis());
+      return new CachedParseResult(metadata, content);
+    } catch (IOException | ClassNotFoundException | ClassCastException e) {
+      LOG.warn("Could not read parse result cache entry {}, removing it", entryFile, e);
+      synchronized (this) {
+        Long size = diskEntries.remove(key);
+        if (size != null) {
+          diskBytes -= size;
+        }
+        FileUtils.deleteQuietly(entryFile);
+      }
+      return null;
+    }
+  }
+
+  private void evictDiskEntries() {
+    Iterator<Map.Entry<String, Long>> it = diskEntries.entrySet().iterator();
+    while (diskBytes > maxDiskBytes && it.hasNext()) {
+      Map.Entry<String, Long> eldest = it.next();
+      diskBytes -= eldest.getValue();
+      it.remove();
+      FileUtils.deleteQuietly(entryFile(eldest.getKey()));
+    }
+  }
+
+  private synchronized void loadDiskEntries() {
+    File[] files = cacheDirectory.listFiles();
+    if (files == null) {
+      return;
+    }
+    Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+    for (File file : files) {
+      String name = file.getName();
+      if (name.endsWith(ENTRY_SUFFIX)) {
+        diskEntries.put(name.substring(0, name.length() - ENTRY_SUFFIX.length()), file.length());
+        diskBytes += file.length();
+      } else if (name.endsWith(".tmp")) {
+        FileUtils.deleteQuietly(file);
+      }
+    }
+    evictDiskEntries();
+    LOG.info("Loaded {} parse result cache entries ({} bytes) from {}", diskEntries.size(), diskBytes, cacheDirectory);
+  }
+
+  private File entryFile(String key) {
+    return new File(cacheDirectory, key + ENTRY_SUFFIX);
+  }
+
+  static Metadata copy(Metadata metadata) {
+    Metadata copy = new Metadata();
+    for (String name : metadata.names()) {
+      for (String value : metadata.getValues(name)) {
+        copy.add(name, value);
+      }
+    }
+    return copy;
+  }
+
+  private static String sha256(String value) {
+    try {
+      return SpooledInput.toHex(MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package org.apache.tika.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+/**
+ * Inputs and outputs of a parse that {@link TikaProcessPool#parse} moves to and from the fork without copying them
+ * through the heap. They go through the same stages as any other stream, so they combine with every parse option.
+ */
+public class ParseStreams {
+
+  private ParseStreams() {
+  }
+
+  /**
+   * Opens a file as the input of a parse. The file is sent to the fork with a file transfer instead of being copied
+   * through the heap, opened by the fork itself if <code>contentFromPath</code> is set, or served in the ranges that
+   * the fork reads if <code>rangeRequests</code> is set, see {@link #open(RandomAccessContent)}.
+   */
+  public static InputStream open(Path contentFile) throws IOException {
+    return new PathInputStream(contentFile);
+  }
+
+  /**
+   * Opens a document that can be read at any position as the input of a parse. If <code>rangeRequests</code> is set,
+   * a metadata-only parse of an OOXML document, e.g. in remote storage, only fetches the ranges with its central
+   * directory and properties. Other parses, and requests that are served from the parse result cache, coalesced by
+   * the hash of their content or hedged, read the document like a stream.
+   *
+   * @param content closed by the caller.
+   */
+  public static InputStream open(RandomAccessContent content) {
+    return new RandomAccessContentInputStream(content);
+  }
+
+  /**
+   * Creates a file as the content output of a parse. The content is moved from the fork into the file with a file
+   * transfer instead of being copied through the heap, unless the parse result cache is enabled or the request is
+   * coalesced or hedged, which need to see the content. The file holds at most <code>maxBytesToParse</code> bytes.
+   *
+   * @param contentOutputFile created, or truncated if it exists.
+   */
+  public static OutputStream create(Path contentOutputFile) throws IOException {
+    return new FileChannelOutputStream(contentOutputFile);
+  }
+}
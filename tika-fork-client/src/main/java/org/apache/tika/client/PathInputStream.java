@@ -0,0 +1,22 @@
+package org.apache.tika.client;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.nio.file.Path;
+
+/**
+ * A stream over a file that knows the path of the file, so that {@link TikaRunner} can let the fork open the file
+ * itself instead of sending it over the socket when <code>contentFromPath</code> is set.
+ */
+class PathInputStream extends FileInputStream {
+  private final Path path;
+
+  PathInputStream(Path path) throws FileNotFoundException {
+    super(path.toFile());
+    this.path = path;
+  }
+
+  Path getPath() {
+    return path;
+  }
+}
@@ -0,0 +1,25 @@
+package org.apache.tika.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * An input that can be read at any position, e.g. a document in remote storage that supports range reads. Opened with
+ * {@link ParseStreams#open(RandomAccessContent)}, it lets the fork fetch only the ranges it reads when
+ * <code>rangeRequests</code> is set.
+ */
+public interface RandomAccessContent extends Closeable {
+
+  /**
+   * @return the length of the input in bytes.
+   */
+  long length() throws IOException;
+
+  /**
+   * Reads up to <code>length</code> bytes at the position. May be called from another thread than the one that
+   * created the input, but never concurrently.
+   *
+   * @return the number of bytes read, at least one unless the position is at the end of the input, where it is -1.
+   */
+  int read(long position, byte[] buffer, int offset, int length) throws IOException;
+}
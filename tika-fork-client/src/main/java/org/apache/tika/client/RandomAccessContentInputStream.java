@@ -0,0 +1,72 @@
+package org.apache.tika.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A stream over a {@link RandomAccessContent}, so that it goes through the same stages as any other input.
+ * {@link TikaRunner} recognizes it and serves the fork the ranges it asks for instead of the whole stream, as long as
+ * nothing has been read from it yet. It supports mark, which costs nothing since the content can be read again.
+ */
+class RandomAccessContentInputStream extends InputStream {
+  private final RandomAccessContent content;
+  private long position;
+  private long mark;
+
+  RandomAccessContentInputStream(RandomAccessContent content) {
+    this.content = content;
+  }
+
+  RandomAccessContent getContent() {
+    return content;
+  }
+
+  long getPosition() {
+    return position;
+  }
+
+  @Override
+  public int read() throws IOException {
+    byte[] b = new byte[1];
+    return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    int n = content.read(position, b, off, len);
+    if (n > 0) {
+      position += n;
+    }
+    return n;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    long skipped = Math.max(Math.min(n, content.length() - position), 0L);
+    position += skipped;
+    return skipped;
+  }
+
+  @Override
+  public int available() throws IOException {
+    return (int) Math.min(Math.max(content.length() - position, 0L), Integer.MAX_VALUE);
+  }
+
+  @Override
+  public boolean markSupported() {
+    return true;
+  }
+
+  @Override
+  public synchronized void mark(int readlimit) {
+    mark = position;
+  }
+
+  @Override
+  public synchronized void reset() {
+    position = mark;
+  }
+}
@@ -0,0 +1,34 @@
+package org.apache.tika.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Keeps the events of a parse so they can be passed on later, used when it is not yet known whether the parse
+ * result will be used.
+ */
+class RecordingParseListener implements ParseListener {
+  private final List<Consumer<ParseListener>> events = new ArrayList<>();
+
+  @Override
+  public synchronized void onLink(Link link) {
+    events.add(listener -> listener.onLink(link));
+  }
+
+  @Override
+  public synchronized void onEmbedded(EmbeddedDocument embeddedDocument) {
+    events.add(listener -> listener.onEmbedded(embeddedDocument));
+  }
+
+  @Override
+  public synchronized void onChunk(ContentChunk chunk) {
+    events.add(listener -> listener.onChunk(chunk));
+  }
+
+  synchronized void replayTo(ParseListener listener) {
+    for (Consumer<ParseListener> event : events) {
+      event.accept(listener);
+    }
+  }
+}
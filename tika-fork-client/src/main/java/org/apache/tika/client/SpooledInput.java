@@ -0,0 +1,105 @@
+package org.apache.tika.client;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.DeferredFileOutputStream;
+import org.apache.tika.io.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A copy of a caller's input stream that can be read more than once. Small inputs are held in memory, larger
+ * ones are spooled to a temp file in the work directory. The SHA-256 digest of the content is computed while
+ * spooling so that the input can be used as a content-addressed key.
+ */
+public class SpooledInput implements AutoCloseable {
+
+  /**
+   * Prefix of the name of the temp file of a spooled input, see {@link TempFileReaperService}.
+   */
+  static final String SPOOL_FILE_PREFIX = "tikafork-spool-";
+
+  private final DeferredFileOutputStream spool;
+  private final long length;
+  private final String digest;
+
+  private SpooledInput(DeferredFileOutputStream spool, long length, String digest) {
+    this.spool = spool;
+    this.length = length;
+    this.digest = digest;
+  }
+
+  /**
+   * Reads the input stream fully into a spool.
+   *
+   * @param inputStream             the input to copy. It is not closed.
+   * @param workDirectory           where to put the temp file if the input is larger than the threshold
+   * @param memoryThresholdBytes    inputs up to this many bytes are kept in memory
+   * @return the spooled input. Must be closed to remove the temp file.
+   */
+  public static SpooledInput spool(InputStream inputStream, File workDirectory, int memoryThresholdBytes) throws IOException {
+    MessageDigest messageDigest;
+    try {
+      messageDigest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+    DeferredFileOutputStream spool = new DeferredFileOutputStream(memoryThresholdBytes, SPOOL_FILE_PREFIX, ".tmp", workDirectory);
+    long length;
+    try {
+      length = IOUtils.copyLarge(new DigestInputStream(inputStream, messageDigest), spool);
+    } finally {
+      spool.close();
+    }
+    return new SpooledInput(spool, length, toHex(messageDigest.digest()));
+  }
+
+  /**
+   * @return a new stream over the spooled content, positioned at the start.
+   */
+  public InputStream openStream() throws IOException {
+    if (spool.isInMemory()) {
+      return new ByteArrayInputStream(spool.getData());
+    }
+    return new PathInputStream(spool.getFile().toPath());
+  }
+
+  /**
+   * @return the temp file holding the content, or null if the content is held in memory.
+   */
+  public File getFile() {
+    return spool.isInMemory() ? null : spool.getFile();
+  }
+
+  public long getLength() {
+    return length;
+  }
+
+  /**
+   * @return hex encoded SHA-256 of the content.
+   */
+  public String getDigest() {
+    return digest;
+  }
+
+  @Override
+  public void close() {
+    if (!spool.isInMemory()) {
+      FileUtils.deleteQuietly(spool.getFile());
+    }
+  }
+
+  static String toHex(byte[] bytes) {
+    StringBuilder sb = new StringBuilder(bytes.length * 2);
+    for (byte b : bytes) {
+      sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+      sb.append(Character.forDigit(b & 0xF, 16));
+    }
+    return sb.toString();
+  }
+}
@@ -7,6 +7,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
@@ -18,11 +23,32 @@ import java.util.concurrent.TimeUnit;
 
 /**
  * A service that cleans up temp files from the work dir.
+ * <p>
+ * Each fork keeps its temp files in its own directory under the work dir, which {@link TikaProcess} deletes when the
+ * fork is destroyed. This service is the fallback for directories that were left behind, e.g. because the client
+ * was killed. A fork holds a lock on a file in its directory while it runs, so the service only looks at the
+ * directories themselves and deletes the old ones whose lock is free, without listing the files in them.
  */
 public class TempFileReaperService {
 
   private static final Logger LOG = LoggerFactory.getLogger(TempFileReaperService.class);
 
+  /**
+   * Prefix of the name of the temp directory of a fork, followed by its run UUID.
+   */
+  static final String TEMP_DIRECTORY_PREFIX = "tikafork-temp-";
+
+  /**
+   * Name of the file in the temp directory of a fork that the fork keeps locked while it runs.
+   */
+  static final String TEMP_DIRECTORY_LOCK_FILE = "tikafork.lock";
+
+  /**
+   * Prefixes of the names of the temp files that forks and the pool write into the work directory itself.
+   */
+  private static final String[] TEMP_FILE_PREFIXES = {"apache-tika-", SpooledInput.SPOOL_FILE_PREFIX,
+      TikaProcessPool.HEDGE_FILE_PREFIX};
+
   private ScheduledExecutorService scheduledExecutorService;
 
   /**
@@ -56,7 +82,13 @@ public class TempFileReaperService {
             int numDeleted = 0;
 
             for (File file : oldFiles) {
-              if (file.getName().startsWith("apache-tika-") && file.getName().endsWith(".tmp")) {
+              if (file.isDirectory() && file.getName().startsWith(TEMP_DIRECTORY_PREFIX)) {
+                if (isAbandoned(file)) {
+                  ++numDeleted;
+                  boolean deleted = FileUtils.deleteQuietly(file);
+                  LOG.debug("Deleted the temp directory of a dead fork {} - {}", file.getAbsolutePath(), deleted);
+                }
+              } else if (isTempFile(file)) {
                 ++numDeleted;
                 boolean deleted = FileUtils.deleteQuietly(file);
                 LOG.debug("Deleted {} - ", file.getAbsolutePath(), deleted);
@@ -65,7 +97,7 @@ public class TempFileReaperService {
               }
             }
 
-            LOG.info("Tika fork parser's TempFileReaperService deleted {} temp files from {} during this iteration.", numDeleted, workDirectoryPath);
+            LOG.info("Tika fork parser's TempFileReaperService deleted {} temp files and directories from {} during this iteration.", numDeleted, workDirectoryPath);
           } catch (Exception e) {
             LOG.error("Could not run temp file reaper service", e);
             throw new RuntimeException("Could not run the schedule", e);
@@ -76,6 +108,42 @@ public class TempFileReaperService {
         tempFileReaperJobDelayUnit);
   }
 
+  private static boolean isTempFile(File file) {
+    if (!file.isFile() || !file.getName().endsWith(".tmp")) {
+      return false;
+    }
+    for (String prefix : TEMP_FILE_PREFIXES) {
+      if (file.getName().startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return whether the temp directory belongs to a fork that is not running anymore, or that never got to start.
+   */
+  static boolean isAbandoned(File tempDirectory) {
+    File lockFile = new File(tempDirectory, TEMP_DIRECTORY_LOCK_FILE);
+    if (!lockFile.exists()) {
+      return true;
+    }
+    try (FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.WRITE)) {
+      FileLock lock = channel.tryLock();
+      if (lock == null) {
+        return false;
+      }
+      lock.release();
+      return true;
+    } catch (OverlappingFileLockException e) {
+      // Locked by this JVM.
+      return false;
+    } catch (IOException e) {
+      LOG.debug("Could not check the lock of {}", tempDirectory.getAbsolutePath(), e);
+      return false;
+    }
+  }
+
   /**
    * Shut down the executor, cancelling any pending jobs.
    */
@@ -1,5 +1,6 @@
 package org.apache.tika.client;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.tika.metadata.Metadata;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,6 +20,7 @@ import java.util.Properties;
 import java.util.Scanner;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 public class TikaProcess {
@@ -34,6 +36,7 @@ public class TikaProcess {
     }
   }
 
+  static private final long WAIT_FOR_EXIT_MS = 5000;
   static private final long WAIT_FOR_PORTS_FOR_MAX_MS = Long.parseLong(System.getProperty("org.apache.tika.ports.timeout.ms", String.valueOf(2 * 60 * 60 * 1000)));
 
   private int contentInPort;
@@ -45,6 +48,7 @@ public class TikaProcess {
   private String parseConfigPropertiesFilePath;
   private String parseContextPropertiesFilePath;
   private String portsFilePath;
+  private File tempDirectory;
   private boolean parseContent;
   private TikaRunner tikaRunner;
 
@@ -58,6 +62,11 @@ public class TikaProcess {
     parseConfigPropertiesFilePath = workDirectoryPath + File.separator + "tikafork-config-" + runUuid + ".properties";
     parseContextPropertiesFilePath = workDirectoryPath + File.separator + "tikafork-context-" + runUuid + ".properties";
     portsFilePath = workDirectoryPath + File.separator + "tikafork-ports-" + runUuid + ".properties";
+    if (workDirectoryPath != null && workDirectoryPath.trim().length() > 0) {
+      // The fork's own temp directory, so that its temp files can be removed with it.
+      tempDirectory = new File(workDirectoryPath, TempFileReaperService.TEMP_DIRECTORY_PREFIX + runUuid);
+      tempDirectory.mkdirs();
+    }
 
     command = new ArrayList<>();
     command.add(javaPath == null || javaPath.trim().length() == 0 ? CURRENT_JAVA_BINARY : javaPath);
@@ -65,6 +74,10 @@ public class TikaProcess {
       command.add("-Xmx" + tikaMaxHeapSizeMb + "m");
     }
     command.add("-Djava.awt.headless=true");
+    if (tempDirectory != null) {
+      // Files.createTempFile reads the temp directory once, so the fork cannot change it after it started.
+      command.add("-Djava.io.tmpdir=" + tempDirectory.getAbsolutePath());
+    }
     command.add("-cp");
     command.add(tikaDistPath + File.separator + "*");
     command.add("org.apache.tika.fork.main.TikaForkMain");
@@ -83,6 +96,10 @@ public class TikaProcess {
       command.add("-workDirectoryPath");
       command.add(workDirectoryPath);
     }
+    if (tempDirectory != null) {
+      command.add("-tempDirectoryPath");
+      command.add(tempDirectory.getAbsolutePath());
+    }
     try {
       process = new ProcessBuilder(command)
         .start();
@@ -125,15 +142,31 @@ public class TikaProcess {
       if (parseContent) {
         contentOutPort = ports.get(2);
       }
-      tikaRunner = new TikaRunner(contentInPort, metadataOutPort, contentOutPort, parseContent);
+      tikaRunner = new TikaRunner(contentInPort, metadataOutPort, contentOutPort, parserProperties);
     } catch (IOException e) {
+      deleteTempDirectory();
       throw new RuntimeException("Could not start tika external with command " + command, e);
+    } catch (RuntimeException e) {
+      if (process != null) {
+        process.destroy();
+      }
+      deleteTempDirectory();
+      throw e;
     }
   }
 
   public void close() {
     process.destroy();
     LOG.info("Destroyed TikaProcess that had command: {}", command);
+    try {
+      // Let the fork stop writing temp files before they are removed.
+      if (!process.waitFor(WAIT_FOR_EXIT_MS, TimeUnit.MILLISECONDS)) {
+        LOG.debug("TikaProcess {} has not exited yet, its temp directory is left to the TempFileReaperService", runUuid);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    deleteTempDirectory();
     File parseContextPropertiesFile = new File(parseContextPropertiesFilePath);
     if (parseContextPropertiesFile.exists()) {
       try {
@@ -152,6 +185,12 @@ public class TikaProcess {
     }
   }
 
+  private void deleteTempDirectory() {
+    if (tempDirectory != null) {
+      FileUtils.deleteQuietly(tempDirectory);
+    }
+  }
+
   private void inheritIO(final InputStream src) {
     new Thread(() -> {
       Scanner sc = new Scanner(src);
@@ -173,4 +212,14 @@ public class TikaProcess {
                         long maxBytesToParse) throws InterruptedException, ExecutionException, TimeoutException {
     return tikaRunner.parse(baseUri, contentType, contentInputStream, contentOutputStream, abortAfterMs, maxBytesToParse);
   }
+
+  public Metadata parse(String baseUri,
+                        String contentType,
+                        InputStream contentInputStream,
+                        OutputStream contentOutputStream,
+                        long abortAfterMs,
+                        long maxBytesToParse,
+                        ParseListener parseListener) throws InterruptedException, ExecutionException, TimeoutException {
+    return tikaRunner.parse(baseUri, contentType, contentInputStream, contentOutputStream, abortAfterMs, maxBytesToParse, parseListener);
+  }
 }
@@ -1,5 +1,7 @@
 package org.apache.tika.client;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.DeferredFileOutputStream;
 import org.apache.commons.pool2.impl.GenericObjectPool;
 import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.apache.tika.metadata.Metadata;
@@ -7,12 +9,21 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalUnit;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class TikaProcessPool implements AutoCloseable {
   private static final Logger LOG = LoggerFactory.getLogger(TikaProcessPool.class);
@@ -21,9 +32,39 @@ public class TikaProcessPool implements AutoCloseable {
   private static final TimeUnit DEFAULT_TEMP_REAPER_JOB_UNIT = TimeUnit.MINUTES;
   private static final long DEFAULT_TEMP_REAPER_JOB_INITIAL_DELAY = 0;
   private static final long DEFAULT_TEMP_REAPER_JOB_DELAY = 5;
+  private static final String DEFAULT_INPUT_SPOOL_THRESHOLD_BYTES = String.valueOf(1024 * 1024);
+  private static final String DEFAULT_CACHE_MAX_MEMORY_BYTES = String.valueOf(64L * 1024 * 1024);
+  private static final String DEFAULT_CACHE_MAX_DISK_BYTES = String.valueOf(1024L * 1024 * 1024);
+  private static final String DEFAULT_CACHE_MAX_ENTRY_BYTES = String.valueOf(8L * 1024 * 1024);
+  /**
+   * Prefix of the name of the temp file that the content of a hedged attempt is buffered in, see
+   * {@link TempFileReaperService}.
+   */
+  static final String HEDGE_FILE_PREFIX = "tikafork-hedge-";
+  private static final String DEFAULT_COALESCE_MAX_CONTENT_BYTES = String.valueOf(16L * 1024 * 1024);
+  private static final String DEFAULT_ADMISSION_MAX_QUEUE_SIZE = "1000";
+  private static final String DEFAULT_ADMISSION_STARVATION_THRESHOLD_MS = "30000";
+  private static final String DEFAULT_ADMISSION_PRIORITY_WEIGHTS = "8,4,1";
+  private static final String DEFAULT_HEDGE_LATENCY_PERCENTILE = "95";
+  private static final String DEFAULT_HEDGE_LATENCY_WINDOW_SIZE = "200";
+  private static final String DEFAULT_HEDGE_MIN_SAMPLES = "20";
 
   private GenericObjectPool pool;
   private TempFileReaperService tempFileReaperService;
+  private File workDirectory;
+  private int inputSpoolThresholdBytes;
+  private ParseResultCache parseResultCache;
+  private String parsePropertiesDigest;
+  private ParseRequestCoalescer requestCoalescer;
+  private long maxWaitMillis;
+  private AdmissionController admissionController;
+  private ContentTypeFilter contentTypeFilter;
+  private ParseLatencyTracker latencyTracker;
+  private long hedgeDelayMs;
+  private double hedgeLatencyPercentile;
+  private ExecutorService hedgeExecutor;
+  private final AtomicLong numHedged = new AtomicLong();
+  private final AtomicLong numHedgeWins = new AtomicLong();
 
   public TikaProcessPool(String javaPath,
                          String workDirectoryPath,
@@ -77,7 +118,50 @@ public class TikaProcessPool implements AutoCloseable {
                          long tempFileReaperJobDelay,
                          TimeUnit tempFileReaperJobDelayUnit) throws Exception {
     // Make sure the work directory exists.
-    new File(workDirectoryPath).mkdirs();
+    workDirectory = new File(workDirectoryPath);
+    workDirectory.mkdirs();
+
+    inputSpoolThresholdBytes = Integer.parseInt(parseProperties.getProperty("inputSpoolThresholdBytes", DEFAULT_INPUT_SPOOL_THRESHOLD_BYTES));
+    if (Boolean.parseBoolean(parseProperties.getProperty("parseResultCacheEnabled", "false"))) {
+      parseResultCache = new ParseResultCache(new File(workDirectory, "tikafork-cache"),
+          Long.parseLong(parseProperties.getProperty("parseResultCacheMaxMemoryBytes", DEFAULT_CACHE_MAX_MEMORY_BYTES)),
+          Long.parseLong(parseProperties.getProperty("parseResultCacheMaxDiskBytes", DEFAULT_CACHE_MAX_DISK_BYTES)),
+          Long.parseLong(parseProperties.getProperty("parseResultCacheMaxEntryBytes", DEFAULT_CACHE_MAX_ENTRY_BYTES)));
+      parsePropertiesDigest = ParseResultCache.digestProperties(parseProperties);
+    }
+    if (Boolean.parseBoolean(parseProperties.getProperty("coalesceRequests", "false"))) {
+      requestCoalescer = new ParseRequestCoalescer(
+          Long.parseLong(parseProperties.getProperty("coalesceMaxContentBytes", DEFAULT_COALESCE_MAX_CONTENT_BYTES)));
+    }
+    this.maxWaitMillis = maxWaitMillis;
+    if (Boolean.parseBoolean(parseProperties.getProperty("admissionControlEnabled", "false"))) {
+      admissionController = new AdmissionController(
+          Integer.parseInt(parseProperties.getProperty("admissionMaxConcurrentParses",
+              String.valueOf(numMaxTotal < 0 ? Integer.MAX_VALUE : numMaxTotal))),
+          Integer.parseInt(parseProperties.getProperty("admissionMaxQueueSize", DEFAULT_ADMISSION_MAX_QUEUE_SIZE)),
+          Long.parseLong(parseProperties.getProperty("admissionMaxQueueTimeMs", String.valueOf(maxWaitMillis))),
+          AdmissionController.ShedPolicy.valueOf(parseProperties.getProperty("admissionShedPolicy",
+              AdmissionController.ShedPolicy.REJECT_NEWEST.name())),
+          AdmissionController.SchedulingPolicy.valueOf(parseProperties.getProperty("admissionSchedulingPolicy",
+              AdmissionController.SchedulingPolicy.STRICT.name())),
+          Long.parseLong(parseProperties.getProperty("admissionStarvationThresholdMs", DEFAULT_ADMISSION_STARVATION_THRESHOLD_MS)),
+          parseWeights(parseProperties.getProperty("admissionPriorityWeights", DEFAULT_ADMISSION_PRIORITY_WEIGHTS)));
+    }
+    String allowedContentTypes = parseProperties.getProperty("allowedContentTypes", "");
+    String deniedContentTypes = parseProperties.getProperty("deniedContentTypes", "");
+    if (!allowedContentTypes.trim().isEmpty() || !deniedContentTypes.trim().isEmpty()) {
+      contentTypeFilter = new ContentTypeFilter(allowedContentTypes, deniedContentTypes);
+    }
+    latencyTracker = new ParseLatencyTracker(
+        Integer.parseInt(parseProperties.getProperty("hedgeLatencyWindowSize", DEFAULT_HEDGE_LATENCY_WINDOW_SIZE)),
+        Integer.parseInt(parseProperties.getProperty("hedgeMinSamples", DEFAULT_HEDGE_MIN_SAMPLES)));
+    hedgeDelayMs = Long.parseLong(parseProperties.getProperty("hedgeDelayMs", "-1"));
+    hedgeLatencyPercentile = Double.parseDouble(parseProperties.getProperty("hedgeLatencyPercentile", DEFAULT_HEDGE_LATENCY_PERCENTILE));
+    hedgeExecutor = Executors.newCachedThreadPool(r -> {
+      Thread thread = new Thread(r, "tikafork-hedge");
+      thread.setDaemon(true);
+      return thread;
+    });
 
     pool = initializePool(javaPath,
         workDirectoryPath,
@@ -103,24 +187,432 @@ public class TikaProcessPool implements AutoCloseable {
 
   @Override
   public void close() {
+    hedgeExecutor.shutdownNow();
     pool.close();
     tempFileReaperService.close();
   }
 
+  /**
+   * @return the parse result cache, or null if <code>parseResultCacheEnabled</code> is not set.
+   */
+  public ParseResultCache getParseResultCache() {
+    return parseResultCache;
+  }
+
+  /**
+   * @return the content type filter, or null if neither <code>allowedContentTypes</code> nor
+   * <code>deniedContentTypes</code> is set.
+   */
+  public ContentTypeFilter getContentTypeFilter() {
+    return contentTypeFilter;
+  }
+
+  /**
+   * @return the request coalescer, or null if <code>coalesceRequests</code> is not set.
+   */
+  public ParseRequestCoalescer getRequestCoalescer() {
+    return requestCoalescer;
+  }
+
   public Metadata parse(String baseUri,
                         String contentType,
                         InputStream contentInputStream,
                         OutputStream contentOutputStream,
                         long abortAfterMs,
                         long maxBytesToParse) throws Exception {
+    return parse(baseUri, contentType, contentInputStream, contentOutputStream, abortAfterMs, maxBytesToParse,
+        new ParseOptions());
+  }
+
+  /**
+   * Parse a document. If <code>allowedContentTypes</code> or <code>deniedContentTypes</code> is set, documents of a
+   * rejected content type are not sent to a fork, see {@link ContentTypeFilter}. Files, documents that can be read at
+   * any position and content output files are passed as {@link ParseStreams}.
+   *
+   * @param options the coalesce key, priority, hedging and listener of the request.
+   * @throws ParseRejectedException if admission control is enabled and the request was not admitted.
+   */
+  public Metadata parse(String baseUri,
+                        String contentType,
+                        InputStream contentInputStream,
+                        OutputStream contentOutputStream,
+                        long abortAfterMs,
+                        long maxBytesToParse,
+                        ParseOptions options) throws Exception {
+    if (contentTypeFilter != null) {
+      contentInputStream = ContentTypeFilter.detectable(contentInputStream);
+      contentType = contentTypeFilter.detect(baseUri, contentType, contentInputStream);
+      if (!contentTypeFilter.isAllowed(contentType)) {
+        return contentTypeFilter.reject(baseUri, contentType);
+      }
+    }
+    return parse(new ParseRequest(baseUri, contentType, abortAfterMs, maxBytesToParse, options),
+        contentInputStream,
+        contentOutputStream);
+  }
+
+  /**
+   * Parse a document only if a fork is available right away. Requires <code>admissionControlEnabled</code>.
+   *
+   * @return the result, which is not accepted if the request would have had to wait for a fork. Either way it
+   * reports the queue depth so that the caller can slow down.
+   */
+  public TryParseResult tryParse(String baseUri,
+                                 String contentType,
+                                 InputStream contentInputStream,
+                                 OutputStream contentOutputStream,
+                                 long abortAfterMs,
+                                 long maxBytesToParse) throws Exception {
+    if (admissionController == null) {
+      throw new IllegalStateException("tryParse requires the admissionControlEnabled parse property");
+    }
+    if (contentTypeFilter != null) {
+      contentInputStream = ContentTypeFilter.detectable(contentInputStream);
+      contentType = contentTypeFilter.detect(baseUri, contentType, contentInputStream);
+      if (!contentTypeFilter.isAllowed(contentType)) {
+        return new TryParseResult(contentTypeFilter.reject(baseUri, contentType), admissionController.getQueueDepth());
+      }
+    }
+    int queueDepth = admissionController.getQueueDepth();
+    AdmissionController.Permit permit = admissionController.tryAcquire();
+    if (permit == null) {
+      return new TryParseResult(null, queueDepth);
+    }
+    try {
+      ParseRequest request = new ParseRequest(baseUri, contentType, abortAfterMs, maxBytesToParse, new ParseOptions());
+      request.permit = permit;
+      return new TryParseResult(parse(request, contentInputStream, contentOutputStream), queueDepth);
+    } finally {
+      permit.close();
+    }
+  }
+
+  /**
+   * Parses the comma separated HIGH,NORMAL,LOW scheduling weights.
+   */
+  private static int[] parseWeights(String weights) {
+    String[] parts = weights.split(",");
+    int[] result = new int[parts.length];
+    for (int i = 0; i < parts.length; ++i) {
+      result[i] = Integer.parseInt(parts[i].trim());
+    }
+    return result;
+  }
+
+  /**
+   * @return the admission controller, or null if <code>admissionControlEnabled</code> is not set.
+   */
+  public AdmissionController getAdmissionController() {
+    return admissionController;
+  }
+
+  /**
+   * @return the number of requests waiting for a fork. Always 0 if admission control is not enabled.
+   */
+  public int getQueueDepth() {
+    return admissionController == null ? 0 : admissionController.getQueueDepth();
+  }
+
+  /**
+   * @return the recent parse latencies per content type that hedged parses are measured against.
+   */
+  public ParseLatencyTracker getLatencyTracker() {
+    return latencyTracker;
+  }
+
+  /**
+   * @return the number of hedged parses that sent a second copy of the document to another fork.
+   */
+  public long getNumHedged() {
+    return numHedged.get();
+  }
+
+  /**
+   * @return the number of hedged parses where the second copy finished first.
+   */
+  public long getNumHedgeWins() {
+    return numHedgeWins.get();
+  }
+
+  private Metadata parse(ParseRequest request,
+                         InputStream contentInputStream,
+                         OutputStream contentOutputStream) throws Exception {
+    if ((parseResultCache == null && requestCoalescer == null) || request.listener != null) {
+      return parseStream(request, contentInputStream, contentOutputStream);
+    }
+    if (parseResultCache == null && request.coalesceKey != null) {
+      // No need to read the input up front, the caller told us which requests are identical.
+      return requestCoalescer.parse(request.coalesceKey + "\n" + request.contentType + "\n" + request.maxBytesToParse,
+          contentOutputStream,
+          coalesceWaitMs(request.abortAfterMs),
+          out -> parseStream(request, contentInputStream, out));
+    }
+    try (SpooledInput spooledInput = SpooledInput.spool(contentInputStream, workDirectory, inputSpoolThresholdBytes)) {
+      String key = ParseResultCache.key(spooledInput.getDigest(), request.contentType, request.maxBytesToParse, parsePropertiesDigest);
+      if (parseResultCache != null) {
+        ParseResultCache.CachedParseResult cached = parseResultCache.get(key);
+        if (cached != null) {
+          LOG.debug("Parse result cache hit for {}", request.baseUri);
+          contentOutputStream.write(cached.getContent());
+          return cached.getMetadata();
+        }
+      }
+      ParseRequestCoalescer.ParseCall call = out -> parseSpooled(request, key, spooledInput, out);
+      if (requestCoalescer == null) {
+        return call.parse(contentOutputStream);
+      }
+      return requestCoalescer.parse(request.coalesceKey != null ? request.coalesceKey + "\n" + request.contentType + "\n" + request.maxBytesToParse : key,
+          contentOutputStream,
+          coalesceWaitMs(request.abortAfterMs),
+          call);
+    }
+  }
+
+  /**
+   * A request waiting on an identical one can wait as long as it would have waited for a fork plus the parse.
+   */
+  private long coalesceWaitMs(long abortAfterMs) {
+    return maxWaitMillis < 0 ? Long.MAX_VALUE : abortAfterMs + maxWaitMillis;
+  }
+
+  private Metadata parseSpooled(ParseRequest request,
+                                String key,
+                                SpooledInput spooledInput,
+                                OutputStream contentOutputStream) throws Exception {
+    if (parseResultCache == null) {
+      return parseSpooledInput(request, spooledInput, contentOutputStream);
+    }
+    CapturingOutputStream capturingOutputStream = new CapturingOutputStream(contentOutputStream, parseResultCache.getMaxEntryBytes());
+    Metadata metadata = parseSpooledInput(request, spooledInput, capturingOutputStream);
+    // An empty metadata means the fork could not parse the document, which may be transient.
+    if (metadata.size() > 0 && !capturingOutputStream.isOverflowed()
+        && metadata.get(TikaRunner.TRUNCATED_BY_TIMEOUT) == null) {
+      parseResultCache.put(key, metadata, capturingOutputStream.toByteArray());
+    }
+    return metadata;
+  }
+
+  /**
+   * Parses the caller's stream, spooling it first if the request is hedged since a hedged request may need to send
+   * it twice.
+   */
+  private Metadata parseStream(ParseRequest request,
+                               InputStream contentInputStream,
+                               OutputStream contentOutputStream) throws Exception {
+    if (!request.hedge) {
+      return admitAndParse(request, contentInputStream, sizeHint(contentInputStream), contentOutputStream);
+    }
+    try (SpooledInput spooledInput = SpooledInput.spool(contentInputStream, workDirectory, inputSpoolThresholdBytes)) {
+      return parseSpooledInput(request, spooledInput, contentOutputStream);
+    }
+  }
+
+  private Metadata parseSpooledInput(ParseRequest request,
+                                     SpooledInput spooledInput,
+                                     OutputStream contentOutputStream) throws Exception {
+    long delayMs = request.hedge ? hedgeDelayMs(request.contentType) : -1L;
+    if (delayMs < 0) {
+      try (InputStream spooledInputStream = spooledInput.openStream()) {
+        return admitAndParse(request, spooledInputStream, spooledInput.getLength(), contentOutputStream);
+      }
+    }
+    return hedgedParse(request, spooledInput, delayMs, contentOutputStream);
+  }
+
+  /**
+   * @return how long a hedged parse of the content type waits before it sends a second copy, or -1 if there is no
+   * delay configured and not enough parses of the content type have been seen yet.
+   */
+  private long hedgeDelayMs(String contentType) {
+    if (hedgeDelayMs >= 0) {
+      return hedgeDelayMs;
+    }
+    return latencyTracker.getPercentileMs(contentType, hedgeLatencyPercentile);
+  }
+
+  private Metadata hedgedParse(ParseRequest request,
+                               SpooledInput spooledInput,
+                               long delayMs,
+                               OutputStream contentOutputStream) throws Exception {
+    CompletionService<HedgeAttempt> completionService = new ExecutorCompletionService<>(hedgeExecutor);
+    HedgeAttempt primary = new HedgeAttempt(request, spooledInput, null);
+    HedgeAttempt secondary = null;
+    try {
+      primary.future = completionService.submit(primary);
+      Future<HedgeAttempt> done = completionService.poll(delayMs, TimeUnit.MILLISECONDS);
+      if (done == null) {
+        secondary = startHedge(request, spooledInput, completionService);
+      }
+      int numPending = secondary == null ? 1 : 2;
+      Exception failure = null;
+      while (numPending-- > 0) {
+        if (done == null) {
+          done = completionService.take();
+        }
+        try {
+          HedgeAttempt winner = done.get();
+          if (winner == secondary) {
+            numHedgeWins.incrementAndGet();
+          }
+          winner.content.writeTo(contentOutputStream);
+          if (winner.events != null) {
+            winner.events.replayTo(request.listener);
+          }
+          return winner.metadata;
+        } catch (ExecutionException e) {
+          // Wait for the other attempt, it may still succeed.
+          if (failure == null) {
+            failure = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+          }
+        }
+        done = null;
+      }
+      throw failure;
+    } finally {
+      // The loser is interrupted, which makes it give up its fork. The fork is invalidated and destroyed.
+      primary.abandon();
+      if (secondary != null) {
+        secondary.abandon();
+      }
+    }
+  }
+
+  /**
+   * Sends the second copy of a hedged parse, but only to a fork that is idle right now. Starting a new fork or
+   * waiting in the admission queue would take longer than the parse that is already running.
+   *
+   * @return the second attempt, or null if there was no idle fork.
+   */
+  private HedgeAttempt startHedge(ParseRequest request,
+                                  SpooledInput spooledInput,
+                                  CompletionService<HedgeAttempt> completionService) {
+    if (pool.getNumIdle() == 0) {
+      LOG.debug("No idle fork to hedge the parse of {}", request.baseUri);
+      return null;
+    }
+    AdmissionController.Permit permit = null;
+    if (admissionController != null) {
+      permit = admissionController.tryAcquire();
+      if (permit == null) {
+        LOG.debug("No capacity to hedge the parse of {}", request.baseUri);
+        return null;
+      }
+    }
+    LOG.debug("Hedging the parse of {}", request.baseUri);
+    numHedged.incrementAndGet();
+    HedgeAttempt secondary = new HedgeAttempt(request.withPermit(permit), spooledInput, permit);
+    secondary.future = completionService.submit(secondary);
+    return secondary;
+  }
+
+  /**
+   * One of the two parses of a hedged request. The content is buffered, in memory or in the work directory, and the
+   * listener events are recorded, until it is known which attempt won.
+   */
+  private class HedgeAttempt implements Callable<HedgeAttempt> {
+    private final ParseRequest request;
+    private final SpooledInput spooledInput;
+    private final AdmissionController.Permit ownPermit;
+    private final DeferredFileOutputStream content;
+    private final RecordingParseListener events;
+    private Future<HedgeAttempt> future;
+    private Metadata metadata;
+    private boolean finished;
+    private boolean abandoned;
+
+    HedgeAttempt(ParseRequest request, SpooledInput spooledInput, AdmissionController.Permit ownPermit) {
+      events = request.listener == null ? null : new RecordingParseListener();
+      this.request = events == null ? request : request.withListener(events);
+      this.spooledInput = spooledInput;
+      this.ownPermit = ownPermit;
+      content = new DeferredFileOutputStream(inputSpoolThresholdBytes, HEDGE_FILE_PREFIX, ".tmp",
+          workDirectory);
+    }
+
+    @Override
+    public HedgeAttempt call() throws Exception {
+      try (InputStream spooledInputStream = spooledInput.openStream()) {
+        metadata = admitAndParse(request, spooledInputStream, spooledInput.getLength(), content);
+        return this;
+      } finally {
+        content.close();
+        if (ownPermit != null) {
+          ownPermit.close();
+        }
+        finish();
+      }
+    }
+
+    private synchronized void finish() {
+      finished = true;
+      if (abandoned) {
+        deleteContent();
+      }
+    }
+
+    /**
+     * Cancels the attempt if it is still running, and removes its buffered content once it has stopped.
+     */
+    void abandon() {
+      future.cancel(true);
+      synchronized (this) {
+        abandoned = true;
+        if (finished) {
+          deleteContent();
+        }
+      }
+    }
+
+    private void deleteContent() {
+      if (!content.isInMemory()) {
+        FileUtils.deleteQuietly(content.getFile());
+      }
+    }
+  }
+
+  /**
+   * Best effort size of the remaining input, used to pick which request to shed.
+   */
+  private static long sizeHint(InputStream contentInputStream) {
+    try {
+      return contentInputStream.available();
+    } catch (IOException e) {
+      return 0L;
+    }
+  }
+
+  private Metadata admitAndParse(ParseRequest request,
+                                 InputStream contentInputStream,
+                                 long sizeHint,
+                                 OutputStream contentOutputStream) throws Exception {
+    AdmissionController.Permit permit = null;
+    if (admissionController != null && request.permit == null) {
+      permit = admissionController.acquire(request.priority, sizeHint);
+    }
+    try {
+      return parseWithProcess(request, contentInputStream, contentOutputStream);
+    } finally {
+      if (permit != null) {
+        permit.close();
+      }
+    }
+  }
+
+  private Metadata parseWithProcess(ParseRequest request,
+                                    InputStream contentInputStream,
+                                    OutputStream contentOutputStream) throws Exception {
     TikaProcess process = (TikaProcess) pool.borrowObject();
     try {
-      return process.parse(baseUri,
-          contentType,
+      long startMs = System.currentTimeMillis();
+      Metadata metadata = process.parse(request.baseUri,
+          request.contentType,
           contentInputStream,
           contentOutputStream,
-          abortAfterMs,
-          maxBytesToParse);
+          request.abortAfterMs,
+          request.maxBytesToParse,
+          request.listener);
+      latencyTracker.record(request.contentType, System.currentTimeMillis() - startMs);
+      return metadata;
     } catch (Exception e) {
       pool.invalidateObject(process);
       // Do not return the object to the pool twice
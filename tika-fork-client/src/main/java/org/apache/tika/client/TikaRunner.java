@@ -1,19 +1,33 @@
 package org.apache.tika.client;
 
 import org.apache.commons.io.input.BoundedInputStream;
-import org.apache.tika.io.IOUtils;
 import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.mime.MediaType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.OutputStream;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -29,9 +43,46 @@ public class TikaRunner {
   private int metadataOutPort = 0;
   private int contentOutPort = 0;
   private boolean parseContent;
-  private static final int DEFAULT_BUFFER_SIZE = 1024 * 4;
+  private long partialResultsGraceMs = -1;
+  private int bufferSize = DEFAULT_BUFFER_SIZE;
+  private boolean contentFromPath;
+  private boolean rangeRequests;
+  private boolean metadataOnly;
+  private int inputMemoryThresholdBytes = DEFAULT_INPUT_MEMORY_THRESHOLD_BYTES;
+  static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+  // The default of the fork.
+  private static final int DEFAULT_INPUT_MEMORY_THRESHOLD_BYTES = 1024 * 1024;
   private static final int EOF = -1;
 
+  /**
+   * Names of the request header fields that precede the content on the content in socket.
+   */
+  static final String HEADER_BASE_URI = "baseUri";
+  static final String HEADER_CONTENT_TYPE = "contentType";
+  static final String HEADER_MAX_BYTES_TO_PARSE = "maxBytesToParse";
+  static final String HEADER_SEND_LINKS = "sendLinks";
+  static final String HEADER_SEND_EMBEDDED = "sendEmbedded";
+  static final String HEADER_PARSE_DEADLINE_MS = "parseDeadlineMs";
+  static final String HEADER_SEND_CHUNKS = "sendChunks";
+  static final String HEADER_CONTENT_LENGTH = "contentLength";
+  static final String HEADER_CONTENT_PATH = "contentPath";
+  static final String HEADER_CONTENT_RANGES = "contentRanges";
+
+  /**
+   * Types of the frames read from the metadata out socket. Link, embedded resource and content chunk frames come
+   * while the document is parsed and the metadata frame comes last.
+   */
+  static final byte FRAME_METADATA = 0;
+  static final byte FRAME_LINK = 1;
+  static final byte FRAME_EMBEDDED = 2;
+  static final byte FRAME_CHUNK = 3;
+
+  /**
+   * Set in the metadata when the fork stopped the parse at the deadline and the result only has what was extracted
+   * up to then.
+   */
+  public static final String TRUNCATED_BY_TIMEOUT = TikaCoreProperties.TIKA_META_EXCEPTION_PREFIX + "truncated_by_timeout";
+
   class TikaRunnerThreadFactory implements ThreadFactory {
     public Thread newThread(Runnable r) {
       return new Thread(r, "tikarunner");
@@ -48,24 +99,73 @@ public class TikaRunner {
     this.parseContent = parseContent;
   }
 
+  /**
+   * Takes its settings from the parse properties of the pool:
+   * <ul>
+   *   <li><code>parseContent</code>: whether the content is read from the content out port.</li>
+   *   <li><code>returnPartialResultsOnTimeout</code> and <code>partialResultsGraceMs</code>: the fork is asked to stop
+   *   parsing this long before the abort time of a request and to send back the text and metadata it has so far, with
+   *   {@link #TRUNCATED_BY_TIMEOUT} set.</li>
+   *   <li><code>transferBufferSize</code>: size of the buffers that the input and the content are copied through.
+   *   Inputs that are a {@link FileInputStream} are sent to the fork without copying them through a buffer.</li>
+   *   <li><code>contentFromPath</code>: when the input is a file that the pool opened from a path, send the path
+   *   instead of the content and let the fork open the file. Takes precedence over range requests.</li>
+   *   <li><code>rangeRequests</code>, with <code>metadataOnly</code> and <code>inputMemoryThresholdBytes</code>: when
+   *   the fork only reads parts of the input, let it request them instead of sending the whole input, see
+   *   {@link #rangeSource}.</li>
+   * </ul>
+   */
+  public TikaRunner(int contentInPort,
+                    int metadataOutPort,
+                    int contentOutPort,
+                    Properties parserProperties) {
+    this(contentInPort, metadataOutPort, contentOutPort,
+        Boolean.parseBoolean(parserProperties.getProperty("parseContent", "false")));
+    if (Boolean.parseBoolean(parserProperties.getProperty("returnPartialResultsOnTimeout", "false"))) {
+      partialResultsGraceMs = Long.parseLong(parserProperties.getProperty("partialResultsGraceMs", "2000"));
+    }
+    bufferSize = Integer.parseInt(parserProperties.getProperty("transferBufferSize",
+        String.valueOf(DEFAULT_BUFFER_SIZE)));
+    contentFromPath = Boolean.parseBoolean(parserProperties.getProperty("contentFromPath", "false"));
+    rangeRequests = Boolean.parseBoolean(parserProperties.getProperty("rangeRequests", "false"));
+    metadataOnly = Boolean.parseBoolean(parserProperties.getProperty("metadataOnly", "false"));
+    inputMemoryThresholdBytes = Integer.parseInt(parserProperties.getProperty("inputMemoryThresholdBytes",
+        String.valueOf(DEFAULT_INPUT_MEMORY_THRESHOLD_BYTES)));
+  }
+
   public Metadata parse(String baseUri,
                         String contentType,
                         InputStream contentInStream,
                         OutputStream contentOutputStream,
                         long abortAfterMs,
                         long maxBytesToParse) throws InterruptedException, ExecutionException, TimeoutException {
+    return parse(baseUri, contentType, contentInStream, contentOutputStream, abortAfterMs, maxBytesToParse, null);
+  }
+
+  /**
+   * @param parseListener gets the links and other results that the fork streams back. May be null.
+   */
+  public Metadata parse(String baseUri,
+                        String contentType,
+                        InputStream contentInStream,
+                        OutputStream contentOutputStream,
+                        long abortAfterMs,
+                        long maxBytesToParse,
+                        ParseListener parseListener) throws InterruptedException, ExecutionException, TimeoutException {
     ExecutorService es = Executors.newFixedThreadPool(3, new TikaRunnerThreadFactory());
+    long parseDeadlineMs = parseDeadlineMs(abortAfterMs);
     try {
       es.submit(() -> {
         try {
-          writeContent(baseUri, contentType, contentInPort, contentInStream);
+          writeContent(baseUri, contentType, maxBytesToParse, parseListener != null, parseDeadlineMs, contentInPort,
+              contentInStream);
         } catch (Exception e) {
           throw new RuntimeException("Failed to send content stream to forked Tika parser JVM", e);
         }
       });
       Future<Metadata> metadataFuture = es.submit(() -> {
         try {
-          return getMetadata(metadataOutPort, baseUri);
+          return getMetadata(metadataOutPort, baseUri, parseListener);
         } catch (Exception e) {
           throw new RuntimeException("Failed to read metadata from forked Tika parser JVM", e);
         }
@@ -116,31 +216,257 @@ public class TikaRunner {
     }
   }
 
+  /**
+   * @return how long the fork may parse before it stops and sends back what it has, -1 for no deadline. At least half
+   * of the abort time, so that short timeouts are not used up by the grace period.
+   */
+  private long parseDeadlineMs(long abortAfterMs) {
+    if (partialResultsGraceMs < 0 || abortAfterMs <= 0) {
+      return -1;
+    }
+    return Math.max(abortAfterMs - partialResultsGraceMs, abortAfterMs / 2);
+  }
+
   private void writeContent(String baseUri,
                             String contentType,
+                            long maxBytesToParse,
+                            boolean hasParseListener,
+                            long parseDeadlineMs,
                             int port,
                             InputStream contentInStream) throws Exception {
-    Socket socket = getSocket(InetAddress.getLocalHost().getHostAddress(), port);
-    try (OutputStream out = socket.getOutputStream()) {
-      out.write(baseUri.getBytes());
-      out.write('\n');
-      out.write(contentType.getBytes());
-      out.write('\n');
-      long numChars;
-      do {
-        numChars = IOUtils.copy(contentInStream, out);
-      } while (numChars > 0);
+    SocketChannel socketChannel = getSocketChannel(InetAddress.getLocalHost().getHostAddress(), port);
+    try (OutputStream out = Channels.newOutputStream(socketChannel)) {
+      Map<String, String> header = new LinkedHashMap<>();
+      header.put(HEADER_BASE_URI, baseUri);
+      header.put(HEADER_CONTENT_TYPE, contentType);
+      header.put(HEADER_MAX_BYTES_TO_PARSE, String.valueOf(maxBytesToParse));
+      header.put(HEADER_SEND_LINKS, String.valueOf(hasParseListener));
+      header.put(HEADER_SEND_EMBEDDED, String.valueOf(hasParseListener));
+      header.put(HEADER_SEND_CHUNKS, String.valueOf(hasParseListener));
+      if (parseDeadlineMs >= 0) {
+        header.put(HEADER_PARSE_DEADLINE_MS, String.valueOf(parseDeadlineMs));
+      }
+      String contentPath = contentPath(contentInStream);
+      RandomAccessContent rangeSource = contentPath == null ? rangeSource(contentType, contentInStream) : null;
+      long contentLength = contentLength(contentInStream);
+      if (contentPath != null) {
+        header.put(HEADER_CONTENT_PATH, contentPath);
+      } else if (contentLength >= 0) {
+        header.put(HEADER_CONTENT_LENGTH, String.valueOf(contentLength));
+        if (rangeSource != null) {
+          header.put(HEADER_CONTENT_RANGES, "true");
+        }
+      }
+      writeHeader(out, header);
+      if (contentPath != null) {
+        LOG.debug("Sent the path {} of {} to the fork", contentPath, baseUri);
+      } else if (rangeSource != null) {
+        long numBytes = serveRanges(rangeSource, Channels.newInputStream(socketChannel), out);
+        LOG.debug("Served {} of {} bytes of {} in ranges", numBytes, contentLength, baseUri);
+      } else if (contentInStream instanceof FileInputStream) {
+        transferFile(((FileInputStream) contentInStream).getChannel(), socketChannel);
+      } else {
+        copy(contentInStream, out);
+      }
     } finally {
-      socket.close();
+      socketChannel.close();
+    }
+  }
+
+  /**
+   * @return the absolute path of the input for the fork to open, or null if the content has to be sent.
+   */
+  private String contentPath(InputStream contentInStream) throws IOException {
+    if (!contentFromPath || !(contentInStream instanceof PathInputStream)) {
+      return null;
+    }
+    PathInputStream pathInputStream = (PathInputStream) contentInStream;
+    // The fork reads the whole file, so only an unread stream can be replaced by its path.
+    if (pathInputStream.getChannel().position() != 0) {
+      return null;
+    }
+    return pathInputStream.getPath().toAbsolutePath().toString();
+  }
+
+  /**
+   * @return the input to serve in ranges, or null if the content has to be sent. Like a path, ranges are only served
+   * for an unread input, since the fork may read any part of it. They are also only served when the fork seeks: it
+   * reads only the central directory and the properties parts of OOXML documents in metadata-only parses, and reads
+   * everything else, including inputs that it holds in memory, from start to end. Such a read is much faster as one
+   * stream than as a round trip per range.
+   */
+  private RandomAccessContent rangeSource(String contentType, InputStream contentInStream) throws IOException {
+    if (!rangeRequests || !metadataOnly || !isOOXML(contentType)) {
+      return null;
+    }
+    RandomAccessContent content;
+    if (contentInStream instanceof RandomAccessContentInputStream) {
+      RandomAccessContentInputStream randomAccessInputStream = (RandomAccessContentInputStream) contentInStream;
+      content = randomAccessInputStream.getPosition() == 0 ? randomAccessInputStream.getContent() : null;
+    } else if (contentInStream instanceof PathInputStream) {
+      FileChannel fileChannel = ((PathInputStream) contentInStream).getChannel();
+      content = fileChannel.position() == 0 ? new FileRandomAccessContent(fileChannel) : null;
+    } else {
+      return null;
+    }
+    if (content == null || (inputMemoryThresholdBytes > 0 && content.length() <= inputMemoryThresholdBytes)) {
+      return null;
+    }
+    return content;
+  }
+
+  /**
+   * @return whether the content type is a Word, Excel or PowerPoint OOXML type, like the fork decides which
+   * documents only have their properties read.
+   */
+  private static boolean isOOXML(String contentType) {
+    MediaType mediaType = MediaType.parse(contentType);
+    return mediaType != null && "application".equals(mediaType.getType())
+        && mediaType.getSubtype().startsWith("vnd.openxmlformats-officedocument.");
+  }
+
+  /**
+   * Answers the range requests of the fork until it asks for no more or closes the socket, see
+   * {@link #writeContent}. Each request is a position and a maximum length, and is answered with the number of bytes
+   * followed by the bytes, or with -1 at the end of the input.
+   *
+   * @return the number of bytes served
+   */
+  private long serveRanges(RandomAccessContent content, InputStream in, OutputStream out) throws IOException {
+    DataInputStream requests = new DataInputStream(in);
+    DataOutputStream responses = new DataOutputStream(out);
+    byte[] buffer = new byte[bufferSize];
+    long numBytes = 0;
+    while (true) {
+      long position;
+      int length;
+      try {
+        position = requests.readLong();
+        length = requests.readInt();
+      } catch (EOFException e) {
+        // The fork is done with the input, e.g. because the parse failed.
+        return numBytes;
+      }
+      if (position < 0) {
+        return numBytes;
+      }
+      int n = content.read(position, buffer, 0, Math.min(Math.max(length, 0), buffer.length));
+      if (n > 0) {
+        responses.writeInt(n);
+        responses.write(buffer, 0, n);
+        numBytes += n;
+      } else {
+        responses.writeInt(EOF);
+      }
+      responses.flush();
+    }
+  }
+
+  /**
+   * @return the number of bytes left in the input if it is a file, a byte array or a random access content, which lets the fork read small
+   * inputs into memory, or -1 if it is not known.
+   */
+  private static long contentLength(InputStream contentInStream) throws IOException {
+    if (contentInStream instanceof FileInputStream) {
+      FileChannel fileChannel = ((FileInputStream) contentInStream).getChannel();
+      return Math.max(fileChannel.size() - fileChannel.position(), 0L);
+    }
+    if (contentInStream instanceof ByteArrayInputStream) {
+      return contentInStream.available();
+    }
+    if (contentInStream instanceof RandomAccessContentInputStream) {
+      RandomAccessContentInputStream randomAccessInputStream = (RandomAccessContentInputStream) contentInStream;
+      return Math.max(randomAccessInputStream.getContent().length() - randomAccessInputStream.getPosition(), 0L);
+    }
+    return -1L;
+  }
+
+  /**
+   * Sends the rest of the file from its current position, with <code>sendfile</code> where the platform supports it
+   * so that the bytes are not copied through the heap.
+   */
+  private static void transferFile(FileChannel fileChannel, SocketChannel socketChannel) throws IOException {
+    long position = fileChannel.position();
+    long size = fileChannel.size();
+    while (position < size) {
+      position += fileChannel.transferTo(position, size - position, socketChannel);
+    }
+    fileChannel.position(position);
+  }
+
+  /**
+   * Moves the content into the file at its current position, at most <code>maxBytesToParse</code> bytes like the
+   * {@link BoundedInputStream} of the stream path, and leaves the file positioned after it.
+   */
+  private static void transferToFile(SocketChannel socketChannel, FileChannel fileChannel, long maxBytesToParse)
+      throws IOException {
+    long position = fileChannel.position();
+    long remaining = maxBytesToParse < 0 ? Long.MAX_VALUE : maxBytesToParse;
+    while (remaining > 0) {
+      // The socket is blocking, so nothing transferred means the fork closed it.
+      long n = fileChannel.transferFrom(socketChannel, position, remaining);
+      if (n == 0) {
+        break;
+      }
+      position += n;
+      remaining -= n;
+    }
+    fileChannel.position(position);
+  }
+
+  private void copy(InputStream in, OutputStream out) throws IOException {
+    byte[] buffer = new byte[bufferSize];
+    int n;
+    while ((n = in.read(buffer)) != EOF) {
+      out.write(buffer, 0, n);
     }
   }
 
-  private Metadata getMetadata(int port, String baseUri) throws Exception {
+  /**
+   * Writes the request header: the number of fields, then each name and value in modified UTF-8.
+   */
+  static void writeHeader(OutputStream out, Map<String, String> header) throws IOException {
+    DataOutputStream dataOutputStream = new DataOutputStream(out);
+    dataOutputStream.writeInt(header.size());
+    for (Map.Entry<String, String> field : header.entrySet()) {
+      dataOutputStream.writeUTF(field.getKey());
+      dataOutputStream.writeUTF(field.getValue());
+    }
+    dataOutputStream.flush();
+  }
+
+  private Metadata getMetadata(int port, String baseUri, ParseListener parseListener) throws Exception {
     Socket socket = getSocket(InetAddress.getLocalHost().getHostAddress(), port);
     try (InputStream metadataIn = socket.getInputStream()) {
       ObjectInputStream objectInputStream = new ObjectInputStream(metadataIn);
       try {
-        return (Metadata) objectInputStream.readObject();
+        while (true) {
+          byte frameType = objectInputStream.readByte();
+          switch (frameType) {
+            case FRAME_METADATA:
+              return (Metadata) objectInputStream.readObject();
+            case FRAME_LINK:
+              Link link = readLink(objectInputStream);
+              if (parseListener != null) {
+                parseListener.onLink(link);
+              }
+              break;
+            case FRAME_EMBEDDED:
+              EmbeddedDocument embeddedDocument = readEmbeddedDocument(objectInputStream);
+              if (parseListener != null) {
+                parseListener.onEmbedded(embeddedDocument);
+              }
+              break;
+            case FRAME_CHUNK:
+              ContentChunk chunk = readChunk(objectInputStream);
+              if (parseListener != null) {
+                parseListener.onChunk(chunk);
+              }
+              break;
+            default:
+              throw new IOException("Unknown frame type " + frameType + " from forked Tika parser JVM");
+          }
+        }
       } catch (IOException e) {
         LOG.warn("Could not parse metadata for " + baseUri);
         return new Metadata();
@@ -150,33 +476,98 @@ public class TikaRunner {
     }
   }
 
+  private static Link readLink(ObjectInputStream in) throws IOException {
+    String type = readString(in);
+    String sourceUri = readString(in);
+    String targetUri = readString(in);
+    String title = readString(in);
+    String anchor = readString(in);
+    String rel = readString(in);
+    int numParams = in.readInt();
+    Map<String, String> params = new LinkedHashMap<>();
+    for (int i = 0; i < numParams; ++i) {
+      String name = readString(in);
+      params.put(name, readString(in));
+    }
+    return new Link(type, sourceUri, targetUri, title, anchor, rel, params);
+  }
+
+  private static EmbeddedDocument readEmbeddedDocument(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    String path = readString(in);
+    Metadata metadata = (Metadata) in.readObject();
+    byte[] content = new byte[in.readInt()];
+    in.readFully(content);
+    return new EmbeddedDocument(path, metadata, content);
+  }
+
+  private static ContentChunk readChunk(ObjectInputStream in) throws IOException {
+    long offset = in.readLong();
+    int page = in.readInt();
+    String sheet = readString(in);
+    String embeddedPath = readString(in);
+    return new ContentChunk(offset, readString(in), page, sheet, embeddedPath);
+  }
+
+  /**
+   * Reads a string written as an int length followed by UTF-8 bytes, with -1 for null.
+   */
+  private static String readString(ObjectInputStream in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
   private void getContent(int port, OutputStream contentOutputStream, long maxBytesToParse) throws Exception {
+    if (contentOutputStream instanceof FileChannelOutputStream) {
+      try (SocketChannel socketChannel = getSocketChannel(InetAddress.getLocalHost().getHostAddress(), port)) {
+        transferToFile(socketChannel, ((FileChannelOutputStream) contentOutputStream).getChannel(), maxBytesToParse);
+      }
+      return;
+    }
     Socket socket = getSocket(InetAddress.getLocalHost().getHostAddress(), port);
     try (BoundedInputStream boundedInputStream = new BoundedInputStream(socket.getInputStream(), maxBytesToParse)) {
-      long numChars;
-      do {
-        numChars = IOUtils.copy(boundedInputStream, contentOutputStream);
-      } while (numChars > 0);
+      copy(boundedInputStream, contentOutputStream);
     } finally {
       socket.close();
     }
   }
 
-  private static Socket getSocket(String host, int port) throws InterruptedException {
-    Socket socket;
-    int maxRetries = 20;
+  /**
+   * Opens a connection to the fork.
+   */
+  private interface Connector<T> {
+    T connect() throws IOException;
+  }
 
+  /**
+   * Connects to the fork, retrying while it is not listening yet.
+   */
+  private static <T> T connect(Connector<T> connector) throws InterruptedException, IOException {
+    int maxRetries = 20;
     while (true) {
       try {
-        socket = new Socket(host, port);
-        if (socket != null || --maxRetries < 0) {
-          break;
-        }
+        return connector.connect();
       } catch (IOException e) {
+        if (--maxRetries < 0) {
+          throw e;
+        }
         Thread.sleep(1000);
       }
     }
+  }
+
+  private static Socket getSocket(String host, int port) throws InterruptedException, IOException {
+    return connect(() -> new Socket(host, port));
+  }
 
-    return socket;
+  /**
+   * Like {@link #getSocket(String, int)}, but opens a channel so that files can be transferred to it.
+   */
+  private static SocketChannel getSocketChannel(String host, int port) throws InterruptedException, IOException {
+    return connect(() -> SocketChannel.open(new InetSocketAddress(host, port)));
   }
 }
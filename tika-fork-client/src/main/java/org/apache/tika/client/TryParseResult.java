@@ -0,0 +1,38 @@
+package org.apache.tika.client;
+
+import org.apache.tika.metadata.Metadata;
+
+/**
+ * The outcome of {@link TikaProcessPool#tryParse}. Either the parse ran and the metadata is available, or no fork
+ * was available right away and the caller gets the current queue depth as a backpressure signal.
+ */
+public class TryParseResult {
+  private final Metadata metadata;
+  private final int queueDepth;
+
+  TryParseResult(Metadata metadata, int queueDepth) {
+    this.metadata = metadata;
+    this.queueDepth = queueDepth;
+  }
+
+  /**
+   * @return true if the parse ran.
+   */
+  public boolean isAccepted() {
+    return metadata != null;
+  }
+
+  /**
+   * @return the parsed metadata, or null if the parse was not accepted.
+   */
+  public Metadata getMetadata() {
+    return metadata;
+  }
+
+  /**
+   * @return the number of requests that were waiting for a fork when this one was submitted.
+   */
+  public int getQueueDepth() {
+    return queueDepth;
+  }
+}
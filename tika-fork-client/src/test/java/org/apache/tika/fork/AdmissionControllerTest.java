@@ -0,0 +1,203 @@
+package org.apache.tika.fork;
+
+import org.apache.tika.client.AdmissionController;
+import org.apache.tika.client.ParsePriority;
+import org.apache.tika.client.ParseRejectedException;
+import org.awaitility.Awaitility;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class AdmissionControllerTest {
+
+  @Test
+  public void testRejectNewest() throws Exception {
+    AdmissionController controller = new AdmissionController(1, 1, -1, AdmissionController.ShedPolicy.REJECT_NEWEST);
+    ExecutorService es = Executors.newCachedThreadPool();
+    try {
+      AdmissionController.Permit running = controller.acquire(0);
+      Future<AdmissionController.Permit> queued = es.submit(() -> controller.acquire(0));
+      Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> controller.getQueueDepth() == 1);
+      Assert.assertNull(controller.tryAcquire());
+      try {
+        controller.acquire(0);
+        Assert.fail("Should have been rejected");
+      } catch (ParseRejectedException e) {
+        Assert.assertEquals(ParseRejectedException.Reason.QUEUE_FULL, e.getReason());
+        Assert.assertEquals(1, e.getQueueDepth());
+      }
+      running.close();
+      queued.get(10, TimeUnit.SECONDS).close();
+      Assert.assertEquals(0, controller.getNumRunning());
+      Assert.assertEquals(2, controller.getNumAdmitted());
+      Assert.assertEquals(1, controller.getNumRejected());
+    } finally {
+      es.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testRejectOldest() throws Exception {
+    AdmissionController controller = new AdmissionController(1, 1, -1, AdmissionController.ShedPolicy.REJECT_OLDEST);
+    ExecutorService es = Executors.newCachedThreadPool();
+    try {
+      AdmissionController.Permit running = controller.acquire(0);
+      Future<AdmissionController.Permit> oldest = es.submit(() -> controller.acquire(0));
+      Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> controller.getQueueDepth() == 1);
+      Future<AdmissionController.Permit> newest = es.submit(() -> controller.acquire(0));
+      assertRejected(oldest, ParseRejectedException.Reason.QUEUE_FULL);
+      running.close();
+      newest.get(10, TimeUnit.SECONDS).close();
+    } finally {
+      es.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testRejectLargest() throws Exception {
+    AdmissionController controller = new AdmissionController(1, 2, -1, AdmissionController.ShedPolicy.REJECT_LARGEST);
+    ExecutorService es = Executors.newCachedThreadPool();
+    try {
+      AdmissionController.Permit running = controller.acquire(0);
+      Future<AdmissionController.Permit> small = es.submit(() -> controller.acquire(10));
+      Future<AdmissionController.Permit> large = es.submit(() -> controller.acquire(1000));
+      Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> controller.getQueueDepth() == 2);
+      Future<AdmissionController.Permit> medium = es.submit(() -> controller.acquire(100));
+      assertRejected(large, ParseRejectedException.Reason.QUEUE_FULL);
+      running.close();
+      small.get(10, TimeUnit.SECONDS).close();
+      medium.get(10, TimeUnit.SECONDS).close();
+    } finally {
+      es.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testQueueTimeout() throws Exception {
+    AdmissionController controller = new AdmissionController(1, 10, 200, AdmissionController.ShedPolicy.REJECT_NEWEST);
+    try (AdmissionController.Permit permit = controller.acquire(0)) {
+      Assert.assertNotNull(permit);
+      controller.acquire(0);
+      Assert.fail("Should have timed out in the queue");
+    } catch (ParseRejectedException e) {
+      Assert.assertEquals(ParseRejectedException.Reason.QUEUE_TIMEOUT, e.getReason());
+    }
+    Assert.assertEquals(0, controller.getQueueDepth());
+    Assert.assertEquals(0, controller.getNumRunning());
+  }
+
+  @Test
+  public void testStrictPriority() throws Exception {
+    AdmissionController controller = new AdmissionController(1, 10, -1, AdmissionController.ShedPolicy.REJECT_NEWEST,
+        AdmissionController.SchedulingPolicy.STRICT, -1, new int[] {1, 1, 1});
+    List<ParsePriority> order = admissionOrder(controller, ParsePriority.LOW, ParsePriority.NORMAL, ParsePriority.HIGH);
+    Assert.assertEquals(Arrays.asList(ParsePriority.HIGH, ParsePriority.NORMAL, ParsePriority.LOW), order);
+    Assert.assertEquals(1, controller.getNumAdmitted(ParsePriority.LOW));
+    Assert.assertTrue(controller.getAverageQueueTimeMs(ParsePriority.LOW) > controller.getAverageQueueTimeMs(ParsePriority.HIGH));
+  }
+
+  @Test
+  public void testStarvationProtection() throws Exception {
+    AdmissionController controller = new AdmissionController(1, 10, -1, AdmissionController.ShedPolicy.REJECT_NEWEST,
+        AdmissionController.SchedulingPolicy.STRICT, 0, new int[] {1, 1, 1});
+    // With a zero starvation threshold the request that waited longest always goes first.
+    List<ParsePriority> order = admissionOrder(controller, ParsePriority.LOW, ParsePriority.NORMAL, ParsePriority.HIGH);
+    Assert.assertEquals(Arrays.asList(ParsePriority.LOW, ParsePriority.NORMAL, ParsePriority.HIGH), order);
+  }
+
+  @Test
+  public void testWeightedFairShare() throws Exception {
+    AdmissionController controller = new AdmissionController(1, 100, -1, AdmissionController.ShedPolicy.REJECT_NEWEST,
+        AdmissionController.SchedulingPolicy.WEIGHTED, -1, new int[] {3, 1, 1});
+    ParsePriority[] submitted = new ParsePriority[16];
+    for (int i = 0; i < submitted.length; ++i) {
+      submitted[i] = i % 2 == 0 ? ParsePriority.HIGH : ParsePriority.LOW;
+    }
+    List<ParsePriority> order = admissionOrder(controller, submitted);
+    // While both priorities are waiting, HIGH gets three permits for each LOW one.
+    int numHigh = 0;
+    for (ParsePriority priority : order.subList(0, 8)) {
+      if (priority == ParsePriority.HIGH) {
+        ++numHigh;
+      }
+    }
+    Assert.assertEquals(6, numHigh);
+  }
+
+  @Test
+  public void testShedLowestPriorityFirst() throws Exception {
+    AdmissionController controller = new AdmissionController(1, 1, -1, AdmissionController.ShedPolicy.REJECT_NEWEST);
+    ExecutorService es = Executors.newCachedThreadPool();
+    try {
+      AdmissionController.Permit running = controller.acquire(0);
+      Future<AdmissionController.Permit> low = es.submit(() -> controller.acquire(ParsePriority.LOW, 0));
+      Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> controller.getQueueDepth(ParsePriority.LOW) == 1);
+      Future<AdmissionController.Permit> high = es.submit(() -> controller.acquire(ParsePriority.HIGH, 0));
+      assertRejected(low, ParseRejectedException.Reason.QUEUE_FULL);
+      Assert.assertEquals(1, controller.getNumRejected(ParsePriority.LOW));
+      running.close();
+      high.get(10, TimeUnit.SECONDS).close();
+    } finally {
+      es.shutdownNow();
+    }
+  }
+
+  /**
+   * Queues one request per priority while a permit is held, then releases permits one by one and records the order
+   * in which the waiting requests were admitted.
+   */
+  private static List<ParsePriority> admissionOrder(AdmissionController controller, ParsePriority... priorities) throws Exception {
+    ExecutorService es = Executors.newCachedThreadPool();
+    try {
+      List<ParsePriority> order = Collections.synchronizedList(new ArrayList<>());
+      AdmissionController.Permit running = controller.acquire(0);
+      List<Future<AdmissionController.Permit>> futures = new ArrayList<>();
+      for (ParsePriority priority : priorities) {
+        int queued = controller.getQueueDepth();
+        futures.add(es.submit(() -> {
+          AdmissionController.Permit permit = controller.acquire(priority, 0);
+          order.add(priority);
+          return permit;
+        }));
+        Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> controller.getQueueDepth() == queued + 1);
+      }
+      running.close();
+      for (int i = 0; i < priorities.length; ++i) {
+        int admitted = i + 1;
+        Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> order.size() == admitted);
+        AdmissionController.Permit permit = null;
+        for (Future<AdmissionController.Permit> future : futures) {
+          if (future.isDone() && !future.isCancelled()) {
+            permit = future.get();
+            futures.remove(future);
+            break;
+          }
+        }
+        Assert.assertNotNull(permit);
+        permit.close();
+      }
+      return order;
+    } finally {
+      es.shutdownNow();
+    }
+  }
+
+  private static void assertRejected(Future<AdmissionController.Permit> future, ParseRejectedException.Reason reason) throws Exception {
+    try {
+      future.get(10, TimeUnit.SECONDS);
+      Assert.fail("Should have been rejected");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof ParseRejectedException);
+      Assert.assertEquals(reason, ((ParseRejectedException) e.getCause()).getReason());
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package org.apache.tika.fork;
+
+import org.apache.tika.client.ContentTypeFilter;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+public class ContentTypeFilterTest {
+
+  @Test
+  public void testAllowAndDeny() {
+    ContentTypeFilter filter = new ContentTypeFilter("application/pdf, text/*, video/*", "video/x-msvideo");
+    Assert.assertTrue(filter.isAllowed("application/pdf"));
+    Assert.assertTrue(filter.isAllowed("text/html; charset=UTF-8"));
+    Assert.assertTrue(filter.isAllowed("video/mp4"));
+    Assert.assertFalse(filter.isAllowed("video/x-msvideo"));
+    Assert.assertFalse(filter.isAllowed("application/zip"));
+    Assert.assertFalse(filter.isAllowed("not a type"));
+  }
+
+  @Test
+  public void testDenyOnly() {
+    ContentTypeFilter filter = new ContentTypeFilter("", "video/*,application/x-iso9660-image");
+    Assert.assertFalse(filter.isAllowed("video/mp4"));
+    Assert.assertFalse(filter.isAllowed("application/x-iso9660-image"));
+    Assert.assertTrue(filter.isAllowed("application/pdf"));
+    Assert.assertTrue(filter.isAllowed("not a type"));
+  }
+
+  @Test
+  public void testDetect() throws Exception {
+    ContentTypeFilter filter = new ContentTypeFilter("", "application/pdf");
+    byte[] pdf = "%PDF-1.4\n%\u00e2\u00e3\u00cf\u00d3\n1 0 obj\n".getBytes(StandardCharsets.ISO_8859_1);
+    InputStream stream = new BufferedInputStream(new ByteArrayInputStream(pdf));
+    Assert.assertEquals("application/pdf", filter.detect("/docs/report.bin", null, stream));
+    // The stream is where it was, so the whole document can still be sent to a fork.
+    Assert.assertEquals('%', stream.read());
+    // The caller's content type wins.
+    Assert.assertEquals("text/plain", filter.detect("/docs/report.bin", "text/plain", stream));
+    Assert.assertEquals("text/html", filter.detect("/docs/page.html", "", new BufferedInputStream(new ByteArrayInputStream(new byte[0]))));
+    Assert.assertEquals("application/pdf", filter.reject("/docs/report.bin", "application/pdf").get("Content-Type"));
+    Assert.assertEquals(1L, filter.getNumRejected());
+  }
+
+  @Test
+  public void testDetectFile() throws Exception {
+    ContentTypeFilter filter = new ContentTypeFilter("", "");
+    try (FileInputStream fis = new FileInputStream("test-files" + File.separator + "pdf-sample.pdf")) {
+      Assert.assertEquals(3, fis.skip(3));
+      Assert.assertSame(fis, ContentTypeFilter.detectable(fis));
+      fis.getChannel().position(0);
+      Assert.assertEquals("application/pdf", filter.detect("pdf-sample", null, fis));
+      Assert.assertEquals(0, fis.getChannel().position());
+    }
+  }
+}
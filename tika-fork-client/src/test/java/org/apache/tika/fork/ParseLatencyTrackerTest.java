@@ -0,0 +1,33 @@
+package org.apache.tika.fork;
+
+import org.apache.tika.client.ParseLatencyTracker;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParseLatencyTrackerTest {
+
+  @Test
+  public void testPercentile() {
+    ParseLatencyTracker tracker = new ParseLatencyTracker(100, 10);
+    for (int i = 1; i <= 9; ++i) {
+      tracker.record("application/pdf", i);
+    }
+    Assert.assertEquals(-1L, tracker.getPercentileMs("application/pdf", 95));
+    tracker.record("application/pdf", 10);
+    Assert.assertEquals(10L, tracker.getPercentileMs("application/pdf", 95));
+    Assert.assertEquals(5L, tracker.getPercentileMs("application/pdf", 50));
+    Assert.assertEquals(-1L, tracker.getPercentileMs("text/html", 95));
+  }
+
+  @Test
+  public void testOnlyRecentParsesCount() {
+    ParseLatencyTracker tracker = new ParseLatencyTracker(10, 10);
+    for (int i = 0; i < 10; ++i) {
+      tracker.record("text/html", 1000);
+    }
+    for (int i = 0; i < 10; ++i) {
+      tracker.record("text/html", 10);
+    }
+    Assert.assertEquals(10L, tracker.getPercentileMs("text/html", 95));
+  }
+}
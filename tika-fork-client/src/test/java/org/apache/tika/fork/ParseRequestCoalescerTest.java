@@ -0,0 +1,89 @@
+package org.apache.tika.fork;
+
+import org.apache.tika.client.ParseRequestCoalescer;
+import org.apache.tika.metadata.Metadata;
+import org.awaitility.Awaitility;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ParseRequestCoalescerTest {
+
+  @Test
+  public void testConcurrentIdenticalRequestsShareOneParse() throws Exception {
+    ParseRequestCoalescer coalescer = new ParseRequestCoalescer(1024);
+    AtomicInteger numParses = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+    ParseRequestCoalescer.ParseCall call = out -> {
+      numParses.incrementAndGet();
+      release.await();
+      out.write("the content".getBytes(StandardCharsets.UTF_8));
+      Metadata metadata = new Metadata();
+      metadata.set(Metadata.CONTENT_TYPE, "text/plain");
+      return metadata;
+    };
+    int numRequests = 4;
+    ExecutorService es = Executors.newFixedThreadPool(numRequests);
+    try {
+      ByteArrayOutputStream[] outs = new ByteArrayOutputStream[numRequests];
+      List<Future<Metadata>> futures = new ArrayList<>();
+      for (int i = 0; i < numRequests; ++i) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        outs[i] = out;
+        futures.add(es.submit(() -> coalescer.parse("key", out, 30000, call)));
+      }
+      Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> coalescer.getNumCoalesced() == numRequests - 1);
+      release.countDown();
+      for (int i = 0; i < numRequests; ++i) {
+        Metadata metadata = futures.get(i).get();
+        Assert.assertEquals("text/plain", metadata.get(Metadata.CONTENT_TYPE));
+        Assert.assertEquals("the content", outs[i].toString("UTF-8"));
+      }
+      Assert.assertEquals(1, numParses.get());
+      Assert.assertEquals(0, coalescer.getNumInFlight());
+    } finally {
+      es.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testContentTooLargeToShare() throws Exception {
+    ParseRequestCoalescer coalescer = new ParseRequestCoalescer(4);
+    AtomicInteger numParses = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+    ParseRequestCoalescer.ParseCall call = out -> {
+      if (numParses.incrementAndGet() == 1) {
+        release.await();
+      }
+      out.write("more than four bytes".getBytes(StandardCharsets.UTF_8));
+      return new Metadata();
+    };
+    ExecutorService es = Executors.newFixedThreadPool(2);
+    try {
+      ByteArrayOutputStream out1 = new ByteArrayOutputStream();
+      ByteArrayOutputStream out2 = new ByteArrayOutputStream();
+      Future<Metadata> f1 = es.submit(() -> coalescer.parse("key", out1, 30000, call));
+      Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> coalescer.getNumInFlight() == 1);
+      Future<Metadata> f2 = es.submit(() -> coalescer.parse("key", out2, 30000, call));
+      Awaitility.await().atMost(10, TimeUnit.SECONDS).until(() -> coalescer.getNumCoalesced() == 1);
+      release.countDown();
+      f1.get();
+      f2.get();
+      Assert.assertEquals(2, numParses.get());
+      Assert.assertEquals("more than four bytes", out1.toString("UTF-8"));
+      Assert.assertEquals("more than four bytes", out2.toString("UTF-8"));
+    } finally {
+      es.shutdownNow();
+    }
+  }
+}
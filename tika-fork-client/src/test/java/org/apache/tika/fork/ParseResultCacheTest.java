@@ -0,0 +1,144 @@
+package org.apache.tika.fork;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.tika.client.ParseResultCache;
+import org.apache.tika.client.SpooledInput;
+import org.apache.tika.metadata.Metadata;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ParseResultCacheTest {
+
+  File cacheDir;
+
+  @Before
+  public void init() {
+    cacheDir = new File("build", "test_parse_result_cache");
+    FileUtils.deleteQuietly(cacheDir);
+    cacheDir.mkdirs();
+  }
+
+  @After
+  public void cleanup() {
+    FileUtils.deleteQuietly(cacheDir);
+  }
+
+  @Test
+  public void testSameContentSameKey() throws Exception {
+    Properties properties = new Properties();
+    properties.setProperty("parseContent", "true");
+    String propertiesDigest = ParseResultCache.digestProperties(properties);
+    String key1;
+    String key2;
+    try (SpooledInput in = SpooledInput.spool(new ByteArrayInputStream("hello".getBytes(StandardCharsets.UTF_8)), cacheDir, 1)) {
+      Assert.assertNotNull(in.getFile());
+      key1 = ParseResultCache.key(in.getDigest(), "text/plain", 100, propertiesDigest);
+    }
+    try (SpooledInput in = SpooledInput.spool(new ByteArrayInputStream("hello".getBytes(StandardCharsets.UTF_8)), cacheDir, 1024)) {
+      Assert.assertNull(in.getFile());
+      key2 = ParseResultCache.key(in.getDigest(), "text/plain", 100, propertiesDigest);
+    }
+    Assert.assertEquals(key1, key2);
+    Assert.assertNotEquals(key1, ParseResultCache.key("other", "text/plain", 100, propertiesDigest));
+    properties.setProperty("extractHtmlLinks", "true");
+    Assert.assertNotEquals(propertiesDigest, ParseResultCache.digestProperties(properties));
+  }
+
+  @Test
+  public void testClientPropertiesKeepKey() throws Exception {
+    Properties properties = new Properties();
+    properties.setProperty("parseContent", "true");
+    String propertiesDigest = ParseResultCache.digestProperties(properties);
+    for (String name : new String[] {"parseResultCacheMaxMemoryBytes", "admissionControlEnabled", "coalesceRequests",
+        "hedgeDelayMs", "allowedContentTypes", "deniedContentTypes", "transferBufferSize", "contentFromPath",
+        "rangeRequests", "inputSpoolThresholdBytes", "inputMemoryThresholdBytes"}) {
+      properties.setProperty(name, "1");
+      Assert.assertEquals(name, propertiesDigest, ParseResultCache.digestProperties(properties));
+    }
+    properties.setProperty("metadataOnly", "true");
+    Assert.assertNotEquals(propertiesDigest, ParseResultCache.digestProperties(properties));
+  }
+
+  @Test
+  public void testMemoryAndDiskTiers() throws Exception {
+    ParseResultCache cache = new ParseResultCache(cacheDir, 1024 * 1024, 1024 * 1024, 1024);
+    Assert.assertNull(cache.get("a"));
+    cache.put("a", metadata("text/plain"), "content a".getBytes(StandardCharsets.UTF_8));
+    ParseResultCache.CachedParseResult result = cache.get("a");
+    Assert.assertEquals("content a", new String(result.getContent(), StandardCharsets.UTF_8));
+    Assert.assertEquals("text/plain", result.getMetadata().get(Metadata.CONTENT_TYPE));
+    Assert.assertEquals(1, cache.getMemoryHits());
+
+    // Entries over the size limit are not cached.
+    cache.put("big", metadata("text/plain"), new byte[2048]);
+    Assert.assertNull(cache.get("big"));
+
+    // A new cache over the same directory serves entries from disk.
+    ParseResultCache reopened = new ParseResultCache(cacheDir, 1024 * 1024, 1024 * 1024, 1024);
+    result = reopened.get("a");
+    Assert.assertNotNull(result);
+    Assert.assertEquals("content a", new String(result.getContent(), StandardCharsets.UTF_8));
+    Assert.assertEquals(1, reopened.getDiskHits());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEviction() throws Exception {
+    ParseResultCache cache = new ParseResultCache(cacheDir, 2500, 0, 1024);
+    cache.put("a", metadata("text/plain"), new byte[1000]);
+    cache.put("b", metadata("text/plain"), new byte[1000]);
+    Assert.assertNotNull(cache.get("a"));
+    cache.put("c", metadata("text/plain"), new byte[1000]);
+    Assert.assertNotNull(cache.get("a"));
+    Assert.assertNull(cache.get("b"));
+    Assert.assertNotNull(cache.get("c"));
+    Assert.assertTrue(cache.getMemoryBytes() <= 2500);
+  }
+
+  @Test
+  public void testConcurrentWritesOfSameKey() throws Exception {
+    ParseResultCache cache = new ParseResultCache(cacheDir, 0, 1024 * 1024, 100000);
+    ExecutorService es = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 4; ++i) {
+        // Each writer has its own content, so that an entry written by two of them at once does not read back.
+        byte[] content = new byte[10000 * (i + 1)];
+        Arrays.fill(content, (byte) i);
+        futures.add(es.submit(() -> {
+          for (int j = 0; j < 50; ++j) {
+            cache.put("a", metadata("text/plain"), content);
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      es.shutdownNow();
+    }
+    Assert.assertArrayEquals(new String[] {"a.cache"}, cacheDir.list());
+    byte[] content = new ParseResultCache(cacheDir, 0, 1024 * 1024, 100000).get("a").getContent();
+    byte[] expected = new byte[10000 * (content[0] + 1)];
+    Arrays.fill(expected, content[0]);
+    Assert.assertArrayEquals(expected, content);
+  }
+
+  private static Metadata metadata(String contentType) {
+    Metadata metadata = new Metadata();
+    metadata.set(Metadata.CONTENT_TYPE, contentType);
+    return metadata;
+  }
+}
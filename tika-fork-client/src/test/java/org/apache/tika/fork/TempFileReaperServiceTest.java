@@ -9,6 +9,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.time.temporal.ChronoUnit;
 import java.util.concurrent.TimeUnit;
 
@@ -55,4 +57,81 @@ public class TempFileReaperServiceTest {
       FileUtils.deleteQuietly(curDir);
     }
   }
+
+  @Test
+  public void testDeleteOldClientTempFiles() throws Exception {
+    File curDir = new File("build", "test_working_dir_client");
+    curDir.mkdirs();
+    TempFileReaperService tempFileReaperService = null;
+    long oldTime = System.currentTimeMillis() - 60000L;
+    try {
+      // Left by a client that was killed while it spooled an input or buffered the content of a hedged parse.
+      File oldSpoolFile = new File(curDir, "tikafork-spool-1.tmp");
+      FileUtils.writeStringToFile(oldSpoolFile, "hey there!", "UTF-8");
+      Assert.assertTrue(oldSpoolFile.setLastModified(oldTime));
+      File oldHedgeFile = new File(curDir, "tikafork-hedge-1.tmp");
+      FileUtils.writeStringToFile(oldHedgeFile, "hey there!", "UTF-8");
+      Assert.assertTrue(oldHedgeFile.setLastModified(oldTime));
+      File recentSpoolFile = new File(curDir, "tikafork-spool-2.tmp");
+      FileUtils.writeStringToFile(recentSpoolFile, "hey there!", "UTF-8");
+      File otherFile = new File(curDir, "other.tmp");
+      FileUtils.writeStringToFile(otherFile, "hey there!", "UTF-8");
+      Assert.assertTrue(otherFile.setLastModified(oldTime));
+
+      tempFileReaperService = new TempFileReaperService(curDir.getAbsolutePath(),
+          30,
+          ChronoUnit.SECONDS,
+          0,
+          1,
+          TimeUnit.SECONDS);
+
+      Awaitility.await().atMost(20, TimeUnit.SECONDS).until(() -> !oldSpoolFile.exists() && !oldHedgeFile.exists());
+      Assert.assertTrue(recentSpoolFile.exists());
+      Assert.assertTrue(otherFile.exists());
+    } finally {
+      if (tempFileReaperService != null) {
+        tempFileReaperService.close();
+      }
+      FileUtils.deleteQuietly(curDir);
+    }
+  }
+
+  @Test
+  public void testDeleteAbandonedTempDirectories() throws Exception {
+    File curDir = new File("build", "test_working_dir_dirs");
+    curDir.mkdirs();
+    TempFileReaperService tempFileReaperService = null;
+    long oldTime = System.currentTimeMillis() - 60000L;
+    File deadDir = new File(curDir, "tikafork-temp-dead");
+    File liveDir = new File(curDir, "tikafork-temp-live");
+    File recentDir = new File(curDir, "tikafork-temp-recent");
+    liveDir.mkdirs();
+    try (FileChannel liveLock = FileChannel.open(new File(liveDir, "tikafork.lock").toPath(),
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      FileUtils.writeStringToFile(new File(deadDir, "apache-tika-1.tmp"), "hey there!", "UTF-8");
+      FileUtils.writeStringToFile(new File(deadDir, "tikafork.lock"), "", "UTF-8");
+      FileUtils.writeStringToFile(new File(liveDir, "apache-tika-2.tmp"), "hey there!", "UTF-8");
+      FileUtils.writeStringToFile(new File(recentDir, "apache-tika-3.tmp"), "hey there!", "UTF-8");
+      liveLock.lock();
+      Assert.assertTrue(deadDir.setLastModified(oldTime));
+      Assert.assertTrue(liveDir.setLastModified(oldTime));
+
+      tempFileReaperService = new TempFileReaperService(curDir.getAbsolutePath(),
+          30,
+          ChronoUnit.SECONDS,
+          0,
+          1,
+          TimeUnit.SECONDS);
+
+      Awaitility.await().atMost(20, TimeUnit.SECONDS).until(() -> !deadDir.exists());
+      // The lock of the live directory is held, and the recent one may belong to a fork that is starting.
+      Assert.assertTrue(new File(liveDir, "apache-tika-2.tmp").exists());
+      Assert.assertTrue(new File(recentDir, "apache-tika-3.tmp").exists());
+    } finally {
+      if (tempFileReaperService != null) {
+        tempFileReaperService.close();
+      }
+      FileUtils.deleteQuietly(curDir);
+    }
+  }
 }
@@ -1,7 +1,20 @@
 package org.apache.tika.fork;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.tika.client.ContentChunk;
+import org.apache.tika.client.ContentTypeFilter;
+import org.apache.tika.client.EmbeddedDocument;
+import org.apache.tika.client.Link;
+import org.apache.tika.client.ParseListener;
+import org.apache.tika.client.ParseOptions;
+import org.apache.tika.client.ParsePriority;
+import org.apache.tika.client.ParseStreams;
+import org.apache.tika.client.RandomAccessContent;
 import org.apache.tika.client.TikaProcessPool;
+import org.apache.tika.client.TikaRunner;
+import org.apache.tika.client.TryParseResult;
 import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
 import org.apache.tika.utils.ExceptionUtils;
 import org.junit.Assert;
 import org.junit.Before;
@@ -9,14 +22,33 @@ import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 public class TikaProcessTest {
   private static final Logger LOG = LoggerFactory.getLogger(TikaProcessTest.class);
@@ -291,4 +323,955 @@ public class TikaProcessTest {
       }
     }
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testWriteLimitReachedInFork() throws Exception {
+    try (TikaProcessPool tikaProcessPool = new TikaProcessPool(javaPath,
+        System.getProperty("java.io.tmpdir"),
+        tikaDistPath,
+        200,
+        parseProperties,
+        0,
+        -1,
+        1,
+        true,
+        30000,
+        3000,
+        -1,
+        -1)) {
+      ByteArrayOutputStream contentOutputStream = new ByteArrayOutputStream();
+      try (FileInputStream fis = new FileInputStream(pdfPath)) {
+        Metadata metadata = tikaProcessPool.parse(pdfPath,
+            "application/pdf",
+            fis,
+            contentOutputStream,
+            300000L,
+            100);
+        Assert.assertEquals("true", metadata.get(TikaCoreProperties.TIKA_META_EXCEPTION_PREFIX + "write_limit_reached"));
+        Assert.assertEquals(100, contentOutputStream.size());
+      }
+    }
+  }
+
+  @Test
+  public void testParseResultCache() throws Exception {
+    parseProperties.setProperty("parseResultCacheEnabled", "true");
+    File workDir = new File("build", "test_cache_work_dir");
+    try (TikaProcessPool tikaProcessPool = new TikaProcessPool(javaPath,
+        workDir.getAbsolutePath(),
+        tikaDistPath,
+        200,
+        parseProperties,
+        0,
+        -1,
+        1,
+        true,
+        30000,
+        3000,
+        -1,
+        -1)) {
+      String firstContent = null;
+      Metadata firstMetadata = null;
+      for (int i = 0; i < 3; ++i) {
+        ByteArrayOutputStream contentOutputStream = new ByteArrayOutputStream();
+        try (FileInputStream fis = new FileInputStream(htmlPath)) {
+          Metadata metadata = tikaProcessPool.parse("http://host" + i + "/html-sample.html",
+              "text/html",
+              fis,
+              contentOutputStream,
+              300000L,
+              maxBytesToParse);
+          if (firstContent == null) {
+            firstContent = contentOutputStream.toString("UTF-8");
+            firstMetadata = metadata;
+          } else {
+            Assert.assertEquals(firstContent, contentOutputStream.toString("UTF-8"));
+            Assert.assertEquals(firstMetadata.size(), metadata.size());
+          }
+        }
+      }
+      Assert.assertEquals(1, tikaProcessPool.getParseResultCache().getMisses());
+      Assert.assertEquals(2, tikaProcessPool.getParseResultCache().getMemoryHits());
+    } finally {
+      FileUtils.deleteQuietly(workDir);
+    }
+  }
+
+  @Test
+  public void testTryParseWithAdmissionControl() throws Exception {
+    parseProperties.setProperty("admissionControlEnabled", "true");
+    try (TikaProcessPool tikaProcessPool = new TikaProcessPool(javaPath,
+        System.getProperty("java.io.tmpdir"),
+        tikaDistPath,
+        200,
+        parseProperties,
+        0,
+        -1,
+        1,
+        true,
+        30000,
+        3000,
+        -1,
+        -1)) {
+      ByteArrayOutputStream contentOutputStream = new ByteArrayOutputStream();
+      try (FileInputStream fis = new FileInputStream(htmlPath)) {
+        TryParseResult result = tikaProcessPool.tryParse(htmlPath, "text/html", fis, contentOutputStream, 300000L, maxBytesToParse);
+        Assert.assertTrue(result.isAccepted());
+        Assert.assertEquals(0, result.getQueueDepth());
+        Assert.assertEquals(8, result.getMetadata().size());
+      }
+      Assert.assertEquals(1, tikaProcessPool.getAdmissionController().getNumAdmitted());
+      Assert.assertEquals(0, tikaProcessPool.getAdmissionController().getNumRunning());
+    }
+  }
+
+  @Test
+  public void testHedgedParse() throws Exception {
+    parseProperties.setProperty("hedgeDelayMs", "0");
+    try (TikaProcessPool tikaProcessPool = new TikaProcessPool(javaPath,
+        System.getProperty("java.io.tmpdir"),
+        tikaDistPath,
+        200,
+        parseProperties,
+        0,
+        -1,
+        2,
+        true,
+        30000,
+        3000,
+        -1,
+        -1)) {
+      // Start two forks so that there is an idle one to send the second copy to.
+      ExecutorService es = Executors.newFixedThreadPool(2);
+      List<Future<String>> warmUps = new ArrayList<>();
+      try {
+        for (int i = 0; i < 2; ++i) {
+          warmUps.add(es.submit(() -> {
+            ByteArrayOutputStream contentOutputStream = new ByteArrayOutputStream();
+            try (FileInputStream fis = new FileInputStream(htmlPath)) {
+              tikaProcessPool.parse(htmlPath, "text/html", fis, contentOutputStream, 300000L, maxBytesToParse);
+            }
+            return contentOutputStream.toString("UTF-8");
+          }));
+        }
+        for (Future<String> warmUp : warmUps) {
+          warmUp.get();
+        }
+      } finally {
+        es.shutdownNow();
+      }
+      ByteArrayOutputStream contentOutputStream = new ByteArrayOutputStream();
+      try (FileInputStream fis = new FileInputStream(htmlPath)) {
+        Metadata metadata = tikaProcessPool.parse(htmlPath,
+            "text/html",
+            fis,
+            contentOutputStream,
+            300000L,
+            maxBytesToParse,
+            new ParseOptions().setPriority(ParsePriority.HIGH).setHedge(true));
+        Assert.assertEquals(8, metadata.size());
+      }
+      Assert.assertEquals(warmUps.get(0).get(), contentOutputStream.toString("UTF-8"));
+      Assert.assertEquals(1, tikaProcessPool.getNumHedged());
+    }
+  }
+
+  @Test
+  public void testParseListenerReceivesLinks() throws Exception {
+    parseProperties.setProperty("extractHtmlLinks", "true");
+    try (TikaProcessPool tikaProcessPool = new TikaProcessPool(javaPath,
+        System.getProperty("java.io.tmpdir"),
+        tikaDistPath,
+        200,
+        parseProperties,
+        0,
+        -1,
+        1,
+        true,
+        30000,
+        3000,
+        -1,
+        -1)) {
+      List<Link> links = new CopyOnWriteArrayList<>();
+      ParseListener listener = new ParseListener() {
+        @Override
+        public void onLink(Link link) {
+          links.add(link);
+        }
+      };
+      ByteArrayOutputStream contentOutputStream = new ByteArrayOutputStream();
+      try (FileInputStream fis = new FileInputStream(htmlPath)) {
+        Metadata metadata = tikaProcessPool.parse(htmlPath,
+            "text/html",
+            fis,
+            contentOutputStream,
+            300000L,
+            maxBytesToParse,
+            new ParseOptions().setListener(listener));
+        Assert.assertEquals(8, metadata.size());
+      }
+      Assert.assertFalse(links.isEmpty());
+      for (Link link : links) {
+        Assert.assertEquals(htmlPath, link.getSourceUri());
+        Assert.assertNotNull(link.getType());
+        Assert.assertNotNull(link.getTargetUri());
+      }
+      Assert.assertTrue(contentOutputStream.size() > 0);
+    }
+  }
+
+  @Test
+  public void testHtmlFastPathSameOutput() throws Exception {
+    parseProperties.setProperty("extractHtmlLinks", "true");
+    ByteArrayOutputStream content = new ByteArrayOutputStream();
+    List<Link> links = new CopyOnWriteArrayList<>();
+    Metadata metadata = parseHtmlWithLinks(content, links);
+    parseProperties.setProperty("htmlFastPath", "true");
+    ByteArrayOutputStream fastContent = new ByteArrayOutputStream();
+    List<Link> fastLinks = new CopyOnWriteArrayList<>();
+    Metadata fastMetadata = parseHtmlWithLinks(fastContent, fastLinks);
+    Assert.assertTrue(content.size() > 0);
+    Assert.assertEquals(content.toString("UTF-8"), fastContent.toString("UTF-8"));
+    Assert.assertEquals(metadata.toString(), fastMetadata.toString());
+    Assert.assertEquals(links.toString(), fastLinks.toString());
+  }
+
+  private Metadata parseHtmlWithLinks(ByteArrayOutputStream contentOutputStream, List<Link> links) throws Exception {
+    try (TikaProcessPool tikaProcessPool = new TikaProcessPool(javaPath,
+        System.getProperty("java.io.tmpdir"),
+        tikaDistPath,
+        200,
+        parseProperties,
+        0,
+        -1,
+        1,
+        true,
+        30000,
+        3000,
+        -1,
+        -1)) {
+      try (FileInputStream fis = new FileInputStream(htmlPath)) {
+        return tikaProcessPool.parse(htmlPath,
+            "text/html",
+            fis,
+            contentOutputStream,
+            300000L,
+            maxBytesToParse,
+            new ParseOptions().setListener(new ParseListener() {
+              @Override
+              public void onLink(Link link) {
+                links.add(link);
+              }
+            }));
+      }
+    }
+  }
+
+  @Test
+  public void testRecursiveEmbedded() throws Exception {
+    parseProperties.setProperty("recursiveEmbedded", "true");
+    ByteArrayOutputStream zipBytes = new ByteArrayOutputStream();
+    try (ZipOutputStream zip = new ZipOutputStream(zipBytes)) {
+      zip.putNextEntry(new ZipEntry("a.txt"));
+      zip.write("first file".getBytes(StandardCharsets.UTF_8));
+      zip.closeEntry();
+      zip.putNextEntry(new ZipEntry("html-sample.html"));
+      zip.write(FileUtils.readFileToByteArray(new File(htmlPath)));
+      zip.closeEntry();
+    }
+    try (TikaProcessPool tikaProcessPool = new TikaProcessPool(javaPath,
+        System.getProperty("java.io.tmpdir"),
+        tikaDistPath,
+        200,
+        parseProperties,
+        0,
+        -1,
+        1,
+        true,
+        30000,
+        3000,
+        -1,
+        -1)) {
+      List<EmbeddedDocument> embeddedDocuments = new CopyOnWriteArrayList<>();
+      ByteArrayOutputStream contentOutputStream = new ByteArrayOutputStream();
+      Metadata metadata = tikaProcessPool.parse("test.zip",
+          "application/zip",
+          new ByteArrayInputStream(zipBytes.toByteArray()),
+          contentOutputStream,
+          300000L,
+          maxBytesToParse,
+          new ParseOptions().setListener(new ParseListener() {
+            @Override
+            public void onEmbedded(EmbeddedDocument embeddedDocument) {
+              embeddedDocuments.add(embeddedDocument);
+            }
+          }));
+      Assert.assertEquals("application/zip", metadata.get(Metadata.CONTENT_TYPE));
+      Assert.assertEquals(2, embeddedDocuments.size());
+      Assert.assertEquals("/a.txt", embeddedDocuments.get(0).getPath());
+      Assert.assertEquals("first file", embeddedDocuments.get(0).getContentAsString().trim());
+      Assert.assertEquals("/html-sample.html", embeddedDocuments.get(1).getPath());
+      Assert.assertEquals("/html-sample.html",
+          embeddedDocuments.get(1).getMetadata().get(TikaCoreProperties.TIKA_META_PREFIX + "embedded_resource_path"));
+      Assert.assertTrue(embeddedDocuments.get(1).getMetadata().get(Metadata.CONTENT_TYPE).startsWith("text/html"));
+      Assert.assertFalse(contentOutputStream.toString("UTF-8").contains("first file"));
+    }
+  }
+
+  @Test
+  public void testMaxEmbeddedResources() throws Exception {
+    parseProperties.setProperty("maxEmbeddedResources", "2");
+    ByteArrayOutputStream zipBytes = new ByteArrayOutputStream();
+    try (ZipOutputStream zip = new ZipOutputStream(zipBytes)) {
+      for (int i = 0; i < 5; ++i) {
+        zip.putNextEntry(new ZipEntry("file" + i + ".txt"));
+        zip.write(("content of file " + i).getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+      }
+    }
+    try (TikaProcessPool tikaProcessPool = new TikaProcessPool(javaPath,
+        System.getProperty("java.io.tmpdir"),
+        tikaDistPath,
+        200,
+        parseProperties,
+        0,
+        -1,
+        1,
+        true,
+        30000,
+        3000,
+        -1,
+        -1)) {
+      ByteArrayOutputStream contentOutputStream = new ByteArrayOutputStream();
+      Metadata metadata = tikaProcessPool.parse("test.zip",
+          "application/zip",
+          new ByteArrayInputStream(zipBytes.toByteArray()),
+          contentOutputStream,
+          300000L,
+          maxBytesToParse);
+      Assert.assertEquals("true",
+          metadata.get(TikaCoreProperties.TIKA_META_EXCEPTION_PREFIX + "embedded_resource_limit_reached"));
+      String content = contentOutputStream.toString("UTF-8");
+      Assert.assertTrue(content.contains("content of file 1"));
+      Assert.assertFalse(content.contains("content of file 2"));
+    }
+  }
+
+  @Test
+  public void testPartialResultsOnTimeout() throws Exception {
+    parseProperties.setProperty("returnPartialResultsOnTimeout", "true");
+    parseProperties.setProperty("partialResultsGraceMs", "3000");
+    try (TikaProcessPool tikaProcessPool = new TikaProcessPool(javaPath,
+        System.getProperty("java.io.tmpdir"),
+        tikaDistPath,
+        200,
+        parseProperties,
+        0,
+        -1,
+        1,
+        true,
+        30000,
+        3000,
+        -1,
+        -1)) {
+      ByteArrayOutputStream contentOutputStream = new ByteArrayOutputStream();
+      // A text document that takes far longer to arrive than the parse may take.
+      InputStream slowInputStream = new InputStream() {
+        private int numLines = 0;
+
+        @Override
+        public int read() throws IOException {
+          byte[] b = new byte[1];
+          return read(b, 0, 1) < 0 ? -1 : b[0];
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+          if (numLines >= 1000000) {
+            return -1;
+          }
+          try {
+            Thread.sleep(10L);
+          } catch (InterruptedException e) {
+            throw new IOException(e);
+          }
+          StringBuilder lines = new StringBuilder();
+          while (lines.length() < 1000) {
+            lines.append("line ").append(numLines++).append('\n');
+          }
+          byte[] bytes = lines.toString().getBytes(StandardCharsets.UTF_8);
+          int n = Math.min(len, bytes.length);
+          System.arraycopy(bytes, 0, b, off, n);
+          return n;
+        }
+      };
+      // Would throw a TimeoutException without returnPartialResultsOnTimeout.
+      Metadata metadata = tikaProcessPool.parse("slow.txt",
+          "text/plain",
+          slowInputStream,
+          contentOutputStream,
+          6000L,
+          maxBytesToParse);
+      Assert.assertEquals("true", metadata.get(TikaRunner.TRUNCATED_BY_TIMEOUT));
+      Assert.assertTrue(metadata.get(Metadata.CONTENT_TYPE).startsWith("text/plain"));
+      Assert.assertTrue(contentOutputStream.toString("UTF-8").startsWith("line 0"));
+    }
+  }
+
+  @Test
+  public void testChunkedContent() throws Exception {
+    parseProperties.setProperty("chunkedContent", "true");
+    parseProperties.setProperty("contentChunkSize", "256");
+    try (TikaProcessPool tikaProcessPool = new TikaProcessPool(javaPath,
+        System.getProperty("java.io.tmpdir"),
+        tikaDistPath,
+        200,
+        parseProperties,
+        0,
+        -1,
+        1,
+        true,
+        30000,
+        3000,
+        -1,
+        -1)) {
+      for (String path : new String[] {pdfPath, xlsPath}) {
+        String contentType = path.equals(pdfPath) ? "application/pdf" : "application/vnd.ms-excel";
+        // Without a listener the text goes to the content stream as usual.
+        ByteArrayOutputStream expectedContent = new ByteArrayOutputStream();
+        try (FileInputStream fis = new FileInputStream(path)) {
+          tikaProcessPool.parse(path, contentType, fis, expectedContent, 300000L, maxBytesToParse);
+        }
+        List<ContentChunk> chunks = new CopyOnWriteArrayList<>();
+        ByteArrayOutputStream contentOutputStream = new ByteArrayOutputStream();
+        try (FileInputStream fis = new FileInputStream(path)) {
+          tikaProcessPool.parse(path, contentType, fis, contentOutputStream, 300000L, maxBytesToParse,
+              new ParseOptions().setListener(new ParseListener() {
+                @Override
+                public void onChunk(ContentChunk chunk) {
+                  chunks.add(chunk);
+                }
+              }));
+        }
+        Assert.assertEquals(0, contentOutputStream.size());
+        StringBuilder text = new StringBuilder();
+        int page = 1;
+        for (ContentChunk chunk : chunks) {
+          Assert.assertEquals(text.length(), chunk.getOffset());
+          Assert.assertTrue(chunk.getText().length() <= 256);
+          Assert.assertTrue(chunk.getPage() >= page);
+          page = chunk.getPage();
+          text.append(chunk.getText());
+        }
+        Assert.assertEquals(expectedContent.toString("UTF-8"), text.toString());
+        Assert.assertEquals(1, chunks.get(0).getPage());
+        if (path.equals(xlsPath)) {
+          Assert.assertNotNull(chunks.get(0).getSheet());
+        } else {
+          // The sample PDF has a single page.
+          Assert.assertEquals(1, page);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testMetadataOnly() throws Exception {
+    Metadata expected;
+    try (TikaProcessPool tikaProcessPool = new TikaProcessPool(javaPath,
+        System.getProperty("java.io.tmpdir"),
+        tikaDistPath,
+        200,
+        parseProperties,
+        0,
+        -1,
+        1,
+        true,
+        30000,
+        3000,
+        -1,
+        -1);
+         FileInputStream fis = new FileInputStream(pdfPath)) {
+      expected = tikaProcessPool.parse(pdfPath, "application/pdf", fis, new ByteArrayOutputStream(), 300000L,
+          maxBytesToParse);
+    }
+    parseProperties.setProperty("metadataOnly", "true");
+    try (TikaProcessPool tikaProcessPool = new TikaProcessPool(javaPath,
+        System.getProperty("java.io.tmpdir"),
+        tikaDistPath,
+        200,
+        parseProperties,
+        0,
+        -1,
+        1,
+        true,
+        30000,
+        3000,
+        -1,
+        -1);
+         FileInputStream fis = new FileInputStream(pdfPath)) {
+      ByteArrayOutputStream contentOutputStream = new ByteArrayOutputStream();
+      Metadata metadata = tikaProcessPool.parse(pdfPath, "application/pdf", fis, contentOutputStream, 300000L,
+          maxBytesToParse);
+      Assert.assertEquals(0, contentOutputStream.size());
+      for (String name : new String[] {Metadata.CONTENT_TYPE, "xmpTPg:NPages", "pdf:PDFVersion", "dc:format",
+          "X-Parsed-By"}) {
+        Assert.assertNotNull(name, expected.get(name));
+        Assert.assertArrayEquals(name, expected.getValues(name), metadata.getValues(name));
+      }
+    }
+  }
+
+  @Test
+  public void testDeniedContentTypes() throws Exception {
+    parseProperties.setProperty("deniedContentTypes", "application/pdf, video/*");
+    try (TikaProcessPool tikaProcessPool = new TikaProcessPool(javaPath,
+        System.getProperty("java.io.tmpdir"),
+        tikaDistPath,
+        200,
+        parseProperties,
+        0,
+        -1,
+        1,
+        true,
+        30000,
+        3000,
+        -1,
+        -1)) {
+      ByteArrayOutputStream contentOutputStream = new ByteArrayOutputStream();
+      Metadata metadata;
+      try (FileInputStream fis = new FileInputStream(pdfPath)) {
+        metadata = tikaProcessPool.parse(pdfPath, null, fis, contentOutputStream, 300000L, maxBytesToParse);
+      }
+      Assert.assertEquals("true", metadata.get(ContentTypeFilter.CONTENT_TYPE_REJECTED));
+      Assert.assertEquals("application/pdf", metadata.get(Metadata.CONTENT_TYPE));
+      Assert.assertEquals(0, contentOutputStream.size());
+      Assert.assertEquals(1L, tikaProcessPool.getContentTypeFilter().getNumRejected());
+
+      // Detected in the client and passed on to the fork.
+      try (FileInputStream fis = new FileInputStream(htmlPath)) {
+        metadata = tikaProcessPool.parse(htmlPath, null, fis, contentOutputStream, 300000L, maxBytesToParse);
+      }
+      Assert.assertNull(metadata.get(ContentTypeFilter.CONTENT_TYPE_REJECTED));
+      Assert.assertTrue(metadata.get(Metadata.CONTENT_TYPE).startsWith("text/html"));
+      Assert.assertTrue(contentOutputStream.size() > 0);
+    }
+  }
+
+  @Test
+  public void testFileTransferSameAsStream() throws Exception {
+    parseProperties.setProperty("transferBufferSize", "1000");
+    try (TikaProcessPool tikaProcessPool = new TikaProcessPool(javaPath,
+        System.getProperty("java.io.tmpdir"),
+        tikaDistPath,
+        200,
+        parseProperties,
+        0,
+        -1,
+        1,
+        true,
+        30000,
+        3000,
+        -1,
+        -1)) {
+      ByteArrayOutputStream fileContent = new ByteArrayOutputStream();
+      Metadata fileMetadata;
+      try (InputStream contentInputStream = ParseStreams.open(Paths.get(pdfPath))) {
+        fileMetadata = tikaProcessPool.parse(pdfPath, "application/pdf", contentInputStream, fileContent, 300000L,
+            maxBytesToParse);
+      }
+      ByteArrayOutputStream streamContent = new ByteArrayOutputStream();
+      Metadata streamMetadata = tikaProcessPool.parse(pdfPath, "application/pdf",
+          new ByteArrayInputStream(Files.readAllBytes(Paths.get(pdfPath))), streamContent, 300000L, maxBytesToParse);
+      Assert.assertTrue(fileContent.size() > 0);
+      Assert.assertArrayEquals(streamContent.toByteArray(), fileContent.toByteArray());
+      Assert.assertEquals(streamMetadata.get("xmpTPg:NPages"), fileMetadata.get("xmpTPg:NPages"));
+    }
+  }
+
+  @Test
+  public void testParseToFile() throws Exception {
+    File contentFile = File.createTempFile("tikafork-test-", ".txt");
+    try (TikaProcessPool tikaProcessPool = new TikaProcessPool(javaPath,
+        System.getProperty("java.io.tmpdir"),
+        tikaDistPath,
+        200,
+        parseProperties,
+        0,
+        -1,
+        1,
+        true,
+        30000,
+        3000,
+        -1,
+        -1)) {
+      for (long maxBytes : new long[] {maxBytesToParse, 100}) {
+        ByteArrayOutputStream streamContent = new ByteArrayOutputStream();
+        try (FileInputStream fis = new FileInputStream(txtPath)) {
+          tikaProcessPool.parse(txtPath, "text/plain", fis, streamContent, 300000L, maxBytes);
+        }
+        try (FileInputStream fis = new FileInputStream(txtPath);
+             OutputStream contentOutputStream = ParseStreams.create(contentFile.toPath())) {
+          tikaProcessPool.parse(txtPath, "text/plain", fis, contentOutputStream, 300000L, maxBytes);
+        }
+        Assert.assertTrue(streamContent.size() > 0);
+        Assert.assertTrue(streamContent.size() <= maxBytes);
+        Assert.assertArrayEquals(streamContent.toByteArray(), Files.readAllBytes(contentFile.toPath()));
+      }
+    } finally {
+      contentFile.delete();
+    }
+  }
+
+  @Test
+  public void testContentFromPath() throws Exception {
+    parseProperties.setProperty("contentFromPath", "true");
+    try (TikaProcessPool tikaProcessPool = new TikaProcessPool(javaPath,
+        System.getProperty("java.io.tmpdir"),
+        tikaDistPath,
+        200,
+        parseProperties,
+        0,
+        -1,
+        1,
+        true,
+        30000,
+        3000,
+        -1,
+        -1)) {
+      for (String path : new String[] {pdfPath, xlsPath}) {
+        String contentType = path.equals(pdfPath) ? "application/pdf" : "application/vnd.ms-excel";
+        ByteArrayOutputStream fileContent = new ByteArrayOutputStream();
+        Metadata fileMetadata;
+        try (InputStream contentInputStream = ParseStreams.open(Paths.get(path))) {
+          fileMetadata = tikaProcessPool.parse(path, contentType, contentInputStream, fileContent, 300000L,
+              maxBytesToParse);
+        }
+        ByteArrayOutputStream streamContent = new ByteArrayOutputStream();
+        Metadata streamMetadata = tikaProcessPool.parse(path, contentType,
+            new ByteArrayInputStream(Files.readAllBytes(Paths.get(path))), streamContent, 300000L, maxBytesToParse);
+        Assert.assertTrue(fileContent.size() > 0);
+        Assert.assertArrayEquals(path, streamContent.toByteArray(), fileContent.toByteArray());
+        Assert.assertEquals(path, streamMetadata.size(), fileMetadata.size());
+      }
+    }
+  }
+
+  @Test
+  public void testTempDirectoryRemovedWithProcess() throws Exception {
+    File workDirectory = new File("build", "test_temp_directories");
+    FileUtils.deleteQuietly(workDirectory);
+    workDirectory.mkdirs();
+    try {
+      try (TikaProcessPool tikaProcessPool = new TikaProcessPool(javaPath,
+          workDirectory.getAbsolutePath(),
+          tikaDistPath,
+          200,
+          parseProperties,
+          0,
+          -1,
+          1,
+          true,
+          30000,
+          3000,
+          -1,
+          -1);
+           FileInputStream fis = new FileInputStream(pdfPath)) {
+        tikaProcessPool.parse(pdfPath, "application/pdf", fis, new ByteArrayOutputStream(), 300000L, maxBytesToParse);
+        File[] tempDirectories = workDirectory.listFiles(file -> file.getName().startsWith("tikafork-temp-"));
+        Assert.assertEquals(1, tempDirectories.length);
+        Assert.assertTrue(new File(tempDirectories[0], "tikafork.lock").exists());
+      }
+      Assert.assertEquals(0, workDirectory.listFiles(file -> file.getName().startsWith("tikafork-temp-")).length);
+    } finally {
+      FileUtils.deleteQuietly(workDirectory);
+    }
+  }
+
+  @Test
+  public void testTempFilesWrittenToTempDirectory() throws Exception {
+    File workDirectory = new File("build", "test_temp_files");
+    FileUtils.deleteQuietly(workDirectory);
+    workDirectory.mkdirs();
+    try (TikaProcessPool tikaProcessPool = new TikaProcessPool(javaPath,
+        workDirectory.getAbsolutePath(),
+        tikaDistPath,
+        200,
+        parseProperties,
+        0,
+        -1,
+        1,
+        true,
+        30000,
+        3000,
+        -1,
+        -1)) {
+      // Starts the fork and its temp directory.
+      try (FileInputStream fis = new FileInputStream(pdfPath)) {
+        tikaProcessPool.parse(pdfPath, "application/pdf", fis, new ByteArrayOutputStream(), 300000L, maxBytesToParse);
+      }
+      File[] tempDirectories = workDirectory.listFiles(file -> file.getName().startsWith("tikafork-temp-"));
+      Assert.assertEquals(1, tempDirectories.length);
+      try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+        tempDirectories[0].toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE);
+        // The MP4 parser spools its input to a temp file.
+        tikaProcessPool.parse("test.mp4", "video/mp4", new ByteArrayInputStream(new byte[1000]),
+            new ByteArrayOutputStream(), 300000L, maxBytesToParse);
+        Assert.assertTrue(createdFiles(watchService).stream().anyMatch(name -> name.startsWith("apache-tika-")));
+      }
+    } finally {
+      FileUtils.deleteQuietly(workDirectory);
+    }
+  }
+
+  @Test
+  public void testSmallInputsParsedWithoutTempFiles() throws Exception {
+    File workDirectory = new File("build", "test_memory_input");
+    FileUtils.deleteQuietly(workDirectory);
+    workDirectory.mkdirs();
+    parseProperties.setProperty("inputMemoryThresholdBytes", "1048576");
+    try (TikaProcessPool tikaProcessPool = new TikaProcessPool(javaPath,
+        workDirectory.getAbsolutePath(),
+        tikaDistPath,
+        200,
+        parseProperties,
+        0,
+        -1,
+        1,
+        true,
+        30000,
+        3000,
+        -1,
+        -1);
+         WatchService watchService = watchTempDirectory(tikaProcessPool, workDirectory)) {
+      ByteArrayOutputStream pdfContent = new ByteArrayOutputStream();
+      tikaProcessPool.parse(pdfPath, "application/pdf",
+          new ByteArrayInputStream(Files.readAllBytes(Paths.get(pdfPath))), pdfContent, 300000L, maxBytesToParse);
+      Assert.assertTrue(pdfContent.size() > 0);
+      ByteArrayOutputStream docxContent = new ByteArrayOutputStream();
+      tikaProcessPool.parse("test.docx", "application/vnd.openxmlformats-officedocument.wordprocessingml.document",
+          new ByteArrayInputStream(docx("The title", 10000)), docxContent, 300000L, maxBytesToParse);
+      Assert.assertTrue(docxContent.size() > 10000);
+      ByteArrayOutputStream xlsContent = new ByteArrayOutputStream();
+      tikaProcessPool.parse(xlsPath, "application/vnd.ms-excel",
+          new ByteArrayInputStream(Files.readAllBytes(Paths.get(xlsPath))), xlsContent, 300000L, maxBytesToParse);
+      Assert.assertTrue(xlsContent.size() > 0);
+      Assert.assertEquals(new ArrayList<String>(), createdFiles(watchService));
+    } finally {
+      FileUtils.deleteQuietly(workDirectory);
+    }
+  }
+
+  @Test
+  public void testSmallOOXMLPropertiesReadWithoutTempFiles() throws Exception {
+    File workDirectory = new File("build", "test_memory_input_metadata");
+    FileUtils.deleteQuietly(workDirectory);
+    workDirectory.mkdirs();
+    parseProperties.setProperty("metadataOnly", "true");
+    try {
+      for (String memoryThresholdBytes : new String[] {"1048576", "0"}) {
+        parseProperties.setProperty("inputMemoryThresholdBytes", memoryThresholdBytes);
+        try (TikaProcessPool tikaProcessPool = new TikaProcessPool(javaPath,
+            workDirectory.getAbsolutePath(),
+            tikaDistPath,
+            200,
+            parseProperties,
+            0,
+            -1,
+            1,
+            true,
+            30000,
+            3000,
+            -1,
+            -1);
+             WatchService watchService = watchTempDirectory(tikaProcessPool, workDirectory)) {
+          Metadata metadata = tikaProcessPool.parse("test.docx",
+              "application/vnd.openxmlformats-officedocument.wordprocessingml.document",
+              new ByteArrayInputStream(docx("The title", 10000)), new ByteArrayOutputStream(), 300000L,
+              maxBytesToParse);
+          Assert.assertEquals("The title", metadata.get(TikaCoreProperties.TITLE));
+          // Read from memory if it is held there, and from a spooled copy otherwise.
+          Assert.assertEquals(memoryThresholdBytes.equals("0") ? 1 : 0, createdFiles(watchService).size());
+        }
+      }
+    } finally {
+      FileUtils.deleteQuietly(workDirectory);
+    }
+  }
+
+  /**
+   * Starts the fork of a pool of one with a parse, and watches the files that are created in its temp directory.
+   */
+  private WatchService watchTempDirectory(TikaProcessPool tikaProcessPool, File workDirectory) throws Exception {
+    try (FileInputStream fis = new FileInputStream(pdfPath)) {
+      tikaProcessPool.parse(pdfPath, "application/pdf", fis, new ByteArrayOutputStream(), 300000L, maxBytesToParse);
+    }
+    File[] tempDirectories = workDirectory.listFiles(file -> file.getName().startsWith("tikafork-temp-"));
+    Assert.assertEquals(1, tempDirectories.length);
+    WatchService watchService = FileSystems.getDefault().newWatchService();
+    tempDirectories[0].toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE);
+    return watchService;
+  }
+
+  /**
+   * @return the names of the files created in the watched directory. Temp files are deleted after the parse, but their
+   * creation is still queued.
+   */
+  private static List<String> createdFiles(WatchService watchService) {
+    List<String> createdFiles = new ArrayList<>();
+    for (WatchKey watchKey = watchService.poll(); watchKey != null; watchKey = watchService.poll()) {
+      for (WatchEvent<?> event : watchKey.pollEvents()) {
+        createdFiles.add(String.valueOf(event.context()));
+      }
+    }
+    return createdFiles;
+  }
+
+  @Test
+  public void testRangeRequests() throws Exception {
+    byte[] docx = docx("The title", 2000000);
+    parseProperties.setProperty("metadataOnly", "true");
+    parseProperties.setProperty("rangeRequests", "true");
+    try (TikaProcessPool tikaProcessPool = new TikaProcessPool(javaPath,
+        System.getProperty("java.io.tmpdir"),
+        tikaDistPath,
+        200,
+        parseProperties,
+        0,
+        -1,
+        1,
+        true,
+        30000,
+        3000,
+        -1,
+        -1)) {
+      String contentType = "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+      CountingContent content = new CountingContent(docx);
+      Metadata rangeMetadata = tikaProcessPool.parse("doc.docx", contentType, ParseStreams.open(content),
+          new ByteArrayOutputStream(), 300000L, maxBytesToParse);
+      Metadata streamMetadata = tikaProcessPool.parse("doc.docx", contentType, new ByteArrayInputStream(docx),
+          new ByteArrayOutputStream(), 300000L, maxBytesToParse);
+      Assert.assertEquals("The title", rangeMetadata.get("dc:title"));
+      Assert.assertEquals(streamMetadata.size(), rangeMetadata.size());
+      // Only the central directory and the properties are fetched.
+      Assert.assertTrue(content.numBytesRead + " bytes read", content.numBytesRead < docx.length / 100);
+
+      // Other documents are read from start to end, so they are streamed and the input is at its end.
+      byte[] pdf = Files.readAllBytes(Paths.get(pdfPath));
+      InputStream pdfStream = ParseStreams.open(new CountingContent(pdf));
+      tikaProcessPool.parse(pdfPath, "application/pdf", pdfStream, new ByteArrayOutputStream(), 300000L,
+          maxBytesToParse);
+      Assert.assertEquals(-1, pdfStream.read());
+    }
+
+    // Other parses read the whole input, so it is streamed.
+    parseProperties.setProperty("metadataOnly", "false");
+    try (TikaProcessPool tikaProcessPool = new TikaProcessPool(javaPath,
+        System.getProperty("java.io.tmpdir"),
+        tikaDistPath,
+        200,
+        parseProperties,
+        0,
+        -1,
+        1,
+        true,
+        30000,
+        3000,
+        -1,
+        -1)) {
+      byte[] pdf = Files.readAllBytes(Paths.get(pdfPath));
+      ByteArrayOutputStream rangeContent = new ByteArrayOutputStream();
+      InputStream pdfStream = ParseStreams.open(new CountingContent(pdf));
+      Metadata rangeMetadata = tikaProcessPool.parse(pdfPath, "application/pdf", pdfStream, rangeContent, 300000L,
+          maxBytesToParse);
+      ByteArrayOutputStream streamContent = new ByteArrayOutputStream();
+      Metadata streamMetadata = tikaProcessPool.parse(pdfPath, "application/pdf", new ByteArrayInputStream(pdf),
+          streamContent, 300000L, maxBytesToParse);
+      Assert.assertEquals(-1, pdfStream.read());
+      Assert.assertTrue(rangeContent.size() > 0);
+      Assert.assertArrayEquals(streamContent.toByteArray(), rangeContent.toByteArray());
+      Assert.assertEquals(streamMetadata.size(), rangeMetadata.size());
+
+      InputStream docxStream = ParseStreams.open(new CountingContent(docx));
+      tikaProcessPool.parse("doc.docx", "application/vnd.openxmlformats-officedocument.wordprocessingml.document",
+          docxStream, new ByteArrayOutputStream(), 300000L, maxBytesToParse);
+      Assert.assertEquals(-1, docxStream.read());
+    }
+  }
+
+  /**
+   * A minimal Word document with a body of random text, which does not compress.
+   */
+  private static byte[] docx(String title, int bodyLength) throws IOException {
+    String w = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+    String relationships = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    StringBuilder body = new StringBuilder(bodyLength);
+    Random random = new Random(42);
+    while (body.length() < bodyLength) {
+      body.append((char) ('a' + random.nextInt(26)));
+      if (random.nextInt(8) == 0) {
+        body.append(' ');
+      }
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+      addEntry(zip, "[Content_Types].xml",
+          "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+          + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+          + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+          + "<Override PartName=\"/word/document.xml\" ContentType=\"application/"
+          + "vnd.openxmlformats-officedocument.wordprocessingml.document.main+xml\"/>"
+          + "<Override PartName=\"/docProps/core.xml\" ContentType=\"application/"
+          + "vnd.openxmlformats-package.core-properties+xml\"/></Types>");
+      addEntry(zip, "_rels/.rels",
+          "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+          + "<Relationship Id=\"rId1\" Type=\"" + relationships + "/officeDocument\" Target=\"word/document.xml\"/>"
+          + "<Relationship Id=\"rId2\" Type=\"http://schemas.openxmlformats.org/package/2006/relationships/metadata/"
+          + "core-properties\" Target=\"docProps/core.xml\"/></Relationships>");
+      addEntry(zip, "docProps/core.xml", "<cp:coreProperties xmlns:cp=\"http://schemas.openxmlformats.org/package/2006/"
+          + "metadata/core-properties\" xmlns:dc=\"http://purl.org/dc/elements/1.1/\"><dc:title>" + title
+          + "</dc:title></cp:coreProperties>");
+      addEntry(zip, "word/document.xml", "<w:document xmlns:w=\"" + w + "\"><w:body><w:p><w:r><w:t>" + body
+          + "</w:t></w:r></w:p></w:body></w:document>");
+    }
+    return bytes.toByteArray();
+  }
+
+  private static void addEntry(ZipOutputStream zip, String name, String content) throws IOException {
+    zip.putNextEntry(new ZipEntry(name));
+    zip.write(content.getBytes(StandardCharsets.UTF_8));
+    zip.closeEntry();
+  }
+
+  /**
+   * Serves a byte array, like remote storage with range reads, and counts the bytes read.
+   */
+  private static class CountingContent implements RandomAccessContent {
+    private final byte[] bytes;
+    private long numBytesRead;
+
+    CountingContent(byte[] bytes) {
+      this.bytes = bytes;
+    }
+
+    @Override
+    public long length() {
+      return bytes.length;
+    }
+
+    @Override
+    public int read(long position, byte[] buffer, int offset, int length) {
+      if (position >= bytes.length) {
+        return -1;
+      }
+      int n = (int) Math.min(length, bytes.length - position);
+      System.arraycopy(bytes, (int) position, buffer, offset, n);
+      numBytesRead += n;
+      return n;
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
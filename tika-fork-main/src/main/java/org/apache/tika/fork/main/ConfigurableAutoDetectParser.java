@@ -132,9 +132,16 @@ public class ConfigurableAutoDetectParser extends CompositeParser {
       InputStream stream, ContentHandler handler,
       Metadata metadata, ParseContext context)
       throws IOException, SAXException, TikaException {
+    // The fork parses embedded resources with this parser, so the limits are checked here.
+    EmbeddedResourceLimits limits = context.get(EmbeddedResourceLimits.class);
+    if (limits != null && !limits.startResource()) {
+      log.debug("Skipping embedded resource {}, the embedded resource limit was reached",
+          metadata.get(Metadata.RESOURCE_NAME_KEY));
+      return;
+    }
     TemporaryResources tmp = new TemporaryResources();
     try {
-      TikaInputStream tis = TikaInputStream.get(stream, tmp);
+      TikaInputStream tis = limits != null ? limits.countBytes(stream, tmp) : TikaInputStream.get(stream, tmp);
 
       // Automatically detect the MIME type of the document
       MediaType type = detector.detect(tis, metadata);
@@ -0,0 +1,144 @@
+package org.apache.tika.fork.main;
+
+import org.apache.tika.io.TemporaryResources;
+import org.apache.tika.io.TikaInputStream;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Bounds the number of embedded resources and the bytes of embedded content parsed for one document. Put in the
+ * {@link org.apache.tika.parser.ParseContext}, where {@link ConfigurableAutoDetectParser} finds it when it parses an
+ * embedded resource.
+ * <p>
+ * Once a limit is reached the remaining embedded resources are skipped. Nested resources count too, so the bytes of
+ * a ZIP inside a ZIP count once for the inner ZIP and again for the entries read from it. Not thread safe, embedded
+ * resources are parsed one at a time.
+ */
+public class EmbeddedResourceLimits {
+  private final long maxResources;
+  private final long maxBytes;
+  private long numResources = 0;
+  private long numBytes = 0;
+  private boolean limitReached = false;
+
+  /**
+   * @param maxResources maximum number of embedded resources to parse, -1 for no limit
+   * @param maxBytes     maximum number of bytes to read from all embedded resources together, -1 for no limit
+   */
+  public EmbeddedResourceLimits(long maxResources, long maxBytes) {
+    this.maxResources = maxResources;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Counts an embedded resource that is about to be parsed.
+   *
+   * @return false if the resource should be skipped because a limit has been reached.
+   */
+  public boolean startResource() {
+    if (limitReached
+        || (maxResources >= 0 && numResources >= maxResources)
+        || (maxBytes >= 0 && numBytes >= maxBytes)) {
+      limitReached = true;
+      return false;
+    }
+    ++numResources;
+    return true;
+  }
+
+  /**
+   * @return whether resources were skipped or cut short.
+   */
+  public boolean isLimitReached() {
+    return limitReached;
+  }
+
+  public long getNumResources() {
+    return numResources;
+  }
+
+  public long getNumBytes() {
+    return numBytes;
+  }
+
+  /**
+   * @return the embedded resource as a stream that counts the bytes read from it, and ends early once the bytes of
+   * all embedded resources reach the limit. A {@link TikaInputStream} of known length that fits in the bytes left,
+   * such as one backed by a file or the empty stream of an embedded OLE document, is counted up front and returned as
+   * it is, so that parsers still get its file and its open container. Other streams are wrapped, and keep their open
+   * container.
+   */
+  public TikaInputStream countBytes(InputStream stream, TemporaryResources tmp) throws IOException {
+    if (!(stream instanceof TikaInputStream)) {
+      return TikaInputStream.get(countBytes(stream), tmp);
+    }
+    TikaInputStream tikaInputStream = (TikaInputStream) stream;
+    // getLength would spool a stream of unknown length to find out.
+    if (tikaInputStream.hasLength() && tikaInputStream.getLength() <= remaining()) {
+      addBytes(tikaInputStream.getLength());
+      return tikaInputStream;
+    }
+    TikaInputStream counted = TikaInputStream.get(countBytes(stream), tmp);
+    counted.setOpenContainer(tikaInputStream.getOpenContainer());
+    return counted;
+  }
+
+  private InputStream countBytes(InputStream stream) {
+    return new FilterInputStream(stream) {
+      @Override
+      public int read() throws IOException {
+        if (remaining() <= 0) {
+          return -1;
+        }
+        int b = super.read();
+        if (b >= 0) {
+          addBytes(1);
+        }
+        return b;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        long remaining = remaining();
+        if (remaining <= 0) {
+          return -1;
+        }
+        int n = super.read(b, off, (int) Math.min(len, remaining));
+        if (n > 0) {
+          addBytes(n);
+        }
+        return n;
+      }
+
+      @Override
+      public long skip(long n) throws IOException {
+        long skipped = super.skip(Math.min(n, remaining()));
+        addBytes(skipped);
+        return skipped;
+      }
+
+      @Override
+      public boolean markSupported() {
+        // A reset would make the count wrong.
+        return false;
+      }
+    };
+  }
+
+  private long remaining() {
+    if (maxBytes < 0) {
+      return Long.MAX_VALUE;
+    }
+    long remaining = maxBytes - numBytes;
+    if (remaining <= 0) {
+      limitReached = true;
+    }
+    return remaining;
+  }
+
+  private void addBytes(long n) {
+    numBytes += n;
+  }
+}
@@ -0,0 +1,122 @@
+package org.apache.tika.fork.main;
+
+import java.util.HashMap;
+import java.util.Map;
+
+class LinkBuilder {
+
+  private final String type;
+
+  private String uri = "";
+
+  private String title = "";
+
+  private String rel = "";
+
+  private final StringBuilder text = new StringBuilder();
+
+  /** Maximum length of the text, -1 for no limit */
+  private final int maxTextLength;
+
+  /** Most elements have no params, the map is created on the first one */
+  private Map<String,Object> params;
+
+  public LinkBuilder(String type) {
+    this(type, -1);
+  }
+
+  public LinkBuilder(String type, int maxTextLength) {
+    this.type = type;
+    this.maxTextLength = maxTextLength;
+  }
+
+  public void setURI(String uri) {
+    if (uri != null) {
+      this.uri = uri;
+    } else {
+      this.uri = "";
+    }
+  }
+
+  public void setTitle(String title) {
+    if (title != null) {
+      this.title = title;
+    } else {
+      this.title = "";
+    }
+  }
+
+  public void setRel(String rel) {
+    if (rel != null) {
+      this.rel = rel;
+    } else {
+      this.rel = "";
+    }
+  }
+  
+  public void setParam(String name, Object value) {
+    if (value != null) {
+      if (params == null) {
+        params = new HashMap<String,Object>(4);
+      }
+      params.put(name, value);
+    } else if (params != null) {
+      params.remove(name);
+    }
+  }
+
+  public void characters(char[] ch, int offset, int length) {
+    if (maxTextLength >= 0) {
+      length = Math.min(length, maxTextLength - text.length());
+    }
+    if (length > 0) {
+      text.append(ch, offset, length);
+    }
+  }
+
+  public Link getLink(String baseUri) {
+    return getLink(baseUri, false);
+  }
+
+  public Link getLink(String baseUri, boolean collapseWhitespace) {
+    String anchor = collapseWhitespace ? collapseWhitespace(text) : text.toString();
+
+    return new Link(type, baseUri, uri, title, anchor, rel, params);
+  }
+
+  /**
+   * Same as <code>text.toString().replaceAll("\\s+", " ").trim()</code> in a single pass without a regex.
+   */
+  static String collapseWhitespace(CharSequence text) {
+    int start = 0;
+    int end = text.length();
+    // trim() removes all control characters, not only the whitespace that \s matches.
+    while (start < end && text.charAt(start) <= ' ') {
+      ++start;
+    }
+    while (end > start && text.charAt(end - 1) <= ' ') {
+      --end;
+    }
+    StringBuilder collapsed = null;
+    boolean inWhitespace = false;
+    for (int i = start; i < end; ++i) {
+      char c = text.charAt(i);
+      boolean whitespace = c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+      if (whitespace) {
+        if (collapsed == null && (inWhitespace || c != ' ')) {
+          // First whitespace that needs to change, copy what came before it.
+          collapsed = new StringBuilder(end - start);
+          collapsed.append(text, start, i);
+        }
+        if (collapsed != null && !inWhitespace) {
+          collapsed.append(' ');
+        }
+      } else if (collapsed != null) {
+        collapsed.append(c);
+      }
+      inWhitespace = whitespace;
+    }
+    return collapsed != null ? collapsed.toString() : text.subSequence(start, end).toString();
+  }
+
+}
@@ -0,0 +1,56 @@
+package org.apache.tika.fork.main;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Stops a parse that runs past the deadline the client asked for, so that the text and metadata extracted so far can
+ * be sent back before the client gives up on the fork.
+ * <p>
+ * A timer calls {@link #expire()} and the content handlers call {@link #check()} on their SAX events, which only
+ * reads a volatile flag. A parser that is stuck without producing SAX events is not stopped, and the client times out
+ * as before.
+ */
+public class ParseDeadline {
+  private volatile boolean expired = false;
+
+  public void expire() {
+    expired = true;
+  }
+
+  public boolean isExpired() {
+    return expired;
+  }
+
+  /**
+   * @throws SAXException once the deadline has passed
+   */
+  public void check() throws SAXException {
+    if (expired) {
+      throw new DeadlineExceededException();
+    }
+  }
+
+  /**
+   * Checks whether the given exception (or any of it's root causes) was thrown because the deadline passed.
+   *
+   * @param t throwable
+   * @return <code>true</code> if the deadline passed, <code>false</code> otherwise
+   */
+  public static boolean isDeadlineExceeded(Throwable t) {
+    if (t instanceof DeadlineExceededException) {
+      return true;
+    } else {
+      return t.getCause() != null && isDeadlineExceeded(t.getCause());
+    }
+  }
+
+  /**
+   * The exception used as a signal when the deadline has passed.
+   */
+  private static class DeadlineExceededException extends SAXException {
+
+    public DeadlineExceededException() {
+      super("parse deadline");
+    }
+  }
+}
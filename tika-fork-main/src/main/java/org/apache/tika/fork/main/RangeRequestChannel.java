@@ -0,0 +1,193 @@
+package org.apache.tika.fork.main;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * The input of a parse that the client serves in ranges on request, for requests with the <code>contentRanges</code>
+ * header. Only the bytes that are read are transferred, so a reader that seeks, such as the OOXML properties
+ * extractor reading the central directory of the package, gets by with a small part of a large document.
+ * <p>
+ * After the header, the fork writes the position (long) and the maximum length (int) of each range to the content in
+ * socket, and the client answers with the number of bytes (int, -1 at the end of the input) followed by the bytes.
+ * A negative position ends the exchange, see {@link #finish()}.
+ */
+public class RangeRequestChannel implements SeekableByteChannel {
+  private static final int MAX_RANGE_BYTES = 64 * 1024;
+  private static final long END_OF_REQUESTS = -1L;
+
+  private final DataInputStream in;
+  private final DataOutputStream out;
+  private final long size;
+  private long position;
+  private long bytesTransferred;
+  private int numRequests;
+  private boolean finished;
+
+  /**
+   * @param in   the content in socket input, after the header
+   * @param out  the content in socket output
+   * @param size length of the input in bytes, as sent in the header
+   */
+  public RangeRequestChannel(InputStream in, OutputStream out, long size) {
+    this.in = new DataInputStream(in);
+    this.out = new DataOutputStream(out);
+    this.size = size;
+  }
+
+  /**
+   * Reads a range at the given position without changing the position of the channel.
+   *
+   * @return the number of bytes read, or -1 at the end of the input
+   */
+  public synchronized int read(ByteBuffer dst, long position) throws IOException {
+    if (finished) {
+      throw new IOException("The range requests are finished");
+    }
+    if (position >= size) {
+      return -1;
+    }
+    int length = (int) Math.min(Math.min(dst.remaining(), MAX_RANGE_BYTES), size - position);
+    if (length == 0) {
+      return 0;
+    }
+    out.writeLong(position);
+    out.writeInt(length);
+    out.flush();
+    int n = in.readInt();
+    if (n < 0) {
+      return -1;
+    }
+    if (n == 0 || n > length) {
+      throw new IOException("Invalid range of " + n + " bytes at " + position + " for a request of " + length);
+    }
+    if (dst.hasArray()) {
+      in.readFully(dst.array(), dst.arrayOffset() + dst.position(), n);
+      dst.position(dst.position() + n);
+    } else {
+      byte[] bytes = new byte[n];
+      in.readFully(bytes);
+      dst.put(bytes);
+    }
+    ++numRequests;
+    bytesTransferred += n;
+    return n;
+  }
+
+  @Override
+  public synchronized int read(ByteBuffer dst) throws IOException {
+    int n = read(dst, position);
+    if (n > 0) {
+      position += n;
+    }
+    return n;
+  }
+
+  /**
+   * @return a stream over the whole input, from the start, with its own position so that it can be read besides
+   * other readers of the channel.
+   */
+  public InputStream newInputStream() {
+    return new InputStream() {
+      private long streamPosition;
+
+      @Override
+      public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+          return 0;
+        }
+        int n = RangeRequestChannel.this.read(ByteBuffer.wrap(b, off, len), streamPosition);
+        if (n > 0) {
+          streamPosition += n;
+        }
+        return n;
+      }
+
+      @Override
+      public long skip(long n) {
+        long skipped = Math.max(Math.min(n, size - streamPosition), 0L);
+        streamPosition += skipped;
+        return skipped;
+      }
+
+      @Override
+      public int available() {
+        return (int) Math.min(Math.max(size - streamPosition, 0L), Integer.MAX_VALUE);
+      }
+    };
+  }
+
+  /**
+   * Tells the client that no more ranges are requested.
+   */
+  public synchronized void finish() throws IOException {
+    if (!finished) {
+      finished = true;
+      out.writeLong(END_OF_REQUESTS);
+      out.writeInt(0);
+      out.flush();
+    }
+  }
+
+  public synchronized long getBytesTransferred() {
+    return bytesTransferred;
+  }
+
+  public synchronized int getNumRequests() {
+    return numRequests;
+  }
+
+  @Override
+  public int write(ByteBuffer src) {
+    throw new NonWritableChannelException();
+  }
+
+  @Override
+  public synchronized long position() {
+    return position;
+  }
+
+  @Override
+  public synchronized SeekableByteChannel position(long newPosition) {
+    if (newPosition < 0) {
+      throw new IllegalArgumentException("Negative position " + newPosition);
+    }
+    position = newPosition;
+    return this;
+  }
+
+  @Override
+  public long size() {
+    return size;
+  }
+
+  @Override
+  public SeekableByteChannel truncate(long size) {
+    throw new NonWritableChannelException();
+  }
+
+  @Override
+  public synchronized boolean isOpen() {
+    return !finished;
+  }
+
+  /**
+   * Does nothing, so that readers such as a zip file can close the channel they were given. The socket belongs to the
+   * parse, which calls {@link #finish()}.
+   */
+  @Override
+  public void close() {
+  }
+}
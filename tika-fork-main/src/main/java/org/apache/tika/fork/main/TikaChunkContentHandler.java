@@ -0,0 +1,260 @@
+package org.apache.tika.fork.main;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Cuts the extracted text into chunks of a bounded size and passes each one on with its offset in the text and where
+ * it came from, instead of writing the text to one stream.
+ * <p>
+ * The text is written to {@link #getWriter()}, usually by a {@link TikaStreamingBodyContentHandler}. This handler
+ * gets the same SAX events and follows the position in the document:
+ * <ul>
+ * <li>pages, from the <code>&lt;div class="page"&gt;</code> elements that PDF, spreadsheet and presentation parsers
+ * write. Spreadsheets start each sheet with its name in an h1 element.</li>
+ * <li>embedded resources, from the <code>&lt;div class="package-entry"&gt;</code> elements around embedded resources,
+ * with the resource name in an h1 element.</li>
+ * </ul>
+ * A chunk never spans two pages or two embedded resources. Chunks are cut after whitespace when there is some in the
+ * second half of the chunk, so that words are not split.
+ */
+public class TikaChunkContentHandler extends DefaultHandler {
+
+  private static final String DIV = "div";
+  private static final String H1 = "h1";
+  private static final String PAGE = "page";
+  private static final String PACKAGE_ENTRY = "package-entry";
+  private static final int MAX_HEADING_LENGTH = 1024;
+
+  /**
+   * Receives each chunk of text.
+   */
+  public interface ChunkListener {
+    /**
+     * @param offset       offset of the chunk in the text of the document, in chars
+     * @param text         the chunk, only valid during the call
+     * @param length       number of chars of the chunk
+     * @param page         page, sheet or slide number counted from 1 within the embedded resource, or 0 if unknown
+     * @param sheet        name of the spreadsheet sheet, or null
+     * @param embeddedPath path of the embedded resource, e.g. <code>/report.zip/report.pdf</code>, or null for the
+     *                     document itself
+     */
+    void onChunk(long offset, char[] text, int length, int page, String sheet, String embeddedPath)
+        throws IOException;
+  }
+
+  /**
+   * The position in the document. A new one starts with each embedded resource.
+   */
+  private static class Position {
+    final String parentPath;
+    final int depth;
+    String path;
+    int page = 0;
+    String sheet;
+
+    Position(String parentPath, String name, int depth) {
+      this.parentPath = parentPath;
+      this.depth = depth;
+      setName(name);
+    }
+
+    void setName(String name) {
+      path = name == null ? null : (parentPath == null ? "" : parentPath) + "/" + name;
+    }
+  }
+
+  private enum Heading {
+    NONE, SHEET, PACKAGE_ENTRY
+  }
+
+  private final ChunkListener listener;
+  private final char[] buffer;
+  private int length = 0;
+  private long offset = 0;
+
+  private final Deque<Position> positions = new ArrayDeque<>();
+  private int depth = 0;
+  private int unnamedCount = 0;
+
+  /**
+   * What the text of the next h1 element names, if the element comes first in a page or package entry.
+   */
+  private Heading expectedHeading = Heading.NONE;
+  private Heading heading = Heading.NONE;
+  private final StringBuilder headingText = new StringBuilder();
+
+  private final Writer writer = new Writer() {
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+      appendChars(cbuf, off, len);
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+      if (length == buffer.length) {
+        emit(cutIndex());
+      }
+      buffer[length++] = (char) c;
+    }
+
+    @Override
+    public void flush() throws IOException {
+      emit(length);
+    }
+
+    @Override
+    public void close() throws IOException {
+      flush();
+    }
+  };
+
+  /**
+   * @param chunkSize maximum number of chars of a chunk
+   * @param listener  gets the chunks
+   */
+  public TikaChunkContentHandler(int chunkSize, ChunkListener listener) {
+    this.buffer = new char[chunkSize];
+    this.listener = listener;
+    positions.push(new Position(null, null, 0));
+  }
+
+  /**
+   * @return the writer for the text, which passes on the chunks. Flushing it passes on the text written so far.
+   */
+  public Writer getWriter() {
+    return writer;
+  }
+
+  @Override
+  public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+    ++depth;
+    Heading expected = expectedHeading;
+    expectedHeading = Heading.NONE;
+    if (expected != Heading.NONE && H1.equals(localName)) {
+      heading = expected;
+      headingText.setLength(0);
+      return;
+    }
+    if (!DIV.equals(localName)) {
+      return;
+    }
+    String cssClass = attributes.getValue("class");
+    if (PAGE.equals(cssClass)) {
+      flushChunk();
+      Position position = positions.peek();
+      ++position.page;
+      position.sheet = null;
+      expectedHeading = Heading.SHEET;
+    } else if (PACKAGE_ENTRY.equals(cssClass)) {
+      flushChunk();
+      // Renamed if the entry starts with its name.
+      positions.push(new Position(positions.peek().path, "embedded-" + (++unnamedCount), depth));
+      expectedHeading = Heading.PACKAGE_ENTRY;
+    }
+  }
+
+  @Override
+  public void endElement(String uri, String localName, String qName) throws SAXException {
+    expectedHeading = Heading.NONE;
+    if (heading != Heading.NONE && H1.equals(localName)) {
+      String name = headingText.toString().trim();
+      if (!name.isEmpty()) {
+        if (heading == Heading.SHEET) {
+          positions.peek().sheet = name;
+        } else {
+          --unnamedCount;
+          positions.peek().setName(name);
+        }
+      }
+      heading = Heading.NONE;
+    } else if (positions.size() > 1 && depth == positions.peek().depth) {
+      flushChunk();
+      positions.pop();
+    }
+    --depth;
+  }
+
+  @Override
+  public void characters(char[] ch, int start, int length) throws SAXException {
+    if (heading != Heading.NONE) {
+      headingText.append(ch, start, Math.min(length, MAX_HEADING_LENGTH - headingText.length()));
+    } else if (expectedHeading != Heading.NONE && !isWhitespace(ch, start, length)) {
+      expectedHeading = Heading.NONE;
+    }
+  }
+
+  /**
+   * Passes on the text of the position that ends. Only whitespace, such as the line break that the body handler writes
+   * before a page, is left for the next chunk.
+   */
+  private void flushChunk() throws SAXException {
+    if (isWhitespace(buffer, 0, length)) {
+      return;
+    }
+    try {
+      emit(length);
+    } catch (IOException e) {
+      throw new SAXException("Error writing out a chunk", e);
+    }
+  }
+
+  private void appendChars(char[] cbuf, int off, int len) throws IOException {
+    while (len > 0) {
+      if (length == buffer.length) {
+        emit(cutIndex());
+      }
+      int n = Math.min(len, buffer.length - length);
+      System.arraycopy(cbuf, off, buffer, length, n);
+      length += n;
+      off += n;
+      len -= n;
+    }
+  }
+
+  /**
+   * @return the number of chars of the full buffer to pass on: up to the last whitespace in its second half, or all
+   * of it without splitting a surrogate pair.
+   */
+  private int cutIndex() {
+    for (int i = buffer.length - 1; i >= buffer.length / 2; --i) {
+      if (Character.isWhitespace(buffer[i])) {
+        return i + 1;
+      }
+    }
+    int cut = buffer.length;
+    if (cut > 1 && Character.isHighSurrogate(buffer[cut - 1])) {
+      --cut;
+    }
+    return cut;
+  }
+
+  /**
+   * Passes on the first chars of the buffer and keeps the rest.
+   */
+  private void emit(int n) throws IOException {
+    if (n == 0) {
+      return;
+    }
+    Position position = positions.peek();
+    listener.onChunk(offset, buffer, n, position.page, position.sheet, position.path);
+    offset += n;
+    length -= n;
+    System.arraycopy(buffer, n, buffer, 0, length);
+  }
+
+  private static boolean isWhitespace(char[] ch, int start, int length) {
+    for (int i = start; i < start + length; ++i) {
+      if (!Character.isWhitespace(ch[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
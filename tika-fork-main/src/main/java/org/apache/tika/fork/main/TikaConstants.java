@@ -17,10 +17,44 @@ public class TikaConstants {
   public static final String INVALID_LAST_MODIFIED_DATE = "0002-11-30T00:00:00Z";
 
   public static final String RESOURCE_SEPARATOR = "#";
+
+  /**
+   * Name of the file in the temp directory of a fork that the fork keeps locked while it runs.
+   */
+  public static final String TEMP_DIRECTORY_LOCK_FILE = "tikafork.lock";
+
+  /**
+   * Names of the request header fields that precede the content on the content in socket.
+   */
+  public static final String HEADER_BASE_URI = "baseUri";
+  public static final String HEADER_CONTENT_TYPE = "contentType";
+  public static final String HEADER_MAX_BYTES_TO_PARSE = "maxBytesToParse";
+  public static final String HEADER_SEND_LINKS = "sendLinks";
+  public static final String HEADER_SEND_EMBEDDED = "sendEmbedded";
+  public static final String HEADER_PARSE_DEADLINE_MS = "parseDeadlineMs";
+  public static final String HEADER_SEND_CHUNKS = "sendChunks";
+  public static final String HEADER_CONTENT_LENGTH = "contentLength";
+  public static final String HEADER_CONTENT_PATH = "contentPath";
+  public static final String HEADER_CONTENT_RANGES = "contentRanges";
+
+  /**
+   * Types of the frames written to the metadata out socket, see {@link TikaFrameWriter}.
+   */
+  public static final byte FRAME_METADATA = 0;
+  public static final byte FRAME_LINK = 1;
+  public static final byte FRAME_EMBEDDED = 2;
+  public static final byte FRAME_CHUNK = 3;
+
   public final static Property WRITE_LIMIT_REACHED =
       Property.internalBoolean(TikaCoreProperties.TIKA_META_EXCEPTION_PREFIX + "write_limit_reached");
+  public final static Property LINK_LIMIT_REACHED =
+      Property.internalBoolean(TikaCoreProperties.TIKA_META_EXCEPTION_PREFIX + "link_limit_reached");
   public final static Property EMBEDDED_RESOURCE_LIMIT_REACHED =
       Property.internalBoolean(TikaCoreProperties.TIKA_META_EXCEPTION_PREFIX + "embedded_resource_limit_reached");
+  public final static Property TRUNCATED_BY_TIMEOUT =
+      Property.internalBoolean(TikaCoreProperties.TIKA_META_EXCEPTION_PREFIX + "truncated_by_timeout");
+  public final static Property EMBEDDED_EXCEPTION =
+      Property.internalText(TikaCoreProperties.TIKA_META_EXCEPTION_PREFIX + "embedded_exception");
   //move this to TikaCoreProperties?
   public final static Property EMBEDDED_RESOURCE_PATH =
       Property.internalText(TikaCoreProperties.TIKA_META_PREFIX + "embedded_resource_path");
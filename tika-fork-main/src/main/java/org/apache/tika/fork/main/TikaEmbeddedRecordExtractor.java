@@ -0,0 +1,137 @@
+package org.apache.tika.fork.main;
+
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.extractor.EmbeddedDocumentExtractor;
+import org.apache.tika.extractor.ParsingEmbeddedDocumentExtractor;
+import org.apache.tika.io.TemporaryResources;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.utils.ExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Parses each embedded resource of a container, such as a ZIP entry or an email attachment, on its own and passes
+ * its metadata and content on as soon as it is done, instead of adding its text to the content of the container.
+ * <p>
+ * Nested resources are passed on before the resource that contains them. Each resource gets its path in
+ * {@link TikaConstants#EMBEDDED_RESOURCE_PATH}, e.g. <code>/mail.eml/report.zip/report.pdf</code>.
+ */
+public class TikaEmbeddedRecordExtractor implements EmbeddedDocumentExtractor {
+  private static final Logger LOG = LoggerFactory.getLogger(TikaEmbeddedRecordExtractor.class);
+
+  /**
+   * Receives each embedded resource once it has been parsed.
+   */
+  public interface EmbeddedListener {
+    void onEmbedded(String path, Metadata metadata, byte[] content) throws IOException;
+  }
+
+  private final EmbeddedDocumentExtractor selector;
+  private final ParseContext context;
+  private final Parser parser;
+  private final int writeLimit;
+  private final EmbeddedListener listener;
+
+  /**
+   * Paths of the resources that are being parsed, the innermost first.
+   */
+  private final Deque<String> paths = new ArrayDeque<>();
+  private int unnamedCount = 0;
+
+  /**
+   * @param context    the context of the container parse, also used for the embedded resources
+   * @param parser     parses the embedded resources, usually an auto detecting parser
+   * @param writeLimit maximum number of characters of content per resource, or -1 for no limit
+   * @param listener   gets each resource
+   */
+  public TikaEmbeddedRecordExtractor(ParseContext context, Parser parser, int writeLimit, EmbeddedListener listener) {
+    this.selector = new ParsingEmbeddedDocumentExtractor(context);
+    this.context = context;
+    this.parser = parser;
+    this.writeLimit = writeLimit;
+    this.listener = listener;
+  }
+
+  @Override
+  public boolean shouldParseEmbedded(Metadata metadata) {
+    EmbeddedResourceLimits limits = context.get(EmbeddedResourceLimits.class);
+    if (limits != null && limits.isLimitReached()) {
+      // Do not send empty records for the resources that the parser would skip.
+      return false;
+    }
+    return selector.shouldParseEmbedded(metadata);
+  }
+
+  @Override
+  public void parseEmbedded(InputStream stream,
+                            ContentHandler handler,
+                            Metadata metadata,
+                            boolean outputHtml) throws SAXException, IOException {
+    String name = metadata.get(Metadata.RESOURCE_NAME_KEY);
+    if (name == null || name.isEmpty()) {
+      name = "embedded-" + (++unnamedCount);
+    }
+    String path = (paths.isEmpty() ? "" : paths.peek()) + "/" + name;
+    metadata.set(TikaConstants.EMBEDDED_RESOURCE_PATH, path);
+
+    ByteArrayOutputStream content = new ByteArrayOutputStream();
+    Writer writer = TikaUtf8Writer.create(content, StandardCharsets.UTF_8);
+    TikaStreamingBodyContentHandler bodyHandler =
+        new TikaStreamingBodyContentHandler(writer, writeLimit, context.get(ParseDeadline.class));
+    SAXException deadlineExceeded = null;
+    paths.push(path);
+    try (TemporaryResources tmp = new TemporaryResources()) {
+      // The container parser closes its own stream.
+      TikaInputStream tikaInputStream = TikaInputStream.get(new CloseShieldInputStream(stream), tmp);
+      if (stream instanceof TikaInputStream) {
+        // Embedded OLE documents come as an empty stream and the open directory of the document.
+        Object container = ((TikaInputStream) stream).getOpenContainer();
+        if (container != null) {
+          tikaInputStream.setOpenContainer(container);
+        }
+      }
+      parser.parse(tikaInputStream, bodyHandler, metadata, context);
+    } catch (SAXException e) {
+      if (ParseDeadline.isDeadlineExceeded(e)) {
+        metadata.set(TikaConstants.TRUNCATED_BY_TIMEOUT, "true");
+        deadlineExceeded = e;
+      } else if (bodyHandler.isWriteLimitReached(e)) {
+        metadata.set(TikaConstants.WRITE_LIMIT_REACHED, "true");
+      } else {
+        throw e;
+      }
+    } catch (TikaException e) {
+      if (ParseDeadline.isDeadlineExceeded(e)) {
+        metadata.set(TikaConstants.TRUNCATED_BY_TIMEOUT, "true");
+        deadlineExceeded = new SAXException(e);
+      } else {
+        // Like the default extractor, a broken resource does not fail the container.
+        LOG.debug("Could not parse embedded resource {}", path, e);
+        metadata.set(TikaConstants.EMBEDDED_EXCEPTION, ExceptionUtils.getFilteredStackTrace(e));
+      }
+    } finally {
+      paths.pop();
+      // Keep the text that was extracted before a failure.
+      writer.flush();
+    }
+    listener.onEmbedded(path, metadata, content.toByteArray());
+    if (deadlineExceeded != null) {
+      // The resource was sent with what it had so far, now stop the container too.
+      throw deadlineExceeded;
+    }
+  }
+}
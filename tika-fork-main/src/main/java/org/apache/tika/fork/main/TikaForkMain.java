@@ -6,15 +6,19 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.tika.config.TikaConfig;
 import org.apache.tika.detect.DefaultDetector;
 import org.apache.tika.detect.Detector;
-import org.apache.tika.exception.TikaException;
+import org.apache.tika.extractor.EmbeddedDocumentExtractor;
 import org.apache.tika.io.IOUtils;
 import org.apache.tika.io.NullOutputStream;
 import org.apache.tika.io.TikaInputStream;
 import org.apache.tika.metadata.Metadata;
+import org.apache.tika.mime.MediaType;
 import org.apache.tika.parser.CompositeParser;
+import org.apache.tika.parser.DefaultParser;
 import org.apache.tika.parser.ParseContext;
 import org.apache.tika.parser.Parser;
 import org.apache.tika.parser.html.HtmlMapper;
+import org.apache.tika.parser.html.HtmlParser;
+import org.apache.tika.parser.microsoft.ooxml.OOXMLParser;
 import org.apache.tika.parser.pdf.PDFParserConfig;
 import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
@@ -22,6 +26,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.ContentHandler;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
@@ -30,30 +36,34 @@ import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
+import java.io.Writer;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 public class TikaForkMain {
   private static final Logger LOG = LoggerFactory.getLogger(TikaForkMain.class);
 
-  private static TikaParsingHandler getContentHandler(String mainUrl,
-                                                      Metadata metadata,
-                                                      OutputStream out,
-                                                      boolean extractHtmlLinks) throws TikaException {
-    ContentHandler main = new TikaBodyContentHandler(out, TikaConstants.defaultOutputEncoding);
-    TikaLinkContentHandler linksHandler = null;
-    if (extractHtmlLinks) {
-      linksHandler = new TikaLinkContentHandler(mainUrl, true);
-    }
-    return new TikaParsingHandler(mainUrl, out, main, linksHandler);
-  }
+  private static final String X_PARSED_BY = "X-Parsed-By";
+  private static final int RANGE_REQUEST_BUFFER_SIZE = 64 * 1024;
 
   @Option(name = "-workDirectoryPath", usage = "The directory that will contain the tmp files that communicate between the fork process and the client process and tmp files for parsing tika.")
   private String workDirectoryPath;
+  @Option(name = "-tempDirectoryPath", usage = "The directory of this process for the tmp files for parsing tika. The process holds a lock on a file in it while it runs, so that the client can tell that the directory is in use.")
+  private String tempDirectoryPath;
   @Option(name = "-parserPropertiesFilePath", usage = "The parse configuration file.")
   private String parserPropertiesFilePath;
   @Option(name = "-contentInServerPort", usage = "This is the port for the socket server that will be used to send in the file.")
@@ -68,11 +78,36 @@ public class TikaForkMain {
   private ServerSocket contentOutServerSocket;
 
   private Properties parserProperties;
+  /**
+   * Held while the process runs, and released by the OS when it dies.
+   */
+  private FileLock tempDirectoryLock;
   private ConfigurableAutoDetectParser defaultParser;
   private Detector detector = new DefaultDetector();
+  private final Parser htmlParser = new HtmlParser();
+  /**
+   * Built once, loading the default Tika config takes several milliseconds even after the first time.
+   */
+  private CompositeParser compositeParser;
+  private final ScheduledExecutorService deadlineTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+    Thread thread = new Thread(r, "parse-deadline");
+    thread.setDaemon(true);
+    return thread;
+  });
 
   boolean extractHtmlLinks;
+  boolean recursiveEmbedded;
+  boolean chunkedContent;
+  int contentChunkSize;
+  long maxEmbeddedResources;
+  long maxEmbeddedBytes;
+  boolean htmlFastPath;
+  int maxHtmlLinks;
+  int maxLinkAnchorLength;
   boolean includeImages;
+  boolean parseContent;
+  boolean metadataOnly;
+  int inputMemoryThresholdBytes;
 
   private void run() throws Exception {
     if (StringUtils.isBlank(workDirectoryPath)) {
@@ -84,6 +119,13 @@ public class TikaForkMain {
       // set this here to prevent tika tmp files from being written to the default tmpdir which often is undesirable
       System.setProperty("java.io.tmpdir", workDirectoryPath);
     }
+    if (StringUtils.isNotBlank(tempDirectoryPath)) {
+      File tempDirectory = new File(tempDirectoryPath);
+      tempDirectory.mkdirs();
+      tempDirectoryLock = FileChannel.open(new File(tempDirectory, TikaConstants.TEMP_DIRECTORY_LOCK_FILE).toPath(),
+          StandardOpenOption.CREATE, StandardOpenOption.WRITE).lock();
+      System.setProperty("java.io.tmpdir", tempDirectoryPath);
+    }
     parserProperties = new Properties();
     if (StringUtils.isNotBlank(parserPropertiesFilePath)) {
       try (FileReader fr = new FileReader(parserPropertiesFilePath)) {
@@ -95,8 +137,21 @@ public class TikaForkMain {
       Integer.parseInt(parserProperties.getProperty("zipBombMaxDepth", "200")),
       Integer.parseInt(parserProperties.getProperty("zipBombMaxPackageEntryDepth", "20")));
     extractHtmlLinks = Boolean.parseBoolean(parserProperties.getProperty("extractHtmlLinks", "false"));
+    maxHtmlLinks = Integer.parseInt(parserProperties.getProperty("maxHtmlLinks", "10000"));
+    maxLinkAnchorLength = Integer.parseInt(parserProperties.getProperty("maxLinkAnchorLength", "4096"));
+    htmlFastPath = Boolean.parseBoolean(parserProperties.getProperty("htmlFastPath", "false"));
+    recursiveEmbedded = Boolean.parseBoolean(parserProperties.getProperty("recursiveEmbedded", "false"));
+    chunkedContent = Boolean.parseBoolean(parserProperties.getProperty("chunkedContent", "false"));
+    contentChunkSize = Integer.parseInt(parserProperties.getProperty("contentChunkSize", "8192"));
+    maxEmbeddedResources = Long.parseLong(parserProperties.getProperty("maxEmbeddedResources", "10000"));
+    maxEmbeddedBytes = Long.parseLong(parserProperties.getProperty("maxEmbeddedBytes", "-1"));
+    TikaConfig config = TikaConfig.getDefaultConfig();
+    compositeParser = new CompositeParser(config.getMediaTypeRegistry(), config.getParser());
     includeImages = Boolean.parseBoolean(parserProperties.getProperty("includeImages", "false"));
-    boolean parseContent = Boolean.parseBoolean(parserProperties.getProperty("parseContent", "true"));
+    parseContent = Boolean.parseBoolean(parserProperties.getProperty("parseContent", "true"));
+    metadataOnly = Boolean.parseBoolean(parserProperties.getProperty("metadataOnly", "false"));
+    inputMemoryThresholdBytes = Integer.parseInt(parserProperties.getProperty("inputMemoryThresholdBytes",
+        String.valueOf(1024 * 1024)));
     String portsFilePath = workDirectoryPath + File.separator + "tikafork-ports-" + parserProperties.get("runUuid") + ".properties";
     LOG.info("Tika ports file path: \"{}\"", portsFilePath);
     File portsFile = new File(portsFilePath);
@@ -296,9 +351,7 @@ public class TikaForkMain {
     context.set(HtmlMapper.class, ExtendedHtmlMapper.INSTANCE);
     context.set(Parser.class, defaultParser);
 
-    TikaConfig config = TikaConfig.getDefaultConfig();
     Metadata metadata = new Metadata();
-    CompositeParser compositeParser = new CompositeParser(config.getMediaTypeRegistry(), config.getParser());
 
     try (Socket socket = contentInServerSocket.accept();
          InputStream inputStream = socket.getInputStream();
@@ -310,33 +363,209 @@ public class TikaForkMain {
         context.set(PDFParserConfig.class, pdfParserConfig);
       }
 
-      String baseUri = "";
-      String contentType = "";
-      int nextChar;
-      while ((nextChar = inputStream.read()) != '\n') {
-        baseUri += (char)nextChar;
-      }
-      while ((nextChar = inputStream.read()) != '\n') {
-        contentType += (char)nextChar;
-      }
-
-      LOG.info("Next file to parse baseUri={}, contentType={}", baseUri, contentType);
+      Map<String, String> header = readHeader(inputStream);
+      String baseUri = header.getOrDefault(TikaConstants.HEADER_BASE_URI, "");
+      String contentType = header.getOrDefault(TikaConstants.HEADER_CONTENT_TYPE, "");
+      long maxBytesToParse = Long.parseLong(header.getOrDefault(TikaConstants.HEADER_MAX_BYTES_TO_PARSE, "-1"));
+      long contentLength = Long.parseLong(header.getOrDefault(TikaConstants.HEADER_CONTENT_LENGTH, "-1"));
+      String contentPath = header.get(TikaConstants.HEADER_CONTENT_PATH);
+      boolean contentRanges = Boolean.parseBoolean(header.get(TikaConstants.HEADER_CONTENT_RANGES));
+      long parseDeadlineMs = Long.parseLong(header.getOrDefault(TikaConstants.HEADER_PARSE_DEADLINE_MS, "-1"));
+      // Links are only extracted when the client has someone to give them to.
+      boolean sendLinks = extractHtmlLinks && Boolean.parseBoolean(header.get(TikaConstants.HEADER_SEND_LINKS));
+      boolean sendEmbedded = recursiveEmbedded && Boolean.parseBoolean(header.get(TikaConstants.HEADER_SEND_EMBEDDED));
+      boolean sendChunks = parseContent && chunkedContent
+          && Boolean.parseBoolean(header.get(TikaConstants.HEADER_SEND_CHUNKS));
+
+      LOG.info("Next file to parse baseUri={}, contentType={}, maxBytesToParse={}", baseUri, contentType, maxBytesToParse);
 
       if (StringUtils.isNotBlank(contentType)) {
         metadata.set(Metadata.CONTENT_TYPE, contentType);
       }
 
-      TikaInputStream tikaInputStream = TikaInputStream.get(inputStream);
+      TikaInputStream tikaInputStream;
+      RangeRequestChannel rangeRequestChannel = null;
+      if (StringUtils.isNotBlank(contentPath)) {
+        // The client's own file. Parsers that need random access open it directly instead of a spooled copy.
+        tikaInputStream = TikaInputStream.get(Paths.get(contentPath));
+        LOG.info("Parsing {} from the file {} of {} bytes", baseUri, contentPath, tikaInputStream.getLength());
+      } else if (contentRanges && contentLength >= 0) {
+        // The client serves the ranges that are read. Readers that seek only fetch what they need.
+        rangeRequestChannel = new RangeRequestChannel(inputStream, socket.getOutputStream(), contentLength);
+        tikaInputStream = TikaMemoryInput.get(new BufferedInputStream(rangeRequestChannel.newInputStream(),
+            RANGE_REQUEST_BUFFER_SIZE), contentLength, inputMemoryThresholdBytes);
+      } else {
+        tikaInputStream = TikaMemoryInput.get(inputStream, contentLength, inputMemoryThresholdBytes);
+      }
 
-      TikaParsingHandler contentHandler = getContentHandler(baseUri, metadata, contentOutputStream, extractHtmlLinks);
-      compositeParser.parse(tikaInputStream, contentHandler, metadata, context);
+      TikaFrameWriter frameWriter = new TikaFrameWriter(objectOutputStream);
+      TikaChunkContentHandler chunkHandler = null;
+      Writer bodyWriter;
+      if (sendChunks) {
+        // The text goes to the listener in chunks instead of to the content stream.
+        chunkHandler = new TikaChunkContentHandler(contentChunkSize, frameWriter);
+        bodyWriter = chunkHandler.getWriter();
+      } else {
+        bodyWriter = TikaUtf8Writer.create(contentOutputStream, Charset.forName(TikaConstants.defaultOutputEncoding));
+      }
+      TikaLinkContentHandler linkHandler = null;
+      if (sendLinks) {
+        linkHandler = new TikaLinkContentHandler(baseUri, true, frameWriter, maxHtmlLinks, maxLinkAnchorLength);
+      }
+      EmbeddedResourceLimits embeddedResourceLimits = new EmbeddedResourceLimits(maxEmbeddedResources, maxEmbeddedBytes);
+      context.set(EmbeddedResourceLimits.class, embeddedResourceLimits);
+      if (sendEmbedded) {
+        context.set(EmbeddedDocumentExtractor.class,
+            new TikaEmbeddedRecordExtractor(context, defaultParser, writeLimit(maxBytesToParse), frameWriter));
+      }
+      ParseDeadline deadline = null;
+      ScheduledFuture<?> deadlineFuture = null;
+      if (parseDeadlineMs >= 0) {
+        deadline = new ParseDeadline();
+        context.set(ParseDeadline.class, deadline);
+        deadlineFuture = deadlineTimer.schedule(deadline::expire, parseDeadlineMs, TimeUnit.MILLISECONDS);
+      }
+      boolean fastHtml = htmlFastPath && isHtml(contentType);
+      TikaStreamingBodyContentHandler bodyHandler;
+      ContentHandler contentHandler;
+      if (fastHtml) {
+        bodyHandler = new TikaHtmlContentHandler(bodyWriter, writeLimit(maxBytesToParse), linkHandler, deadline);
+        contentHandler = bodyHandler;
+      } else {
+        bodyHandler = new TikaStreamingBodyContentHandler(bodyWriter, writeLimit(maxBytesToParse), deadline);
+        contentHandler = new TikaParsingHandler(baseUri, contentOutputStream, bodyHandler, linkHandler, chunkHandler);
+      }
+      try {
+        if (metadataOnly) {
+          parseMetadata(baseUri, contentType, tikaInputStream, rangeRequestChannel, metadata, context);
+        } else if (fastHtml) {
+          parseHtml(tikaInputStream, contentHandler, metadata, context);
+        } else {
+          compositeParser.parse(tikaInputStream, contentHandler, metadata, context);
+        }
+      } catch (Exception e) {
+        if (ParseDeadline.isDeadlineExceeded(e)) {
+          LOG.info("Stopped parsing {} after the deadline of {} ms", baseUri, parseDeadlineMs);
+          metadata.set(TikaConstants.TRUNCATED_BY_TIMEOUT, "true");
+          // Send the text extracted so far, endDocument was not called.
+          bodyWriter.flush();
+        } else if (bodyHandler.isWriteLimitReached(e)) {
+          LOG.info("Stopped parsing {} after the write limit of {} chars", baseUri, maxBytesToParse);
+          metadata.set(TikaConstants.WRITE_LIMIT_REACHED, "true");
+        } else {
+          throw e;
+        }
+      } finally {
+        if (deadlineFuture != null) {
+          deadlineFuture.cancel(false);
+        }
+        // Also removes the temp file if a parser had the input spooled.
+        tikaInputStream.close();
+      }
+      if (rangeRequestChannel != null) {
+        LOG.info("Read {} of {} bytes of {} in {} range requests", rangeRequestChannel.getBytesTransferred(),
+            contentLength, baseUri, rangeRequestChannel.getNumRequests());
+        rangeRequestChannel.finish();
+      }
+      if (embeddedResourceLimits.isLimitReached()) {
+        LOG.info("Skipped embedded resources of {} after {} resources and {} bytes", baseUri,
+            embeddedResourceLimits.getNumResources(), embeddedResourceLimits.getNumBytes());
+        metadata.set(TikaConstants.EMBEDDED_RESOURCE_LIMIT_REACHED, "true");
+      }
+      if (linkHandler != null && linkHandler.isLinkLimitReached()) {
+        LOG.info("Stopped extracting links from {} after {} links", baseUri, maxHtmlLinks);
+        metadata.set(TikaConstants.LINK_LIMIT_REACHED, "true");
+      }
 
-      objectOutputStream.writeObject(metadata);
+      frameWriter.writeMetadata(metadata);
     } finally {
       contentOutputStream.close();
     }
   }
 
+  private static boolean isHtml(String contentType) {
+    MediaType mediaType = MediaType.parse(contentType);
+    return mediaType != null && MediaType.TEXT_HTML.equals(mediaType.getBaseType());
+  }
+
+  /**
+   * Parses an HTML document with the HTML parser directly instead of looking it up in the Tika config, using
+   * {@link TikaHtmlMapper}. The metadata gets the same X-Parsed-By values as it would through the config.
+   */
+  private void parseHtml(InputStream inputStream,
+                         ContentHandler contentHandler,
+                         Metadata metadata,
+                         ParseContext context) throws Exception {
+    context.set(HtmlMapper.class, TikaHtmlMapper.INSTANCE);
+    metadata.add(X_PARSED_BY, DefaultParser.class.getName());
+    metadata.add(X_PARSED_BY, HtmlParser.class.getName());
+    htmlParser.parse(inputStream, contentHandler, metadata, context);
+  }
+
+  /**
+   * Extracts the metadata without the text. OOXML documents only have their properties read, other documents are
+   * parsed until the body starts.
+   *
+   * @param rangeRequestChannel the input if the client serves it in ranges, or null. OOXML properties are then read
+   *                            without fetching the rest of the package.
+   */
+  private void parseMetadata(String baseUri,
+                             String contentType,
+                             TikaInputStream inputStream,
+                             RangeRequestChannel rangeRequestChannel,
+                             Metadata metadata,
+                             ParseContext context) throws Exception {
+    if (TikaOOXMLPropertiesExtractor.isOOXML(contentType)) {
+      try {
+        if (rangeRequestChannel != null && !TikaMemoryInput.isInMemory(inputStream)) {
+          TikaOOXMLPropertiesExtractor.extract(rangeRequestChannel, metadata);
+        } else {
+          TikaOOXMLPropertiesExtractor.extract(inputStream, metadata);
+        }
+        metadata.add(X_PARSED_BY, DefaultParser.class.getName());
+        metadata.add(X_PARSED_BY, OOXMLParser.class.getName());
+        return;
+      } catch (Exception e) {
+        // The parser knows how to deal with encrypted and broken documents.
+        LOG.debug("Could not read the OOXML properties of {}, parsing it instead", baseUri, e);
+      }
+    }
+    try {
+      compositeParser.parse(inputStream, new TikaMetadataOnlyContentHandler(), metadata, context);
+    } catch (Exception e) {
+      if (!TikaMetadataOnlyContentHandler.isBodyReached(e)) {
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Reads the request header that the client writes before the content: the number of fields, then each name and
+   * value in modified UTF-8.
+   */
+  static Map<String, String> readHeader(InputStream inputStream) throws IOException {
+    DataInputStream dataInputStream = new DataInputStream(inputStream);
+    int numFields = dataInputStream.readInt();
+    Map<String, String> header = new HashMap<>();
+    for (int i = 0; i < numFields; ++i) {
+      String name = dataInputStream.readUTF();
+      header.put(name, dataInputStream.readUTF());
+    }
+    return header;
+  }
+
+  /**
+   * The client reads at most maxBytesToParse bytes of content. Every char is at least one byte in UTF-8, so there
+   * is no use in writing more chars than that. The content is discarded when parseContent is off, so the whole
+   * document is parsed for its metadata.
+   */
+  private int writeLimit(long maxBytesToParse) {
+    if (!parseContent || maxBytesToParse < 0 || maxBytesToParse > Integer.MAX_VALUE) {
+      return -1;
+    }
+    return (int) maxBytesToParse;
+  }
+
   /**
    * Runs the external tika parsing server.
    */
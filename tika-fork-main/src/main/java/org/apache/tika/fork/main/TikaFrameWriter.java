@@ -0,0 +1,90 @@
+package org.apache.tika.fork.main;
+
+import org.apache.tika.metadata.Metadata;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Writes the results of a parse to the metadata out socket as a sequence of frames. Each frame starts with a type
+ * byte. Any number of link, embedded resource and content chunk frames can come while the document is parsed, and the
+ * metadata frame always comes last.
+ * <p>
+ * Links and chunks are written field by field rather than as serialized objects, which keeps them small and fast to
+ * read.
+ * Strings are written as an int length followed by UTF-8 bytes, with -1 for null.
+ */
+public class TikaFrameWriter implements TikaLinkContentHandler.LinkListener,
+    TikaEmbeddedRecordExtractor.EmbeddedListener, TikaChunkContentHandler.ChunkListener {
+
+  private final ObjectOutputStream out;
+
+  public TikaFrameWriter(ObjectOutputStream out) {
+    this.out = out;
+  }
+
+  @Override
+  public synchronized void onLink(Link link) throws IOException {
+    out.writeByte(TikaConstants.FRAME_LINK);
+    writeString(link.type);
+    writeString(link.sourceUri);
+    writeString(link.targetUri);
+    writeString(link.title);
+    writeString(link.anchor);
+    writeString(link.rel);
+    out.writeInt(link.params.size());
+    for (Map.Entry<String, Object> param : link.params.entrySet()) {
+      writeString(param.getKey());
+      writeString(param.getValue() == null ? null : String.valueOf(param.getValue()));
+    }
+  }
+
+  /**
+   * Writes the path, the metadata and the UTF-8 content of an embedded resource, and flushes so that the client can
+   * start on it while the rest of the container is parsed.
+   */
+  @Override
+  public synchronized void onEmbedded(String path, Metadata metadata, byte[] content) throws IOException {
+    out.writeByte(TikaConstants.FRAME_EMBEDDED);
+    writeString(path);
+    out.writeObject(metadata);
+    out.writeInt(content.length);
+    out.write(content);
+    // Do not keep references to the metadata of every resource of a large mailbox.
+    out.reset();
+    out.flush();
+  }
+
+  /**
+   * Writes a chunk of the text and its position, and flushes so that the client can start on it.
+   */
+  @Override
+  public synchronized void onChunk(long offset, char[] text, int length, int page, String sheet, String embeddedPath)
+      throws IOException {
+    out.writeByte(TikaConstants.FRAME_CHUNK);
+    out.writeLong(offset);
+    out.writeInt(page);
+    writeString(sheet);
+    writeString(embeddedPath);
+    writeString(new String(text, 0, length));
+    out.flush();
+  }
+
+  public synchronized void writeMetadata(Metadata metadata) throws IOException {
+    out.writeByte(TikaConstants.FRAME_METADATA);
+    out.writeObject(metadata);
+    out.flush();
+  }
+
+  private void writeString(String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+}
@@ -0,0 +1,61 @@
+package org.apache.tika.fork.main;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+
+import java.io.Writer;
+
+/**
+ * Writes the XHTML body text and extracts the links of an HTML document in one handler, for the
+ * <code>htmlFastPath</code> parse property.
+ * <p>
+ * The output is the same as a {@link TikaParsingHandler} with a {@link TikaStreamingBodyContentHandler} and a
+ * {@link TikaLinkContentHandler}, but each SAX event is a direct call instead of a loop over the handlers.
+ */
+public class TikaHtmlContentHandler extends TikaStreamingBodyContentHandler {
+
+  private final TikaLinkContentHandler linkHandler;
+
+  /**
+   * @param writer      writer for the body text
+   * @param writeLimit  maximum number of characters to write, or -1 to disable the write limit
+   * @param linkHandler gets the link events, null to not extract links
+   * @param deadline    stops the parse once it has passed, or null for no deadline
+   */
+  public TikaHtmlContentHandler(Writer writer, int writeLimit, TikaLinkContentHandler linkHandler,
+                                ParseDeadline deadline) {
+    super(writer, writeLimit, deadline);
+    this.linkHandler = linkHandler;
+  }
+
+  public TikaLinkContentHandler getLinkHandler() {
+    return linkHandler;
+  }
+
+  @Override
+  public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+    super.startElement(uri, localName, qName, attributes);
+    if (linkHandler != null) {
+      linkHandler.startElement(uri, localName, qName, attributes);
+    }
+  }
+
+  @Override
+  public void endElement(String uri, String localName, String qName) throws SAXException {
+    super.endElement(uri, localName, qName);
+    if (linkHandler != null) {
+      linkHandler.endElement(uri, localName, qName);
+    }
+  }
+
+  /**
+   * Also gets ignorable whitespace, which the body handler passes on as characters.
+   */
+  @Override
+  public void characters(char[] ch, int start, int length) throws SAXException {
+    super.characters(ch, start, length);
+    if (linkHandler != null) {
+      linkHandler.characters(ch, start, length);
+    }
+  }
+}
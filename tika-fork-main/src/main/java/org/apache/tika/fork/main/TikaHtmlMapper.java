@@ -0,0 +1,107 @@
+package org.apache.tika.fork.main;
+
+import org.apache.tika.parser.html.HtmlMapper;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Answers {@link HtmlMapper} questions for the common HTML elements and attributes from tables computed once from
+ * another mapper, so that an element costs a single lookup. {@link ExtendedHtmlMapper} looks an element up in its
+ * own tables and then again in {@link org.apache.tika.parser.html.DefaultHtmlMapper}, for each of the questions.
+ * <p>
+ * Names that are not in the tables are passed to the other mapper, so the answers are always the same.
+ */
+public class TikaHtmlMapper implements HtmlMapper {
+
+  /**
+   * The elements of HTML 4 and HTML 5, in upper case like the HTML parser passes them.
+   */
+  static final String[] ELEMENTS = {
+      "A", "ABBR", "ACRONYM", "ADDRESS", "APPLET", "AREA", "ARTICLE", "ASIDE", "AUDIO", "B", "BASE", "BASEFONT",
+      "BDI", "BDO", "BGSOUND", "BIG", "BLINK", "BLOCKQUOTE", "BODY", "BR", "BUTTON", "CANVAS", "CAPTION", "CENTER",
+      "CITE", "CODE", "COL", "COLGROUP", "DATA", "DATALIST", "DD", "DEL", "DETAILS", "DFN", "DIALOG", "DIR", "DIV",
+      "DL", "DT", "EM", "EMBED", "FIELDSET", "FIGCAPTION", "FIGURE", "FONT", "FOOTER", "FORM", "FRAME", "FRAMESET",
+      "H1", "H2", "H3", "H4", "H5", "H6", "HEAD", "HEADER", "HR", "HTML", "I", "IFRAME", "IMG", "INPUT", "INS",
+      "ISINDEX", "KBD", "LABEL", "LEGEND", "LI", "LINK", "MAIN", "MAP", "MARK", "MARQUEE", "MENU", "META", "METER",
+      "NAV", "NOBR", "NOFRAMES", "NOSCRIPT", "OBJECT", "OL", "OPTGROUP", "OPTION", "OUTPUT", "P", "PARAM",
+      "PICTURE", "PRE", "PROGRESS", "Q", "RP", "RT", "RUBY", "S", "SAMP", "SCRIPT", "SECTION", "SELECT", "SMALL",
+      "SOURCE", "SPAN", "STRIKE", "STRONG", "STYLE", "SUB", "SUMMARY", "SUP", "SVG", "TABLE", "TBODY", "TD",
+      "TEMPLATE", "TEXTAREA", "TFOOT", "TH", "THEAD", "TIME", "TITLE", "TR", "TRACK", "TT", "U", "UL", "VAR",
+      "VIDEO", "WBR", "XMP"};
+
+  /**
+   * Attributes that HTML mappers commonly keep, in lower case.
+   */
+  static final String[] ATTRIBUTES = {
+      "abbr", "accept", "accept-charset", "action", "align", "alt", "axis", "border", "cellpadding", "cellspacing",
+      "char", "charoff", "charset", "checked", "cite", "class", "classid", "codebase", "codetype", "colspan",
+      "content", "coords", "data", "datetime", "declare", "disabled", "enctype", "for", "frame", "headers", "height",
+      "href", "hreflang", "http-equiv", "id", "ismap", "label", "lang", "longdesc", "maxlength", "media", "method",
+      "multiple", "name", "nohref", "profile", "readonly", "rel", "rev", "rows", "rowspan", "rules", "scheme",
+      "scope", "selected", "shape", "size", "span", "src", "standby", "start", "style", "summary", "tabindex",
+      "target", "title", "type", "usemap", "valign", "value", "valuetype", "width"};
+
+  /**
+   * Stands for an attribute that is not in the tables, since a null mapping means the attribute is not safe.
+   */
+  private static final String UNKNOWN = new String("?");
+
+  // After the tables that the constructor reads.
+  public static final HtmlMapper INSTANCE = new TikaHtmlMapper(ExtendedHtmlMapper.INSTANCE);
+
+  private final HtmlMapper mapper;
+  private final Map<String, ElementClass> elementClasses = new HashMap<>();
+
+  public TikaHtmlMapper(HtmlMapper mapper) {
+    this.mapper = mapper;
+    for (String element : ELEMENTS) {
+      elementClasses.put(element, new ElementClass(mapper, element));
+      String lowerCase = element.toLowerCase(Locale.ROOT);
+      elementClasses.put(lowerCase, new ElementClass(mapper, lowerCase));
+    }
+  }
+
+  @Override
+  public String mapSafeElement(String name) {
+    ElementClass elementClass = elementClasses.get(name);
+    return elementClass != null ? elementClass.safeName : mapper.mapSafeElement(name);
+  }
+
+  @Override
+  public boolean isDiscardElement(String name) {
+    ElementClass elementClass = elementClasses.get(name);
+    return elementClass != null ? elementClass.discard : mapper.isDiscardElement(name);
+  }
+
+  @Override
+  public String mapSafeAttribute(String elementName, String attributeName) {
+    ElementClass elementClass = elementClasses.get(elementName);
+    if (elementClass != null) {
+      String safeName = elementClass.safeAttributes.getOrDefault(attributeName, UNKNOWN);
+      if (safeName != UNKNOWN) {
+        return safeName;
+      }
+    }
+    return mapper.mapSafeAttribute(elementName, attributeName);
+  }
+
+  /**
+   * What the mapper says about one element name.
+   */
+  private static class ElementClass {
+    final String safeName;
+    final boolean discard;
+    final Map<String, String> safeAttributes = new HashMap<>();
+
+    ElementClass(HtmlMapper mapper, String name) {
+      safeName = mapper.mapSafeElement(name);
+      discard = mapper.isDiscardElement(name);
+      // The parser asks about elements in upper case and about attributes with the lower case mapped name.
+      for (String attribute : ATTRIBUTES) {
+        safeAttributes.put(attribute, mapper.mapSafeAttribute(name, attribute));
+      }
+    }
+  }
+}
@@ -1,15 +1,15 @@
 package org.apache.tika.fork.main;
 
 import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
+import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import static org.apache.tika.sax.XHTMLContentHandler.XHTML;
@@ -18,14 +18,27 @@ import static org.apache.tika.sax.XHTMLContentHandler.XHTML;
  * was impossible to extend. */
 public class TikaLinkContentHandler extends DefaultHandler {
 
+  /**
+   * Receives each link as soon as its element ends.
+   */
+  public interface LinkListener {
+    void onLink(Link link) throws IOException;
+  }
+
   /**
    * Stack of link builders, one for each level of nested links currently being
    * processed. A usual case of a nested link would be a hyperlinked image (
    * <code>&a href="..."&gt;&lt;img src="..."&gt;&lt;&gt;</code>), but it's
    * possible (though unlikely) for also other kinds of nesting to occur.
    */
-  private final LinkedList<LinkBuilder> builderStack = new LinkedList<LinkBuilder>();
+  private final ArrayDeque<LinkBuilder> builderStack = new ArrayDeque<LinkBuilder>();
   
+  /**
+   * Whether each open element of the link types started a link. An input that is not an image, a form that does not
+   * do GET or any element after the limit does not, and its end must not close the link around it.
+   */
+  private final ArrayDeque<Boolean> openElements = new ArrayDeque<Boolean>();
+
   private static final Set<String> elements = new HashSet<String>(Arrays.asList(
           "a", "img", "input", "link", "form", "embed", "source",
           "track", "object", "frame", "iframe", "area", "script"));
@@ -37,6 +50,21 @@ public class TikaLinkContentHandler extends DefaultHandler {
   /** Whether to collapse whitespace in anchor text */
   private boolean collapseWhitespaceInAnchor;
 
+  /** Gets the links instead of the list, if set */
+  private final LinkListener linkListener;
+
+  /** Maximum number of links to extract, -1 for no limit */
+  private final int maxLinks;
+
+  /** Maximum number of anchor text characters to keep per link, -1 for no limit */
+  private final int maxAnchorLength;
+
+  /** Number of links extracted so far */
+  private int linkCount = 0;
+
+  /** Set when a link is dropped because of the limit */
+  private boolean linkLimitReached = false;
+
   /**
    * Default constructor
    */
@@ -51,14 +79,46 @@ public class TikaLinkContentHandler extends DefaultHandler {
    * @param collapseWhitespaceInAnchor set if whitespace in the anchor should be collapsed
    */
   public TikaLinkContentHandler(String baseUri, boolean collapseWhitespaceInAnchor) {
+    this(baseUri, collapseWhitespaceInAnchor, null);
+  }
+
+  /**
+   * Constructor for a handler that passes the links on instead of collecting them
+   *
+   * @param baseUri The base URI
+   * @param collapseWhitespaceInAnchor set if whitespace in the anchor should be collapsed
+   * @param linkListener gets each link as soon as it is complete. If null, the links are collected.
+   */
+  public TikaLinkContentHandler(String baseUri, boolean collapseWhitespaceInAnchor, LinkListener linkListener) {
+    this(baseUri, collapseWhitespaceInAnchor, linkListener, -1, -1);
+  }
+
+  /**
+   * Constructor for a handler with limits, for documents such as link farms that have a huge number of links
+   *
+   * @param baseUri The base URI
+   * @param collapseWhitespaceInAnchor set if whitespace in the anchor should be collapsed
+   * @param linkListener gets each link as soon as it is complete. If null, the links are collected.
+   * @param maxLinks the number of links after which the rest of the document is ignored, -1 for no limit
+   * @param maxAnchorLength the number of characters of anchor text to keep per link, -1 for no limit. The limit
+   *                        applies before whitespace is collapsed.
+   */
+  public TikaLinkContentHandler(String baseUri,
+                                boolean collapseWhitespaceInAnchor,
+                                LinkListener linkListener,
+                                int maxLinks,
+                                int maxAnchorLength) {
     super();
 
     this.collapseWhitespaceInAnchor = collapseWhitespaceInAnchor;
     this.baseUri = baseUri;
+    this.linkListener = linkListener;
+    this.maxLinks = maxLinks;
+    this.maxAnchorLength = maxAnchorLength;
   }
 
   /**
-   * Returns the list of collected links.
+   * Returns the list of collected links. Empty if the handler has a link listener.
    *
    * @return collected links
    */
@@ -66,116 +126,143 @@ public class TikaLinkContentHandler extends DefaultHandler {
     return links;
   }
 
+  /**
+   * @return whether links were dropped because the document had more than the maximum number of links.
+   */
+  public boolean isLinkLimitReached() {
+    return linkLimitReached;
+  }
+
   // -------------------------------------------------------< ContentHandler>
 
   @Override
   public void startElement(String uri, String local, String name,
           Attributes attributes) {
-    if (XHTML.equals(uri)) {
-      if ("a".equals(local)) {
-        LinkBuilder builder = new LinkBuilder("a");
-        builder.setURI(attributes.getValue("", "href"));
-        builder.setTitle(attributes.getValue("", "title"));
-        builder.setRel(attributes.getValue("", "rel"));
-        builder.setParam("id", attributes.getValue("", "id"));
-        builderStack.addFirst(builder);
-      } else if ("img".equals(local)) {
-        LinkBuilder builder = new LinkBuilder("img");
-        builder.setURI(attributes.getValue("", "src"));
-        builder.setTitle(attributes.getValue("", "title"));
-        builder.setRel(attributes.getValue("", "rel"));
-        builder.setParam("alt", attributes.getValue("", "alt"));
-        builderStack.addFirst(builder);
-
-        String alt = attributes.getValue("", "alt");
-        if (alt != null) {
-          char[] ch = alt.toCharArray();
-          characters(ch, 0, ch.length);
-        }
-      } else if ("input".equals(local)) {
-        if (!"image".equalsIgnoreCase(attributes.getValue("type"))) {
-          return;
-        }
-        LinkBuilder builder = new LinkBuilder("input");
-        builder.setURI(attributes.getValue("", "src"));
-        builder.setTitle(attributes.getValue("", "name"));
-        builder.setParam("alt", attributes.getValue("", "alt"));
-        builderStack.addFirst(builder);
-
-        String alt = attributes.getValue("", "alt");
-        if (alt != null) {
-          char[] ch = alt.toCharArray();
-          characters(ch, 0, ch.length);
-        }
-      } else if ("link".equals(local)) {
-        LinkBuilder builder = new LinkBuilder("link");
-        builder.setURI(attributes.getValue("", "href"));
-        builder.setTitle(attributes.getValue("", "title"));
-        builder.setRel(attributes.getValue("", "rel"));
-        builder.setParam("type", attributes.getValue("", "type"));
-        builderStack.addFirst(builder);
-      } else if ("form".equals(local)) { // only forms that do GET
-        String method = attributes.getValue("", "method");
-        if (method != null && !"get".equalsIgnoreCase(method)) {
-          return;
-        }          
-        LinkBuilder builder = new LinkBuilder("form");
-        builder.setURI(attributes.getValue("", "action"));
-        builder.setTitle(attributes.getValue("", "name"));
-        builder.setParam("target", attributes.getValue("", "target"));
-        builderStack.addFirst(builder);
-      } else if ("embed".equals(local)) {
-        LinkBuilder builder = new LinkBuilder("embed");
-        builder.setURI(attributes.getValue("", "src"));
-        builder.setTitle(attributes.getValue("", "name"));
-        builder.setParam("type", attributes.getValue("", "type"));
-        builder.setParam("height", attributes.getValue("", "height"));
-        builder.setParam("width", attributes.getValue("", "width"));
-        builderStack.addFirst(builder);
-      } else if ("source".equals(local)) {
-        LinkBuilder builder = new LinkBuilder("source");
-        builder.setURI(attributes.getValue("", "src"));
-        builder.setParam("type", attributes.getValue("", "type"));
-        builder.setParam("media", attributes.getValue("", "media"));
-        builderStack.addFirst(builder);
-      } else if ("track".equals(local)) {
-        LinkBuilder builder = new LinkBuilder("track");
-        builder.setURI(attributes.getValue("", "src"));
-        builder.setTitle(attributes.getValue("", "label"));
-        builder.setParam("kind", attributes.getValue("", "kind"));
-        builder.setParam("srclang", attributes.getValue("", "srclang"));
-        builderStack.addFirst(builder);
-      } else if ("object".equals(local)) {
-        LinkBuilder builder = new LinkBuilder("object");
-        builder.setURI(attributes.getValue("", "data"));
-        builder.setParam("type", attributes.getValue("", "type"));
-        builder.setParam("height", attributes.getValue("", "height"));
-        builder.setParam("width", attributes.getValue("", "width"));
-        builderStack.addFirst(builder);
-      } else if ("frame".equals(local) || "iframe".equals(local)) {
-        LinkBuilder builder = new LinkBuilder(local);
-        builder.setURI(attributes.getValue("", "src"));
-        builder.setTitle(attributes.getValue("", "name"));
-        builderStack.addFirst(builder);
-      } else if ("area".equals(local)) {
-        LinkBuilder builder = new LinkBuilder("area");
-        builder.setURI(attributes.getValue("", "href"));
-        builder.setParam("shape", attributes.getValue("", "shape"));
-        builder.setParam("coords", attributes.getValue("", "coords"));
-        builder.setParam("alt", attributes.getValue("", "alt"));
-        String alt = attributes.getValue("", "alt");
-        if (alt != null) {
-          char[] ch = alt.toCharArray();
-          characters(ch, 0, ch.length);
-        }
-        builderStack.addFirst(builder);
-      } else if ("script".equals(local)) {
-        LinkBuilder builder = new LinkBuilder("script");
-        builder.setURI(attributes.getValue("", "src"));
-        builder.setParam("type", attributes.getValue("", "type"));
-        builderStack.addFirst(builder);
+    // Most elements are not links, skip the chain of comparisons for them.
+    if (!elements.contains(local) || !XHTML.equals(uri)) {
+      return;
+    }
+    int numBuilders = builderStack.size();
+    startLink(local, attributes);
+    openElements.addFirst(builderStack.size() > numBuilders);
+  }
+
+  private void startLink(String local, Attributes attributes) {
+    if ("a".equals(local)) {
+      LinkBuilder builder = newBuilder("a");
+      builder.setURI(attributes.getValue("", "href"));
+      builder.setTitle(attributes.getValue("", "title"));
+      builder.setRel(attributes.getValue("", "rel"));
+      builder.setParam("id", attributes.getValue("", "id"));
+      addBuilder(builder);
+    } else if ("img".equals(local)) {
+      LinkBuilder builder = newBuilder("img");
+      builder.setURI(attributes.getValue("", "src"));
+      builder.setTitle(attributes.getValue("", "title"));
+      builder.setRel(attributes.getValue("", "rel"));
+      builder.setParam("alt", attributes.getValue("", "alt"));
+      addBuilder(builder);
+
+      String alt = attributes.getValue("", "alt");
+      if (alt != null) {
+        char[] ch = alt.toCharArray();
+        characters(ch, 0, ch.length);
+      }
+    } else if ("input".equals(local)) {
+      if (!"image".equalsIgnoreCase(attributes.getValue("type"))) {
+        return;
+      }
+      LinkBuilder builder = newBuilder("input");
+      builder.setURI(attributes.getValue("", "src"));
+      builder.setTitle(attributes.getValue("", "name"));
+      builder.setParam("alt", attributes.getValue("", "alt"));
+      addBuilder(builder);
+
+      String alt = attributes.getValue("", "alt");
+      if (alt != null) {
+        char[] ch = alt.toCharArray();
+        characters(ch, 0, ch.length);
       }
+    } else if ("link".equals(local)) {
+      LinkBuilder builder = newBuilder("link");
+      builder.setURI(attributes.getValue("", "href"));
+      builder.setTitle(attributes.getValue("", "title"));
+      builder.setRel(attributes.getValue("", "rel"));
+      builder.setParam("type", attributes.getValue("", "type"));
+      addBuilder(builder);
+    } else if ("form".equals(local)) { // only forms that do GET
+      String method = attributes.getValue("", "method");
+      if (method != null && !"get".equalsIgnoreCase(method)) {
+        return;
+      }          
+      LinkBuilder builder = newBuilder("form");
+      builder.setURI(attributes.getValue("", "action"));
+      builder.setTitle(attributes.getValue("", "name"));
+      builder.setParam("target", attributes.getValue("", "target"));
+      addBuilder(builder);
+    } else if ("embed".equals(local)) {
+      LinkBuilder builder = newBuilder("embed");
+      builder.setURI(attributes.getValue("", "src"));
+      builder.setTitle(attributes.getValue("", "name"));
+      builder.setParam("type", attributes.getValue("", "type"));
+      builder.setParam("height", attributes.getValue("", "height"));
+      builder.setParam("width", attributes.getValue("", "width"));
+      addBuilder(builder);
+    } else if ("source".equals(local)) {
+      LinkBuilder builder = newBuilder("source");
+      builder.setURI(attributes.getValue("", "src"));
+      builder.setParam("type", attributes.getValue("", "type"));
+      builder.setParam("media", attributes.getValue("", "media"));
+      addBuilder(builder);
+    } else if ("track".equals(local)) {
+      LinkBuilder builder = newBuilder("track");
+      builder.setURI(attributes.getValue("", "src"));
+      builder.setTitle(attributes.getValue("", "label"));
+      builder.setParam("kind", attributes.getValue("", "kind"));
+      builder.setParam("srclang", attributes.getValue("", "srclang"));
+      addBuilder(builder);
+    } else if ("object".equals(local)) {
+      LinkBuilder builder = newBuilder("object");
+      builder.setURI(attributes.getValue("", "data"));
+      builder.setParam("type", attributes.getValue("", "type"));
+      builder.setParam("height", attributes.getValue("", "height"));
+      builder.setParam("width", attributes.getValue("", "width"));
+      addBuilder(builder);
+    } else if ("frame".equals(local) || "iframe".equals(local)) {
+      LinkBuilder builder = newBuilder(local);
+      builder.setURI(attributes.getValue("", "src"));
+      builder.setTitle(attributes.getValue("", "name"));
+      addBuilder(builder);
+    } else if ("area".equals(local)) {
+      LinkBuilder builder = newBuilder("area");
+      builder.setURI(attributes.getValue("", "href"));
+      builder.setParam("shape", attributes.getValue("", "shape"));
+      builder.setParam("coords", attributes.getValue("", "coords"));
+      builder.setParam("alt", attributes.getValue("", "alt"));
+      String alt = attributes.getValue("", "alt");
+      if (alt != null) {
+        char[] ch = alt.toCharArray();
+        characters(ch, 0, ch.length);
+      }
+      addBuilder(builder);
+    } else if ("script".equals(local)) {
+      LinkBuilder builder = newBuilder("script");
+      builder.setURI(attributes.getValue("", "src"));
+      builder.setParam("type", attributes.getValue("", "type"));
+      addBuilder(builder);
+    }
+  }
+
+  private LinkBuilder newBuilder(String type) {
+    return new LinkBuilder(type, maxAnchorLength);
+  }
+
+  private void addBuilder(LinkBuilder builder) {
+    if (maxLinks >= 0 && linkCount >= maxLinks) {
+      linkLimitReached = true;
+      return;
     }
+    builderStack.addFirst(builder);
   }
 
   @Override
@@ -191,83 +278,29 @@ public class TikaLinkContentHandler extends DefaultHandler {
   }
 
   @Override
-  public void endElement(String uri, String local, String name) {
-    if (XHTML.equals(uri)) {
-      if (elements.contains(local)) {
-        if (!builderStack.isEmpty()) {
-          links.add(builderStack.removeFirst()
-              .getLink(baseUri, collapseWhitespaceInAnchor));
+  public void endElement(String uri, String local, String name) throws SAXException {
+    if (!elements.contains(local) || !XHTML.equals(uri)) {
+      return;
+    }
+    Boolean startedLink = openElements.pollFirst();
+    // The builder is gone if the limit was reached while the link was open.
+    if (startedLink != null && startedLink && !builderStack.isEmpty()) {
+      Link link = builderStack.removeFirst().getLink(baseUri, collapseWhitespaceInAnchor);
+      if (++linkCount == maxLinks && !builderStack.isEmpty()) {
+        // Ignore the rest of the document, including the links that are still open.
+        linkLimitReached = true;
+        builderStack.clear();
+      }
+      if (linkListener == null) {
+        links.add(link);
+      } else {
+        try {
+          linkListener.onLink(link);
+        } catch (IOException e) {
+          throw new SAXException("Error sending link", e);
         }
       }
     }
   }
-}
-
-class LinkBuilder {
-
-  private final String type;
-
-  private String uri = "";
-
-  private String title = "";
-
-  private String rel = "";
-
-  private final StringBuilder text = new StringBuilder();
-  private final Map<String,Object> params = new HashMap<String,Object>();
-
-  public LinkBuilder(String type) {
-    this.type = type;
-  }
-
-  public void setURI(String uri) {
-    if (uri != null) {
-      this.uri = uri;
-    } else {
-      this.uri = "";
-    }
-  }
-
-  public void setTitle(String title) {
-    if (title != null) {
-      this.title = title;
-    } else {
-      this.title = "";
-    }
-  }
-
-  public void setRel(String rel) {
-    if (rel != null) {
-      this.rel = rel;
-    } else {
-      this.rel = "";
-    }
-  }
-  
-  public void setParam(String name, Object value) {
-    if (value != null) {
-      params.put(name, value);
-    } else {
-      params.remove(name);
-    }
-  }
-
-  public void characters(char[] ch, int offset, int length) {
-    text.append(ch, offset, length);
-  }
-
-  public Link getLink(String baseUri) {
-    return getLink(baseUri, false);
-  }
-
-  public Link getLink(String baseUri, boolean collapseWhitespace) {
-    String anchor = text.toString();
-
-    if (collapseWhitespace) {
-      anchor = anchor.replaceAll("\\s+", " ").trim();
-    }
-
-    return new Link(type, baseUri, uri, title, anchor, rel, params);
-  }
 
 }
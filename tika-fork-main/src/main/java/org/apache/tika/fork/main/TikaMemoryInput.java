@@ -0,0 +1,44 @@
+package org.apache.tika.fork.main;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.tika.io.TikaInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Holds small inputs in memory, for the <code>inputMemoryThresholdBytes</code> parse property.
+ * <p>
+ * An input whose length the client sent, and that is not larger than the threshold, is read completely into a byte
+ * array before the parse. Other inputs are read from the socket as the parser goes. Inputs of unknown length are never
+ * read ahead, since a slow client would hold up the parse and its deadline.
+ * <p>
+ * Holding an input in memory only saves a temp file where the reader has an in-memory path, like the OOXML properties
+ * of a metadata-only parse. The PDF, OLE2 and OOXML parsers read from the stream either way, and parsers that need a
+ * file, like the MP4 parser, spool even a byte array to a temp file in the temp directory of the fork.
+ */
+public class TikaMemoryInput {
+
+  /**
+   * @param stream               the input
+   * @param length               length of the input in bytes, or -1 if unknown
+   * @param memoryThresholdBytes inputs up to this size are held in memory, 0 or less to never hold them
+   * @return the input as a stream that parsers can get random access to
+   */
+  public static TikaInputStream get(InputStream stream, long length, int memoryThresholdBytes) throws IOException {
+    if (memoryThresholdBytes <= 0 || length < 0 || length > memoryThresholdBytes) {
+      return TikaInputStream.get(stream);
+    }
+    byte[] bytes = new byte[(int) length];
+    IOUtils.readFully(stream, bytes);
+    return TikaInputStream.get(bytes);
+  }
+
+  /**
+   * @return whether the input is held in memory by {@link #get} and has not been spooled to a file.
+   */
+  public static boolean isInMemory(TikaInputStream stream) {
+    // Only inputs read from a byte array know their length without a file.
+    return stream.hasLength() && !stream.hasFile();
+  }
+}
@@ -0,0 +1,49 @@
+package org.apache.tika.fork.main;
+
+import org.apache.tika.sax.XHTMLContentHandler;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Stops the parse when the XHTML body starts, for the <code>metadataOnly</code> parse property.
+ * <p>
+ * Parsers extract the document metadata before they write the body, e.g. the PDF parser reads the document
+ * information and XMP metadata when it loads the document and only then extracts the text page by page. Metadata that
+ * a parser only knows after reading the body, such as the duration of an MP3 file, is missing.
+ */
+public class TikaMetadataOnlyContentHandler extends DefaultHandler {
+  private static final String BODY = "body";
+
+  @Override
+  public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+    if (BODY.equals(localName) && XHTMLContentHandler.XHTML.equals(uri)) {
+      throw new BodyReachedException();
+    }
+  }
+
+  /**
+   * Checks whether the given exception (or any of it's root causes) was thrown by this handler as a signal of
+   * reaching the body.
+   *
+   * @param t throwable
+   * @return <code>true</code> if the body was reached, <code>false</code> otherwise
+   */
+  public static boolean isBodyReached(Throwable t) {
+    if (t instanceof BodyReachedException) {
+      return true;
+    } else {
+      return t.getCause() != null && isBodyReached(t.getCause());
+    }
+  }
+
+  /**
+   * The exception used as a signal when the body has been reached.
+   */
+  private static class BodyReachedException extends SAXException {
+
+    public BodyReachedException() {
+      super("body reached");
+    }
+  }
+}
@@ -0,0 +1,175 @@
+package org.apache.tika.fork.main;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.poi.ooxml.POIXMLDocument;
+import org.apache.poi.ooxml.extractor.POIXMLTextExtractor;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.mime.MediaType;
+import org.apache.tika.parser.microsoft.ooxml.MetadataExtractor;
+import org.apache.tika.utils.XMLReaderUtils;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Reads the core, extended and custom properties of an Office Open XML document, for the <code>metadataOnly</code>
+ * parse property.
+ * <p>
+ * The OOXML parser loads the whole document part, e.g. all of <code>word/document.xml</code>, before it extracts the
+ * metadata. This only opens the package and reads the properties parts, and maps them with the same
+ * {@link MetadataExtractor} that the parser uses, so the metadata has the same names and values.
+ */
+public class TikaOOXMLPropertiesExtractor {
+
+  private static final String OOXML_SUBTYPE_PREFIX = "vnd.openxmlformats-officedocument.";
+  private static final String CONTENT_TYPES_PART = "[Content_Types].xml";
+  private static final String ROOT_RELATIONSHIPS_PART = "_rels/.rels";
+  private static final String RELATIONSHIP_ELEMENT = "Relationship";
+  private static final String OFFICE_DOCUMENT_RELATIONSHIP = "/officeDocument";
+  private static final String[] PROPERTIES_RELATIONSHIPS = {
+      "/core-properties", "/extended-properties", "/custom-properties"};
+
+  /**
+   * A document of the package that only gives access to its properties.
+   */
+  private static class PropertiesDocument extends POIXMLDocument {
+    PropertiesDocument(OPCPackage pkg) {
+      super(pkg);
+    }
+
+    @Override
+    public List<PackagePart> getAllEmbeddedParts() {
+      return Collections.emptyList();
+    }
+  }
+
+  /**
+   * @return whether the content type is a Word, Excel or PowerPoint OOXML type.
+   */
+  public static boolean isOOXML(String contentType) {
+    MediaType mediaType = MediaType.parse(contentType);
+    return mediaType != null && "application".equals(mediaType.getType())
+        && mediaType.getSubtype().startsWith(OOXML_SUBTYPE_PREFIX);
+  }
+
+  /**
+   * Adds the properties of the document to the metadata.
+   *
+   * @throws Exception if the document is not a readable OOXML package, e.g. because it is encrypted
+   */
+  public static void extract(TikaInputStream stream, Metadata metadata) throws Exception {
+    OPCPackage pkg;
+    if (TikaMemoryInput.isInMemory(stream)) {
+      // Read it from memory instead of spooling it to a file, and leave the stream where it was for the fallback.
+      stream.mark(Integer.MAX_VALUE);
+      try {
+        pkg = OPCPackage.open(new CloseShieldInputStream(stream));
+      } finally {
+        stream.reset();
+      }
+    } else {
+      pkg = OPCPackage.open(stream.getFile(), PackageAccess.READ);
+    }
+    extract(pkg, metadata);
+  }
+
+  /**
+   * Adds the properties of the document to the metadata, reading only the central directory of the package and the
+   * parts that the properties need. For inputs that are served in ranges, see {@link RangeRequestChannel}.
+   *
+   * @throws Exception if the document is not a readable OOXML package
+   */
+  public static void extract(SeekableByteChannel channel, Metadata metadata) throws Exception {
+    extract(OPCPackage.open(new ByteArrayInputStream(propertiesPackage(channel))), metadata);
+  }
+
+  private static void extract(OPCPackage pkg, Metadata metadata) throws Exception {
+    try {
+      POIXMLTextExtractor extractor = new POIXMLTextExtractor(new PropertiesDocument(pkg)) {
+        @Override
+        public String getText() {
+          return "";
+        }
+      };
+      new MetadataExtractor(extractor).extract(metadata);
+    } finally {
+      // Closing a package that was opened for reading would try to save it.
+      pkg.revert();
+    }
+  }
+
+  /**
+   * Copies the content types, the package relationships and the properties parts into a package of their own. The
+   * main document part is left empty, the package only has to have it to be opened.
+   */
+  private static byte[] propertiesPackage(SeekableByteChannel channel) throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ZipFile zipFile = new ZipFile(channel);
+         ZipOutputStream zipOutputStream = new ZipOutputStream(bytes)) {
+      byte[] relationships = readEntry(zipFile, ROOT_RELATIONSHIPS_PART);
+      copyEntry(zipOutputStream, CONTENT_TYPES_PART, readEntry(zipFile, CONTENT_TYPES_PART));
+      copyEntry(zipOutputStream, ROOT_RELATIONSHIPS_PART, relationships);
+      NodeList elements = XMLReaderUtils.buildDOM(new ByteArrayInputStream(relationships))
+          .getElementsByTagNameNS("*", RELATIONSHIP_ELEMENT);
+      List<String> copied = new ArrayList<>();
+      for (int i = 0; i < elements.getLength(); ++i) {
+        Element element = (Element) elements.item(i);
+        String type = element.getAttribute("Type");
+        String target = element.getAttribute("Target").replaceFirst("^/", "");
+        if (target.isEmpty() || copied.contains(target)) {
+          continue;
+        }
+        if (isPropertiesRelationship(type)) {
+          copyEntry(zipOutputStream, target, readEntry(zipFile, target));
+          copied.add(target);
+        } else if (type.endsWith(OFFICE_DOCUMENT_RELATIONSHIP)) {
+          copyEntry(zipOutputStream, target, new byte[0]);
+          copied.add(target);
+        }
+      }
+    }
+    return bytes.toByteArray();
+  }
+
+  private static boolean isPropertiesRelationship(String type) {
+    for (String propertiesRelationship : PROPERTIES_RELATIONSHIPS) {
+      if (type.endsWith(propertiesRelationship)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static byte[] readEntry(ZipFile zipFile, String name) throws IOException {
+    ZipArchiveEntry entry = zipFile.getEntry(name);
+    if (entry == null) {
+      throw new IOException("The package has no part " + name);
+    }
+    try (InputStream inputStream = zipFile.getInputStream(entry)) {
+      return IOUtils.toByteArray(inputStream);
+    }
+  }
+
+  private static void copyEntry(ZipOutputStream zipOutputStream, String name, byte[] content) throws IOException {
+    zipOutputStream.putNextEntry(new ZipEntry(name));
+    zipOutputStream.write(content);
+    zipOutputStream.closeEntry();
+  }
+}
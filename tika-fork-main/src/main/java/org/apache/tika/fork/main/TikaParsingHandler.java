@@ -7,6 +7,8 @@ import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Like Tika's {@link org.apache.tika.sax.TeeContentHandler} only it allows accessing the handlers.
@@ -19,15 +21,31 @@ public class TikaParsingHandler extends DefaultHandler {
   private final String location;
 
   public TikaParsingHandler(String location, OutputStream output, ContentHandler mainHandler, TikaLinkContentHandler linkHandler) {
+    this(location, output, mainHandler, linkHandler, null);
+  }
+
+  /**
+   * @param chunkHandler follows the position in the document for the chunks of the text written by the main handler,
+   *                     may be null. It gets each event after the main handler.
+   */
+  public TikaParsingHandler(String location,
+                            OutputStream output,
+                            ContentHandler mainHandler,
+                            TikaLinkContentHandler linkHandler,
+                            TikaChunkContentHandler chunkHandler) {
     this.location = location;
     this.mainHandler = mainHandler;
     this.linkHandler = linkHandler;
     this.output = output;
+    List<ContentHandler> handlerList = new ArrayList<>(3);
+    handlerList.add(mainHandler);
     if (linkHandler != null) {
-      handlers = new ContentHandler[] {mainHandler, linkHandler};
-    } else {
-      handlers = new ContentHandler[] {mainHandler};
+      handlerList.add(linkHandler);
     }
+    if (chunkHandler != null) {
+      handlerList.add(chunkHandler);
+    }
+    handlers = handlerList.toArray(new ContentHandler[0]);
   }
 
   public String getLocation() {
@@ -0,0 +1,260 @@
+package org.apache.tika.fork.main;
+
+import org.apache.tika.sax.XHTMLContentHandler;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * Writes the character content of the XHTML body, like a {@link TikaBodyContentHandler} around a
+ * {@link TikaBodyContentHandler.WriteOutContentHandler}, without the XPath matching.
+ * <p>
+ * The XPath matcher keeps a stack of matcher states and is consulted on every SAX event. This handler only tracks
+ * the element depth and whether it is inside <code>/html/body</code>, and checks for SPAN and DIV elements by
+ * identity and name length before falling back to a case insensitive compare. The output is the same.
+ */
+public class TikaStreamingBodyContentHandler extends DefaultHandler {
+
+  private static final String HTML = "html";
+  private static final String BODY = "body";
+  private static final String SPAN = "span";
+  private static final String DIV = "div";
+
+  /**
+   * The character stream.
+   */
+  private final Writer writer;
+
+  /**
+   * The maximum number of characters to write to the character stream. Set to -1 for no limit.
+   */
+  private final int writeLimit;
+
+  /**
+   * Stops the parse when it passes, may be null.
+   */
+  private final ParseDeadline deadline;
+
+  /**
+   * Number of characters written so far.
+   */
+  private int writeCount = 0;
+
+  /**
+   * Depth of the current element, 0 outside of the root element.
+   */
+  private int depth = 0;
+
+  /**
+   * Whether the root element is the XHTML html element.
+   */
+  private boolean inHtml = false;
+
+  /**
+   * Whether the current element is the body element or one of its descendants.
+   */
+  private boolean inBody = false;
+
+  /**
+   * Creates a content handler that writes XHTML body character events to the given writer.
+   *
+   * @param writer     writer
+   * @param writeLimit maximum number of characters to write, or -1 to disable the write limit
+   * @param deadline   stops the parse once it has passed, or null for no deadline
+   */
+  public TikaStreamingBodyContentHandler(Writer writer, int writeLimit, ParseDeadline deadline) {
+    this.writer = writer;
+    this.writeLimit = writeLimit;
+    this.deadline = deadline;
+  }
+
+  /**
+   * Creates a content handler that writes XHTML body character events to the given writer.
+   *
+   * @param writer     writer
+   * @param writeLimit maximum number of characters to write, or -1 to disable the write limit
+   */
+  public TikaStreamingBodyContentHandler(Writer writer, int writeLimit) {
+    this(writer, writeLimit, null);
+  }
+
+  /**
+   * Creates a content handler that writes XHTML body character events to the given writer.
+   *
+   * @param writer writer
+   */
+  public TikaStreamingBodyContentHandler(Writer writer) {
+    this(writer, -1);
+  }
+
+  /**
+   * Creates a content handler that writes XHTML body character events to the given output stream using the
+   * specified Charset. UTF-8 is encoded with a {@link TikaUtf8Writer}.
+   *
+   * @param stream output stream
+   */
+  public TikaStreamingBodyContentHandler(OutputStream stream, Charset charset) {
+    this(TikaUtf8Writer.create(stream, charset));
+  }
+
+  /**
+   * Creates a content handler that writes XHTML body character events to the given output stream using the
+   * specified encoding.
+   *
+   * @param stream output stream
+   */
+  public TikaStreamingBodyContentHandler(OutputStream stream, String encoding) {
+    this(stream, Charset.forName(encoding));
+  }
+
+  @Override
+  public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+    checkDeadline();
+    ++depth;
+    if (inBody) {
+      // this is to prevent SPAN/DIV text from running together
+      if (writeCount > 0) {
+        char separator = separator(localName);
+        if (separator != 0) {
+          write(separator);
+        }
+      }
+    } else if (depth == 1) {
+      inHtml = HTML.equals(localName) && XHTMLContentHandler.XHTML.equals(uri);
+    } else if (depth == 2 && inHtml) {
+      inBody = BODY.equals(localName) && XHTMLContentHandler.XHTML.equals(uri);
+    }
+  }
+
+  @Override
+  public void endElement(String uri, String localName, String qName) throws SAXException {
+    if (inBody) {
+      if (depth == 2) {
+        inBody = false;
+      } else {
+        char separator = separator(localName);
+        if (separator != 0) {
+          write(separator);
+        }
+      }
+    }
+    --depth;
+  }
+
+  /**
+   * Writes the given characters to the given character stream.
+   */
+  @Override
+  public void characters(char[] ch, int start, int length) throws SAXException {
+    checkDeadline();
+    if (!inBody) {
+      return;
+    }
+    try {
+      if (writeLimit == -1 || writeCount + length <= writeLimit) {
+        writer.write(ch, start, length);
+        writeCount += length;
+      } else {
+        writer.write(ch, start, writeLimit - writeCount);
+        writeCount = writeLimit;
+        // The parse stops here and endDocument is not called.
+        writer.flush();
+        throw new WriteLimitReachedException();
+      }
+    } catch (IOException e) {
+      throw new SAXException("Error writing out character content", e);
+    }
+  }
+
+  /**
+   * Writes the given ignorable characters to the given character stream.
+   */
+  @Override
+  public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+    characters(ch, start, length);
+  }
+
+  /**
+   * Flushes the character stream so that no characters are forgotten in internal buffers.
+   *
+   * @throws SAXException if the stream can not be flushed
+   */
+  @Override
+  public void endDocument() throws SAXException {
+    try {
+      writer.flush();
+    } catch (IOException e) {
+      throw new SAXException("Error flushing character output", e);
+    }
+  }
+
+  /**
+   * @return the character to write around an element so that its text does not run together with the text around
+   * it: a space for SPAN, a newline for DIV, otherwise 0.
+   */
+  static char separator(String localName) {
+    // Parsers mostly pass string literals, so the identity checks usually decide it.
+    if (localName == SPAN) {
+      return ' ';
+    }
+    if (localName == DIV) {
+      return '\n';
+    }
+    switch (localName.length()) {
+      case 3:
+        return DIV.equalsIgnoreCase(localName) ? '\n' : 0;
+      case 4:
+        return SPAN.equalsIgnoreCase(localName) ? ' ' : 0;
+      default:
+        return 0;
+    }
+  }
+
+  private void checkDeadline() throws SAXException {
+    if (deadline != null) {
+      deadline.check();
+    }
+  }
+
+  private void write(char c) throws SAXException {
+    try {
+      writer.write(c);
+    } catch (IOException e) {
+      throw new SAXException("Error writing out character content", e);
+    }
+  }
+
+  /**
+   * Checks whether the given exception (or any of it's root causes) was thrown by this handler as a signal of
+   * reaching the write limit.
+   *
+   * @param t throwable
+   * @return <code>true</code> if the write limit was reached, <code>false</code> otherwise
+   */
+  public boolean isWriteLimitReached(Throwable t) {
+    if (t instanceof WriteLimitReachedException) {
+      return this == ((WriteLimitReachedException) t).getSource();
+    } else {
+      return t.getCause() != null && isWriteLimitReached(t.getCause());
+    }
+  }
+
+  /**
+   * The exception used as a signal when the write limit has been reached.
+   */
+  private class WriteLimitReachedException extends SAXException {
+
+    public WriteLimitReachedException() {
+      super("write limit");
+    }
+
+    public TikaStreamingBodyContentHandler getSource() {
+      return TikaStreamingBodyContentHandler.this;
+    }
+  }
+}
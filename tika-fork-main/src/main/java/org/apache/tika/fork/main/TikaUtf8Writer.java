@@ -0,0 +1,204 @@
+package org.apache.tika.fork.main;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Encodes extracted text to UTF-8 into a fixed size byte buffer and writes it to the output stream in large blocks.
+ * <p>
+ * Content handlers receive text in many small <code>characters()</code> calls. An {@link OutputStreamWriter} runs
+ * each of them through the JDK charset encoder, and over an unbuffered pipe or socket that can turn into many tiny
+ * writes. The buffers are pooled so that parsing a document does not allocate a new one.
+ * <p>
+ * Unpaired surrogates are written as '?', like the JDK encoder does.
+ */
+public class TikaUtf8Writer extends Writer {
+
+  static final int DEFAULT_BUFFER_SIZE = 32 * 1024;
+
+  private static final BlockingQueue<byte[]> BUFFER_POOL = new ArrayBlockingQueue<>(16);
+
+  private final OutputStream out;
+  private final int bufferSize;
+  private byte[] buffer;
+  private int position;
+
+  /**
+   * A high surrogate at the end of a write, waiting for the low surrogate of the next write. 0 if none.
+   */
+  private char pendingHighSurrogate;
+
+  public TikaUtf8Writer(OutputStream out) {
+    this(out, DEFAULT_BUFFER_SIZE);
+  }
+
+  TikaUtf8Writer(OutputStream out, int bufferSize) {
+    this.out = out;
+    this.bufferSize = bufferSize;
+  }
+
+  /**
+   * @return a writer that encodes to the given charset, using a {@link TikaUtf8Writer} for UTF-8 and a buffered
+   * {@link OutputStreamWriter} for anything else.
+   */
+  public static Writer create(OutputStream out, Charset charset) {
+    if (StandardCharsets.UTF_8.equals(charset)) {
+      return new TikaUtf8Writer(out);
+    }
+    return new BufferedWriter(new OutputStreamWriter(out, charset), DEFAULT_BUFFER_SIZE);
+  }
+
+  @Override
+  public void write(char[] cbuf, int off, int len) throws IOException {
+    ensureBuffer();
+    int end = off + len;
+    int i = off;
+    if (pendingHighSurrogate != 0 && i < end) {
+      char high = pendingHighSurrogate;
+      pendingHighSurrogate = 0;
+      if (Character.isLowSurrogate(cbuf[i])) {
+        writeSurrogatePair(high, cbuf[i++]);
+      } else {
+        writeReplacement();
+      }
+    }
+    byte[] bytes = buffer;
+    int limit = bufferSize - 4;
+    // Work on a local copy of the position so that it can stay in a register.
+    int pos = position;
+    while (i < end) {
+      if (pos > limit) {
+        position = pos;
+        flushBuffer();
+        pos = 0;
+      }
+      char c = cbuf[i++];
+      if (c < 0x80) {
+        bytes[pos++] = (byte) c;
+        // Stay in a tight loop for ASCII runs.
+        int asciiEnd = Math.min(end, i + (limit - pos));
+        while (i < asciiEnd && (c = cbuf[i]) < 0x80) {
+          bytes[pos++] = (byte) c;
+          ++i;
+        }
+      } else if (c < 0x800) {
+        bytes[pos++] = (byte) (0xC0 | (c >> 6));
+        bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+      } else if (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE) {
+        bytes[pos++] = (byte) (0xE0 | (c >> 12));
+        bytes[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        bytes[pos++] = (byte) (0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate(c) && i == end) {
+        pendingHighSurrogate = c;
+      } else if (Character.isHighSurrogate(c) && Character.isLowSurrogate(cbuf[i])) {
+        int codePoint = Character.toCodePoint(c, cbuf[i++]);
+        bytes[pos++] = (byte) (0xF0 | (codePoint >> 18));
+        bytes[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+        bytes[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        bytes[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+      } else {
+        // An unpaired surrogate.
+        bytes[pos++] = '?';
+      }
+    }
+    position = pos;
+  }
+
+  @Override
+  public void write(int c) throws IOException {
+    if (c < 0x80 && pendingHighSurrogate == 0) {
+      ensureBuffer();
+      if (position == bufferSize) {
+        flushBuffer();
+      }
+      buffer[position++] = (byte) c;
+    } else {
+      write(new char[] {(char) c}, 0, 1);
+    }
+  }
+
+  @Override
+  public void write(String str, int off, int len) throws IOException {
+    char[] chars = new char[Math.min(len, 1024)];
+    while (len > 0) {
+      int n = Math.min(len, chars.length);
+      str.getChars(off, off + n, chars, 0);
+      write(chars, 0, n);
+      off += n;
+      len -= n;
+    }
+  }
+
+  /**
+   * Writes the buffered bytes to the output stream and flushes it. The buffer goes back to the pool until the next
+   * write.
+   */
+  @Override
+  public void flush() throws IOException {
+    if (buffer != null) {
+      flushBuffer();
+      releaseBuffer();
+    }
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (pendingHighSurrogate != 0) {
+      pendingHighSurrogate = 0;
+      ensureBuffer();
+      writeReplacement();
+    }
+    try {
+      flush();
+    } finally {
+      out.close();
+    }
+  }
+
+  private void writeReplacement() throws IOException {
+    if (position == bufferSize) {
+      flushBuffer();
+    }
+    buffer[position++] = '?';
+  }
+
+  private void writeSurrogatePair(char high, char low) throws IOException {
+    if (position > bufferSize - 4) {
+      flushBuffer();
+    }
+    int codePoint = Character.toCodePoint(high, low);
+    buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+    buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+    buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+    buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+  }
+
+  private void flushBuffer() throws IOException {
+    if (position > 0) {
+      out.write(buffer, 0, position);
+      position = 0;
+    }
+  }
+
+  private void ensureBuffer() {
+    if (buffer == null) {
+      byte[] pooled = bufferSize == DEFAULT_BUFFER_SIZE ? BUFFER_POOL.poll() : null;
+      buffer = pooled != null ? pooled : new byte[bufferSize];
+    }
+  }
+
+  private void releaseBuffer() {
+    if (bufferSize == DEFAULT_BUFFER_SIZE) {
+      BUFFER_POOL.offer(buffer);
+    }
+    buffer = null;
+  }
+}
@@ -0,0 +1,119 @@
+package org.apache.tika.fork.main;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.tika.detect.DefaultDetector;
+import org.apache.tika.extractor.EmbeddedDocumentExtractor;
+import org.apache.tika.io.TemporaryResources;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+public class EmbeddedResourceLimitsTest {
+
+  @Test
+  public void testMaxResources() throws Exception {
+    byte[] zip = TikaEmbeddedRecordExtractorTest.zip("a.txt", "first", "b.txt", "second", "c.txt", "third",
+        "d.txt", "fourth");
+    EmbeddedResourceLimits limits = new EmbeddedResourceLimits(2, -1);
+    String content = parse(zip, limits);
+
+    Assert.assertTrue(content.contains("first"));
+    Assert.assertTrue(content.contains("second"));
+    Assert.assertFalse(content.contains("third"));
+    Assert.assertFalse(content.contains("fourth"));
+    Assert.assertEquals(2, limits.getNumResources());
+    Assert.assertTrue(limits.isLimitReached());
+  }
+
+  @Test
+  public void testMaxBytes() throws Exception {
+    byte[] zip = TikaEmbeddedRecordExtractorTest.zip("a.txt", "0123456789", "b.txt", "abcdefghij", "c.txt",
+        "klmnopqrst");
+    EmbeddedResourceLimits limits = new EmbeddedResourceLimits(-1, 15);
+    String content = parse(zip, limits);
+
+    Assert.assertTrue(content.contains("0123456789"));
+    Assert.assertTrue(content.contains("abcde"));
+    Assert.assertFalse(content.contains("abcdef"));
+    Assert.assertFalse(content.contains("klmno"));
+    Assert.assertEquals(15, limits.getNumBytes());
+    Assert.assertTrue(limits.isLimitReached());
+  }
+
+  @Test
+  public void testNoLimits() throws Exception {
+    byte[] inner = TikaEmbeddedRecordExtractorTest.zip("c.txt", "third");
+    byte[] zip = TikaEmbeddedRecordExtractorTest.zip("a.txt", "first", "b.txt", "second", "inner.zip", inner);
+    EmbeddedResourceLimits limits = new EmbeddedResourceLimits(-1, -1);
+    String content = parse(zip, limits);
+
+    Assert.assertTrue(content.contains("third"));
+    Assert.assertEquals(4, limits.getNumResources());
+    Assert.assertFalse(limits.isLimitReached());
+  }
+
+  @Test
+  public void testEmbeddedOleDocument() throws Exception {
+    EmbeddedResourceLimits limits = new EmbeddedResourceLimits(-1, 1024 * 1024);
+    List<String> contentTypes = new ArrayList<>();
+    List<String> contents = new ArrayList<>();
+    ConfigurableAutoDetectParser parser = new ConfigurableAutoDetectParser(new DefaultDetector());
+    ParseContext context = new ParseContext();
+    context.set(Parser.class, parser);
+    context.set(EmbeddedResourceLimits.class, limits);
+    context.set(EmbeddedDocumentExtractor.class, new TikaEmbeddedRecordExtractor(context, parser, -1,
+        (path, metadata, content) -> {
+          contentTypes.add(metadata.get(Metadata.CONTENT_TYPE));
+          contents.add(new String(content, StandardCharsets.UTF_8));
+        }));
+    byte[] xls = TikaEmbeddedRecordExtractorTest.xlsWithEmbeddedXls("embedded cell text");
+    new AutoDetectParser().parse(new ByteArrayInputStream(xls), new TikaStreamingBodyContentHandler(new StringWriter()),
+        new Metadata(), context);
+
+    Assert.assertEquals("[application/vnd.ms-excel]", contentTypes.toString());
+    Assert.assertTrue(contents.get(0).contains("embedded cell text"));
+    Assert.assertEquals(1, limits.getNumResources());
+    Assert.assertFalse(limits.isLimitReached());
+  }
+
+  @Test
+  public void testKnownLengthCountedUpFront() throws Exception {
+    EmbeddedResourceLimits limits = new EmbeddedResourceLimits(-1, 15);
+    try (TemporaryResources tmp = new TemporaryResources()) {
+      TikaInputStream fits = TikaInputStream.get(new byte[10]);
+      Assert.assertSame(fits, limits.countBytes(fits, tmp));
+      Assert.assertEquals(10, limits.getNumBytes());
+
+      TikaInputStream tooLong = TikaInputStream.get(new byte[10]);
+      Object container = new Object();
+      tooLong.setOpenContainer(container);
+      TikaInputStream counted = limits.countBytes(tooLong, tmp);
+      Assert.assertNotSame(tooLong, counted);
+      Assert.assertSame(container, counted.getOpenContainer());
+      Assert.assertEquals(5, IOUtils.toByteArray(counted).length);
+      Assert.assertEquals(15, limits.getNumBytes());
+      Assert.assertTrue(limits.isLimitReached());
+    }
+  }
+
+  private static String parse(byte[] container, EmbeddedResourceLimits limits) throws Exception {
+    ParseContext context = new ParseContext();
+    // Like the fork, the container is parsed by another parser and only embedded resources are counted.
+    context.set(Parser.class, new ConfigurableAutoDetectParser(new DefaultDetector()));
+    context.set(EmbeddedResourceLimits.class, limits);
+    StringWriter content = new StringWriter();
+    new AutoDetectParser().parse(new ByteArrayInputStream(container), new TikaStreamingBodyContentHandler(content),
+        new Metadata(), context);
+    return content.toString();
+  }
+}
@@ -0,0 +1,70 @@
+package org.apache.tika.fork.main;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+public class RangeRequestChannelTest {
+
+  @Test
+  public void testReadRanges() throws Exception {
+    byte[] content = new byte[200000];
+    new Random(42).nextBytes(content);
+    PipedOutputStream requestsOut = new PipedOutputStream();
+    PipedInputStream requestsIn = new PipedInputStream(requestsOut);
+    PipedOutputStream responsesOut = new PipedOutputStream();
+    PipedInputStream responsesIn = new PipedInputStream(responsesOut, 128 * 1024);
+    // Serves the ranges like the client does.
+    Thread client = new Thread(() -> {
+      try (DataInputStream requests = new DataInputStream(requestsIn);
+           DataOutputStream responses = new DataOutputStream(responsesOut)) {
+        while (true) {
+          long position = requests.readLong();
+          int length = requests.readInt();
+          if (position < 0) {
+            break;
+          }
+          int n = (int) Math.min(length, content.length - position);
+          if (n <= 0) {
+            responses.writeInt(-1);
+          } else {
+            responses.writeInt(n);
+            responses.write(content, (int) position, n);
+          }
+          responses.flush();
+        }
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    });
+    client.start();
+
+    RangeRequestChannel channel = new RangeRequestChannel(responsesIn, requestsOut, content.length);
+    ByteBuffer tail = ByteBuffer.allocate(100);
+    channel.position(content.length - 100);
+    Assert.assertEquals(100, channel.read(tail));
+    Assert.assertArrayEquals(Arrays.copyOfRange(content, content.length - 100, content.length), tail.array());
+    Assert.assertEquals(-1, channel.read(ByteBuffer.allocate(10)));
+    Assert.assertEquals(100L, channel.getBytesTransferred());
+
+    // The stream starts at the beginning, whatever the position of the channel.
+    ByteArrayOutputStream all = new ByteArrayOutputStream();
+    IOUtils.copy(channel.newInputStream(), all);
+    Assert.assertArrayEquals(content, all.toByteArray());
+    Assert.assertEquals(content.length + 100L, channel.getBytesTransferred());
+
+    channel.finish();
+    client.join(10000);
+    Assert.assertFalse(client.isAlive());
+    Assert.assertFalse(channel.isOpen());
+  }
+}
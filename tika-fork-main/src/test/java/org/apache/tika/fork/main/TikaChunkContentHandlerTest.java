@@ -0,0 +1,126 @@
+package org.apache.tika.fork.main;
+
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.sax.XHTMLContentHandler;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.helpers.AttributesImpl;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TikaChunkContentHandlerTest {
+
+  private static class Chunk {
+    final long offset;
+    final String text;
+    final int page;
+    final String sheet;
+    final String embeddedPath;
+
+    Chunk(long offset, String text, int page, String sheet, String embeddedPath) {
+      this.offset = offset;
+      this.text = text;
+      this.page = page;
+      this.sheet = sheet;
+      this.embeddedPath = embeddedPath;
+    }
+  }
+
+  private final List<Chunk> chunks = new ArrayList<>();
+
+  private TikaChunkContentHandler newChunkHandler(int chunkSize) {
+    return new TikaChunkContentHandler(chunkSize, (offset, text, length, page, sheet, embeddedPath) ->
+        chunks.add(new Chunk(offset, new String(text, 0, length), page, sheet, embeddedPath)));
+  }
+
+  @Test
+  public void testChunkSize() throws Exception {
+    TikaChunkContentHandler chunkHandler = newChunkHandler(16);
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 100; ++i) {
+      text.append("word").append(i).append(' ');
+    }
+    text.append("averyveryverylongwordwithoutanyspaces");
+    chunkHandler.getWriter().write(text.toString());
+    chunkHandler.getWriter().flush();
+
+    StringBuilder joined = new StringBuilder();
+    for (Chunk chunk : chunks) {
+      Assert.assertTrue(chunk.text.length() <= 16);
+      Assert.assertEquals(joined.length(), chunk.offset);
+      joined.append(chunk.text);
+    }
+    Assert.assertEquals(text.toString(), joined.toString());
+    Assert.assertEquals("word0 word1 ", chunks.get(0).text);
+  }
+
+  @Test
+  public void testPagesAndSheets() throws Exception {
+    TikaChunkContentHandler chunkHandler = newChunkHandler(1024);
+    ContentHandler handler = new TikaParsingHandler("test", null,
+        new TikaStreamingBodyContentHandler(chunkHandler.getWriter()), null, chunkHandler);
+    handler.startDocument();
+    handler.startElement(XHTMLContentHandler.XHTML, "html", "html", new AttributesImpl());
+    handler.startElement(XHTMLContentHandler.XHTML, "body", "body", new AttributesImpl());
+    page(handler, "Sheet1", "first sheet");
+    page(handler, "Sheet2", "second sheet");
+    page(handler, null, "no sheet");
+    handler.endElement(XHTMLContentHandler.XHTML, "body", "body");
+    handler.endElement(XHTMLContentHandler.XHTML, "html", "html");
+    handler.endDocument();
+
+    Assert.assertEquals(3, chunks.size());
+    Assert.assertEquals(1, chunks.get(0).page);
+    Assert.assertEquals("Sheet1", chunks.get(0).sheet);
+    Assert.assertTrue(chunks.get(0).text.contains("first sheet"));
+    Assert.assertEquals(2, chunks.get(1).page);
+    Assert.assertEquals("Sheet2", chunks.get(1).sheet);
+    Assert.assertTrue(chunks.get(1).text.contains("second sheet"));
+    Assert.assertFalse(chunks.get(1).text.contains("first sheet"));
+    Assert.assertEquals(3, chunks.get(2).page);
+    Assert.assertNull(chunks.get(2).sheet);
+    Assert.assertNull(chunks.get(2).embeddedPath);
+  }
+
+  @Test
+  public void testEmbeddedPath() throws Exception {
+    byte[] inner = TikaEmbeddedRecordExtractorTest.zip("c.txt", "third file");
+    byte[] outer = TikaEmbeddedRecordExtractorTest.zip("a.txt", "first file", "inner.zip", inner);
+    TikaChunkContentHandler chunkHandler = newChunkHandler(1024);
+    ContentHandler handler = new TikaParsingHandler("test", null,
+        new TikaStreamingBodyContentHandler(chunkHandler.getWriter()), null, chunkHandler);
+    new AutoDetectParser().parse(new ByteArrayInputStream(outer), handler, new Metadata(), new ParseContext());
+
+    String firstPath = null;
+    String thirdPath = null;
+    for (Chunk chunk : chunks) {
+      if (chunk.text.contains("first file")) {
+        firstPath = chunk.embeddedPath;
+      } else if (chunk.text.contains("third file")) {
+        thirdPath = chunk.embeddedPath;
+      }
+    }
+    Assert.assertEquals("/a.txt", firstPath);
+    Assert.assertEquals("/inner.zip/c.txt", thirdPath);
+  }
+
+  private static void page(ContentHandler handler, String sheet, String text) throws Exception {
+    AttributesImpl attributes = new AttributesImpl();
+    attributes.addAttribute("", "class", "class", "CDATA", "page");
+    handler.startElement(XHTMLContentHandler.XHTML, "div", "div", attributes);
+    if (sheet != null) {
+      handler.startElement(XHTMLContentHandler.XHTML, "h1", "h1", new AttributesImpl());
+      handler.characters(sheet.toCharArray(), 0, sheet.length());
+      handler.endElement(XHTMLContentHandler.XHTML, "h1", "h1");
+    }
+    handler.startElement(XHTMLContentHandler.XHTML, "p", "p", new AttributesImpl());
+    handler.characters(text.toCharArray(), 0, text.length());
+    handler.endElement(XHTMLContentHandler.XHTML, "p", "p");
+    handler.endElement(XHTMLContentHandler.XHTML, "div", "div");
+  }
+}
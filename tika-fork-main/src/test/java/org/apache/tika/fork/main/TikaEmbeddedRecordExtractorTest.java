@@ -0,0 +1,129 @@
+package org.apache.tika.fork.main;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.EntryUtils;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.tika.detect.DefaultDetector;
+import org.apache.tika.extractor.EmbeddedDocumentExtractor;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class TikaEmbeddedRecordExtractorTest {
+
+  @Test
+  public void testNestedZip() throws Exception {
+    byte[] inner = zip("c.txt", "third file");
+    byte[] outer = zip("a.txt", "first file", "b.txt", "second file", "inner.zip", inner);
+
+    List<String> paths = new ArrayList<>();
+    List<String> contents = new ArrayList<>();
+    ConfigurableAutoDetectParser parser = new ConfigurableAutoDetectParser(new DefaultDetector());
+    ParseContext context = new ParseContext();
+    context.set(Parser.class, parser);
+    context.set(EmbeddedDocumentExtractor.class, new TikaEmbeddedRecordExtractor(context, parser, -1,
+        (path, metadata, content) -> {
+          Assert.assertEquals(path, metadata.get(TikaConstants.EMBEDDED_RESOURCE_PATH));
+          paths.add(path);
+          contents.add(new String(content, StandardCharsets.UTF_8).trim());
+        }));
+    StringWriter containerContent = new StringWriter();
+    parser.parse(new ByteArrayInputStream(outer), new TikaStreamingBodyContentHandler(containerContent), new Metadata(), context);
+
+    Assert.assertEquals("[/a.txt, /b.txt, /inner.zip/c.txt, /inner.zip]", paths.toString());
+    Assert.assertEquals("first file", contents.get(0));
+    Assert.assertEquals("third file", contents.get(2));
+    Assert.assertFalse(containerContent.toString().contains("first file"));
+  }
+
+  @Test
+  public void testWriteLimitPerResource() throws Exception {
+    byte[] outer = zip("a.txt", "0123456789", "b.txt", "abcdefghij");
+    List<String> contents = new ArrayList<>();
+    List<String> limitReached = new ArrayList<>();
+    ConfigurableAutoDetectParser parser = new ConfigurableAutoDetectParser(new DefaultDetector());
+    ParseContext context = new ParseContext();
+    context.set(EmbeddedDocumentExtractor.class, new TikaEmbeddedRecordExtractor(context, parser, 5,
+        (path, metadata, content) -> {
+          contents.add(new String(content, StandardCharsets.UTF_8));
+          limitReached.add(metadata.get(TikaConstants.WRITE_LIMIT_REACHED));
+        }));
+    parser.parse(new ByteArrayInputStream(outer), new TikaStreamingBodyContentHandler(new StringWriter()), new Metadata(), context);
+
+    Assert.assertEquals(2, contents.size());
+    Assert.assertEquals("01234", contents.get(0));
+    Assert.assertEquals("abcde", contents.get(1));
+    Assert.assertEquals("[true, true]", limitReached.toString());
+  }
+
+  @Test
+  public void testEmbeddedOleDocument() throws Exception {
+    List<String> contentTypes = new ArrayList<>();
+    List<String> contents = new ArrayList<>();
+    ConfigurableAutoDetectParser parser = new ConfigurableAutoDetectParser(new DefaultDetector());
+    ParseContext context = new ParseContext();
+    context.set(Parser.class, parser);
+    context.set(EmbeddedDocumentExtractor.class, new TikaEmbeddedRecordExtractor(context, parser, -1,
+        (path, metadata, content) -> {
+          contentTypes.add(metadata.get(Metadata.CONTENT_TYPE));
+          contents.add(new String(content, StandardCharsets.UTF_8));
+        }));
+    parser.parse(new ByteArrayInputStream(xlsWithEmbeddedXls("embedded cell text")),
+        new TikaStreamingBodyContentHandler(new StringWriter()), new Metadata(), context);
+
+    Assert.assertEquals("[application/vnd.ms-excel]", contentTypes.toString());
+    Assert.assertTrue(contents.get(0).contains("embedded cell text"));
+  }
+
+  /**
+   * @return a workbook with another workbook embedded as an OLE object, stored the way Office stores it: as a
+   * directory of the container that holds the streams of the embedded document.
+   */
+  static byte[] xlsWithEmbeddedXls(String embeddedText) throws IOException {
+    ByteArrayOutputStream embedded = new ByteArrayOutputStream();
+    try (HSSFWorkbook workbook = new HSSFWorkbook()) {
+      workbook.createSheet("Embedded").createRow(0).createCell(0).setCellValue(embeddedText);
+      workbook.write(embedded);
+    }
+    ByteArrayOutputStream container = new ByteArrayOutputStream();
+    try (HSSFWorkbook workbook = new HSSFWorkbook()) {
+      workbook.createSheet("Container").createRow(0).createCell(0).setCellValue("container text");
+      workbook.write(container);
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (POIFSFileSystem containerFs = new POIFSFileSystem(new ByteArrayInputStream(container.toByteArray()));
+         POIFSFileSystem embeddedFs = new POIFSFileSystem(new ByteArrayInputStream(embedded.toByteArray()))) {
+      EntryUtils.copyNodes(embeddedFs.getRoot(), containerFs.getRoot().createDirectory("MBD00000001"));
+      containerFs.writeFilesystem(bytes);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * @param entries pairs of an entry name and its content, a String or a byte array
+   */
+  static byte[] zip(Object... entries) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+      for (int i = 0; i < entries.length; i += 2) {
+        zip.putNextEntry(new ZipEntry((String) entries[i]));
+        Object content = entries[i + 1];
+        zip.write(content instanceof String ? ((String) content).getBytes(StandardCharsets.UTF_8) : (byte[]) content);
+        zip.closeEntry();
+      }
+    }
+    return bytes.toByteArray();
+  }
+}
@@ -0,0 +1,101 @@
+package org.apache.tika.fork.main;
+
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.html.HtmlMapper;
+import org.apache.tika.parser.html.HtmlParser;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xml.sax.ContentHandler;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+public class TikaHtmlContentHandlerTest {
+
+  private static final String[] TAGS = {"a", "img", "div", "span", "p", "b", "table", "td", "form", "iframe",
+      "script", "style", "area", "embed", "link", "input", "ul", "li", "h1", "font", "custom-tag"};
+
+  @Test
+  public void testSameAnswersAsExtendedHtmlMapper() {
+    HtmlMapper expected = ExtendedHtmlMapper.INSTANCE;
+    HtmlMapper actual = TikaHtmlMapper.INSTANCE;
+    for (String element : TikaHtmlMapper.ELEMENTS) {
+      for (String name : new String[] {element, element.toLowerCase(Locale.ROOT), element + "X"}) {
+        Assert.assertEquals(name, expected.mapSafeElement(name), actual.mapSafeElement(name));
+        Assert.assertEquals(name, expected.isDiscardElement(name), actual.isDiscardElement(name));
+        for (String attribute : TikaHtmlMapper.ATTRIBUTES) {
+          Assert.assertEquals(name + " " + attribute,
+              expected.mapSafeAttribute(name, attribute), actual.mapSafeAttribute(name, attribute));
+        }
+        Assert.assertEquals(expected.mapSafeAttribute(name, "onclick"), actual.mapSafeAttribute(name, "onclick"));
+      }
+    }
+  }
+
+  @Test
+  public void testSameOutputAsParsingHandler() throws Exception {
+    String html = "<html><head><title>Title</title><link rel=\"stylesheet\" href=\"/style.css\"></head><body>"
+        + "<div>first<span>a</span><span>b</span></div>"
+        + "<p>para <a href=\"/one\" rel=\"nofollow\">one <b>bold</b></a></p>"
+        + "<a href=\"/two\"><img src=\"/two.png\" alt=\"Two\" width=\"10\"></a>"
+        + "<form action=\"/search\"><input type=\"image\" src=\"/go.png\" alt=\"Go\"></form>"
+        + "<script>var x = 1;</script><table><tr><td>cell</td></tr></table>"
+        + "</body></html>";
+    assertSameOutput(html);
+  }
+
+  @Test
+  public void testSameOutputForRandomDocuments() throws Exception {
+    Random random = new Random(42);
+    for (int i = 0; i < 200; ++i) {
+      StringBuilder html = new StringBuilder("<html><body>");
+      element(html, random, 0);
+      html.append("</body></html>");
+      assertSameOutput(html.toString());
+    }
+  }
+
+  private static void element(StringBuilder html, Random random, int depth) {
+    int numChildren = depth > 4 ? 0 : random.nextInt(4);
+    for (int i = 0; i < numChildren; ++i) {
+      String tag = TAGS[random.nextInt(TAGS.length)];
+      if (random.nextBoolean()) {
+        tag = tag.toUpperCase(Locale.ROOT);
+      }
+      html.append('<').append(tag)
+          .append(" href=\"/h").append(i).append('"')
+          .append(" src=\"/s").append(i).append('"')
+          .append(" alt=\"alt ").append(i).append('"')
+          .append(" title=\"t\" type=\"image\" id=\"x").append(depth).append("\">");
+      html.append(" text\n ").append(random.nextInt(100)).append(' ');
+      element(html, random, depth + 1);
+      if (random.nextInt(5) > 0) {
+        html.append("</").append(tag).append('>');
+      }
+    }
+  }
+
+  private static void assertSameOutput(String html) throws Exception {
+    StringWriter expectedText = new StringWriter();
+    TikaLinkContentHandler expectedLinks = new TikaLinkContentHandler("http://host/", true);
+    TikaStreamingBodyContentHandler body = new TikaStreamingBodyContentHandler(expectedText);
+    parse(html, new TikaParsingHandler("http://host/", null, body, expectedLinks), ExtendedHtmlMapper.INSTANCE);
+
+    StringWriter actualText = new StringWriter();
+    TikaLinkContentHandler actualLinks = new TikaLinkContentHandler("http://host/", true);
+    parse(html, new TikaHtmlContentHandler(actualText, -1, actualLinks, null), TikaHtmlMapper.INSTANCE);
+
+    Assert.assertEquals(html, expectedText.toString(), actualText.toString());
+    Assert.assertEquals(html, expectedLinks.getLinks(), actualLinks.getLinks());
+  }
+
+  private static void parse(String html, ContentHandler handler, HtmlMapper mapper) throws Exception {
+    ParseContext context = new ParseContext();
+    context.set(HtmlMapper.class, mapper);
+    new HtmlParser().parse(new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)), handler, new Metadata(), context);
+  }
+}
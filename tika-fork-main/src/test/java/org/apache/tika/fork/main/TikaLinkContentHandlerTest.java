@@ -0,0 +1,148 @@
+package org.apache.tika.fork.main;
+
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.html.HtmlMapper;
+import org.apache.tika.parser.html.HtmlParser;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xml.sax.helpers.AttributesImpl;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.apache.tika.sax.XHTMLContentHandler.XHTML;
+
+public class TikaLinkContentHandlerTest {
+
+  @Test
+  public void testCollapseWhitespaceSameAsRegex() throws Exception {
+    char[] alphabet = {'a', 'b', ' ', '\t', '\n', '\r', '\f', '\u000B', '\u0001', '\u00A0'};
+    Random random = new Random(42);
+    for (int i = 0; i < 10000; ++i) {
+      StringBuilder text = new StringBuilder();
+      int length = random.nextInt(12);
+      for (int j = 0; j < length; ++j) {
+        text.append(alphabet[random.nextInt(alphabet.length)]);
+      }
+      String expected = text.toString().replaceAll("\\s+", " ").trim();
+      TikaLinkContentHandler handler = new TikaLinkContentHandler("http://host/", true);
+      char[] anchor = text.toString().toCharArray();
+      handler.startElement(XHTML, "a", "a", new AttributesImpl());
+      handler.characters(anchor, 0, anchor.length);
+      handler.endElement(XHTML, "a", "a");
+      Assert.assertEquals(expected, handler.getLinks().get(0).anchor);
+    }
+  }
+
+  @Test
+  public void testLinks() throws Exception {
+    TikaLinkContentHandler handler = new TikaLinkContentHandler("http://host/", true);
+    parse("<html><body><a href=\"/one\">first\n\n  link</a>"
+        + "<a href=\"/two\"><img src=\"/two.png\" alt=\"Two\"></a></body></html>", handler);
+    Assert.assertEquals(3, handler.getLinks().size());
+    Link first = handler.getLinks().get(0);
+    Assert.assertEquals("a", first.type);
+    Assert.assertEquals("/one", first.targetUri);
+    Assert.assertEquals("first link", first.anchor);
+    Link image = handler.getLinks().get(1);
+    Assert.assertEquals("img", image.type);
+    Assert.assertEquals("Two", image.params.get("alt"));
+    Assert.assertEquals("Two", handler.getLinks().get(2).anchor);
+    Assert.assertTrue(first.params.isEmpty());
+    Assert.assertFalse(handler.isLinkLimitReached());
+  }
+
+  @Test
+  public void testLimits() throws Exception {
+    StringBuilder html = new StringBuilder("<html><body>");
+    for (int i = 0; i < 100; ++i) {
+      html.append("<a href=\"/").append(i).append("\">anchor text ").append(i).append("</a>");
+    }
+    html.append("</body></html>");
+    TikaLinkContentHandler handler = new TikaLinkContentHandler("http://host/", true, null, 10, 6);
+    parse(html.toString(), handler);
+    Assert.assertEquals(10, handler.getLinks().size());
+    Assert.assertEquals("/9", handler.getLinks().get(9).targetUri);
+    Assert.assertEquals("anchor", handler.getLinks().get(9).anchor);
+    Assert.assertTrue(handler.isLinkLimitReached());
+  }
+
+  @Test
+  public void testExactlyMaxLinks() throws Exception {
+    TikaLinkContentHandler handler = new TikaLinkContentHandler("http://host/", true, null, 2, -1);
+    parse("<html><body><a href=\"/one\">one</a><a href=\"/two\">two</a></body></html>", handler);
+    Assert.assertEquals(2, handler.getLinks().size());
+    Assert.assertFalse(handler.isLinkLimitReached());
+  }
+
+  @Test
+  public void testOpenLinkDroppedAtLimit() throws Exception {
+    TikaLinkContentHandler handler = new TikaLinkContentHandler("http://host/", true, null, 1, -1);
+    parse("<html><body><a href=\"/one\"><img src=\"/one.png\"></a></body></html>", handler);
+    Assert.assertEquals(1, handler.getLinks().size());
+    Assert.assertEquals("img", handler.getLinks().get(0).type);
+    Assert.assertTrue(handler.isLinkLimitReached());
+  }
+
+  @Test
+  public void testZeroMaxLinks() throws Exception {
+    TikaLinkContentHandler handler = new TikaLinkContentHandler("http://host/", true, null, 0, -1);
+    parse("<html><body><p>no links</p></body></html>", handler);
+    Assert.assertFalse(handler.isLinkLimitReached());
+    handler = new TikaLinkContentHandler("http://host/", true, null, 0, -1);
+    parse("<html><body><a href=\"/one\">one</a></body></html>", handler);
+    Assert.assertTrue(handler.getLinks().isEmpty());
+    Assert.assertTrue(handler.isLinkLimitReached());
+  }
+
+  @Test
+  public void testElementWithoutLinkInsideAnchor() throws Exception {
+    TikaLinkContentHandler handler = new TikaLinkContentHandler("http://host/", true);
+    AttributesImpl href = new AttributesImpl();
+    href.addAttribute("", "href", "href", "CDATA", "/one");
+    AttributesImpl text = new AttributesImpl();
+    text.addAttribute("", "type", "type", "CDATA", "text");
+    handler.startElement(XHTML, "a", "a", href);
+    characters(handler, "before ");
+    handler.startElement(XHTML, "input", "input", text);
+    handler.endElement(XHTML, "input", "input");
+    characters(handler, "after");
+    handler.endElement(XHTML, "a", "a");
+    Assert.assertEquals(1, handler.getLinks().size());
+    Assert.assertEquals("/one", handler.getLinks().get(0).targetUri);
+    Assert.assertEquals("before after", handler.getLinks().get(0).anchor);
+  }
+
+  @Test
+  public void testElementsWithoutLinkNotCounted() throws Exception {
+    TikaLinkContentHandler handler = new TikaLinkContentHandler("http://host/", true, null, 1, -1);
+    AttributesImpl post = new AttributesImpl();
+    post.addAttribute("", "method", "method", "CDATA", "post");
+    AttributesImpl text = new AttributesImpl();
+    text.addAttribute("", "type", "type", "CDATA", "text");
+    handler.startElement(XHTML, "a", "a", new AttributesImpl());
+    characters(handler, "one ");
+    handler.startElement(XHTML, "form", "form", post);
+    handler.startElement(XHTML, "input", "input", text);
+    handler.endElement(XHTML, "input", "input");
+    handler.endElement(XHTML, "form", "form");
+    characters(handler, "two");
+    handler.endElement(XHTML, "a", "a");
+    Assert.assertEquals(1, handler.getLinks().size());
+    Assert.assertEquals("one two", handler.getLinks().get(0).anchor);
+    Assert.assertFalse(handler.isLinkLimitReached());
+  }
+
+  private static void characters(TikaLinkContentHandler handler, String text) {
+    char[] ch = text.toCharArray();
+    handler.characters(ch, 0, ch.length);
+  }
+
+  private static void parse(String html, TikaLinkContentHandler handler) throws Exception {
+    ParseContext context = new ParseContext();
+    context.set(HtmlMapper.class, ExtendedHtmlMapper.INSTANCE);
+    new HtmlParser().parse(new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)), handler, new Metadata(), context);
+  }
+}
@@ -0,0 +1,56 @@
+package org.apache.tika.fork.main;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.tika.io.TikaInputStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+
+public class TikaMemoryInputTest {
+
+  @Test
+  public void testSmallInputInMemory() throws Exception {
+    byte[] input = randomBytes(1000);
+    try (TikaInputStream stream = TikaMemoryInput.get(new BufferedInputStream(new ByteArrayInputStream(input)), input.length, 1000)) {
+      Assert.assertTrue(TikaMemoryInput.isInMemory(stream));
+      Assert.assertEquals(1000, stream.getLength());
+      Assert.assertArrayEquals(input, IOUtils.toByteArray(stream));
+    }
+  }
+
+  @Test
+  public void testLargeInputStreamed() throws Exception {
+    byte[] input = randomBytes(1001);
+    try (TikaInputStream stream = TikaMemoryInput.get(new BufferedInputStream(new ByteArrayInputStream(input)), input.length, 1000)) {
+      Assert.assertFalse(TikaMemoryInput.isInMemory(stream));
+      Assert.assertArrayEquals(input, IOUtils.toByteArray(stream));
+    }
+  }
+
+  @Test
+  public void testUnknownLengthStreamed() throws Exception {
+    byte[] input = randomBytes(10);
+    try (TikaInputStream stream = TikaMemoryInput.get(new BufferedInputStream(new ByteArrayInputStream(input)), -1, 1000)) {
+      Assert.assertFalse(TikaMemoryInput.isInMemory(stream));
+      Assert.assertArrayEquals(input, IOUtils.toByteArray(stream));
+    }
+  }
+
+  @Test
+  public void testDisabled() throws Exception {
+    byte[] input = randomBytes(10);
+    try (TikaInputStream stream = TikaMemoryInput.get(new BufferedInputStream(new ByteArrayInputStream(input)), input.length, 0)) {
+      Assert.assertFalse(TikaMemoryInput.isInMemory(stream));
+      Assert.assertArrayEquals(input, IOUtils.toByteArray(stream));
+    }
+  }
+
+  private static byte[] randomBytes(int length) {
+    byte[] bytes = new byte[length];
+    new Random(42).nextBytes(bytes);
+    return bytes;
+  }
+}
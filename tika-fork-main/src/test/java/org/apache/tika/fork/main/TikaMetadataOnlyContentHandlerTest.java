@@ -0,0 +1,37 @@
+package org.apache.tika.fork.main;
+
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.TikaCoreProperties;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.sax.BodyContentHandler;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+public class TikaMetadataOnlyContentHandlerTest {
+
+  @Test
+  public void testStopsAtBody() throws Exception {
+    byte[] html = ("<html><head><title>The title</title><meta name=\"keywords\" content=\"a, b\"></head>"
+        + "<body><p>The body</p></body></html>").getBytes(StandardCharsets.UTF_8);
+    Metadata expected = new Metadata();
+    new AutoDetectParser().parse(new ByteArrayInputStream(html), new BodyContentHandler(), expected, new ParseContext());
+
+    Metadata actual = new Metadata();
+    try {
+      new AutoDetectParser().parse(new ByteArrayInputStream(html), new TikaMetadataOnlyContentHandler(), actual,
+          new ParseContext());
+      Assert.fail("Should have stopped at the body");
+    } catch (Exception e) {
+      Assert.assertTrue(TikaMetadataOnlyContentHandler.isBodyReached(e));
+    }
+    Assert.assertEquals("The title", actual.get(TikaCoreProperties.TITLE));
+    Assert.assertEquals("a, b", actual.get("keywords"));
+    for (String name : expected.names()) {
+      Assert.assertArrayEquals(name, expected.getValues(name), actual.getValues(name));
+    }
+  }
+}
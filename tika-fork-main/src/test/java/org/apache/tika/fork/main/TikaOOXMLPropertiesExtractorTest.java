@@ -0,0 +1,74 @@
+package org.apache.tika.fork.main;
+
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.sax.BodyContentHandler;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+public class TikaOOXMLPropertiesExtractorTest {
+
+  private static final String DOCX = "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+
+  @Test
+  public void testSameMetadataAsParser() throws Exception {
+    byte[] docx;
+    try (XWPFDocument document = new XWPFDocument()) {
+      document.getProperties().getCoreProperties().setTitle("The title");
+      document.getProperties().getCoreProperties().setCreator("The author");
+      document.getProperties().getExtendedProperties().getUnderlyingProperties().setCompany("The company");
+      document.createParagraph().createRun().setText("The body");
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      document.write(bytes);
+      docx = bytes.toByteArray();
+    }
+    Metadata expected = new Metadata();
+    new AutoDetectParser().parse(new ByteArrayInputStream(docx), new BodyContentHandler(), expected, new ParseContext());
+    // Held in memory by the fork, and read from a stream that is spooled to a file.
+    for (boolean inMemory : new boolean[] {true, false}) {
+      Metadata actual = new Metadata();
+      try (TikaInputStream tikaInputStream = inMemory
+          ? TikaInputStream.get(docx)
+          : TikaInputStream.get(new BufferedInputStream(new ByteArrayInputStream(docx)))) {
+        Assert.assertEquals(inMemory, TikaMemoryInput.isInMemory(tikaInputStream));
+        TikaOOXMLPropertiesExtractor.extract(tikaInputStream, actual);
+        // The parse can still fall back to the stream.
+        Assert.assertEquals('P', tikaInputStream.read());
+      }
+
+      assertSameMetadata(expected, actual);
+    }
+    // Served in ranges by the client.
+    Metadata actual = new Metadata();
+    TikaOOXMLPropertiesExtractor.extract(new SeekableInMemoryByteChannel(docx), actual);
+    assertSameMetadata(expected, actual);
+  }
+
+  private static void assertSameMetadata(Metadata expected, Metadata actual) {
+    Assert.assertEquals("The title", actual.get("dc:title"));
+    Assert.assertEquals("The company", actual.get("extended-properties:Company"));
+    for (String name : expected.names()) {
+      // Set by the fork and the parser.
+      if (!name.equals("X-Parsed-By") && !name.equals(Metadata.CONTENT_TYPE)) {
+        Assert.assertArrayEquals(name, expected.getValues(name), actual.getValues(name));
+      }
+    }
+  }
+
+  @Test
+  public void testIsOOXML() {
+    Assert.assertTrue(TikaOOXMLPropertiesExtractor.isOOXML(DOCX));
+    Assert.assertTrue(TikaOOXMLPropertiesExtractor.isOOXML(
+        "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet; charset=UTF-8"));
+    Assert.assertFalse(TikaOOXMLPropertiesExtractor.isOOXML("application/msword"));
+    Assert.assertFalse(TikaOOXMLPropertiesExtractor.isOOXML(""));
+  }
+}
@@ -0,0 +1,147 @@
+package org.apache.tika.fork.main;
+
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.html.HtmlMapper;
+import org.apache.tika.parser.html.HtmlParser;
+import org.apache.tika.sax.XHTMLContentHandler;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+public class TikaStreamingBodyContentHandlerTest {
+
+  private static final String[] ELEMENTS = {"p", "span", "SPAN", "div", "Div", "a", "td", "img", "body", "html"};
+
+  @Test
+  public void testSameOutputAsBodyContentHandler() throws Exception {
+    String html = "<html><head><title>Title</title></head><body>"
+        + "<div>first<span>a</span><span>b</span></div>"
+        + "<p>para <b>bold</b></p><div><div>nested</div></div>"
+        + "<table><tr><td>cell</td><td><span>x</span></td></tr></table>"
+        + "</body></html>";
+    String expected = parseWith(html, false);
+    Assert.assertTrue(expected.contains("nested"));
+    Assert.assertEquals(expected, parseWith(html, true));
+  }
+
+  @Test
+  public void testSameOutputForRandomDocuments() throws Exception {
+    Random random = new Random(42);
+    for (int i = 0; i < 500; ++i) {
+      long seed = random.nextLong();
+      StringWriter expected = new StringWriter();
+      StringWriter actual = new StringWriter();
+      replay(new TikaBodyContentHandler(expected), seed);
+      replay(new TikaStreamingBodyContentHandler(actual), seed);
+      Assert.assertEquals("seed " + seed, expected.toString(), actual.toString());
+    }
+  }
+
+  @Test
+  public void testWriteLimit() throws Exception {
+    StringWriter writer = new StringWriter();
+    TikaStreamingBodyContentHandler handler = new TikaStreamingBodyContentHandler(writer, 5);
+    handler.startElement(XHTMLContentHandler.XHTML, "html", "html", new AttributesImpl());
+    handler.startElement(XHTMLContentHandler.XHTML, "body", "body", new AttributesImpl());
+    char[] text = "0123456789".toCharArray();
+    try {
+      handler.characters(text, 0, text.length);
+      Assert.fail("Should have reached the write limit");
+    } catch (SAXException e) {
+      Assert.assertTrue(handler.isWriteLimitReached(e));
+    }
+    Assert.assertEquals("01234", writer.toString());
+  }
+
+  @Test
+  public void testDeadline() throws Exception {
+    StringWriter writer = new StringWriter();
+    ParseDeadline deadline = new ParseDeadline();
+    TikaStreamingBodyContentHandler handler = new TikaStreamingBodyContentHandler(writer, -1, deadline);
+    handler.startElement(XHTMLContentHandler.XHTML, "html", "html", new AttributesImpl());
+    handler.startElement(XHTMLContentHandler.XHTML, "body", "body", new AttributesImpl());
+    char[] text = "0123456789".toCharArray();
+    handler.characters(text, 0, text.length);
+    deadline.expire();
+    try {
+      handler.characters(text, 0, text.length);
+      Assert.fail("Should have passed the deadline");
+    } catch (SAXException e) {
+      Assert.assertTrue(ParseDeadline.isDeadlineExceeded(e));
+      Assert.assertFalse(handler.isWriteLimitReached(e));
+    }
+    Assert.assertEquals("0123456789", writer.toString());
+  }
+
+  private static String parseWith(String html, boolean streaming) throws Exception {
+    StringWriter writer = new StringWriter();
+    ContentHandler handler = streaming ? new TikaStreamingBodyContentHandler(writer) : new TikaBodyContentHandler(writer);
+    ParseContext context = new ParseContext();
+    context.set(HtmlMapper.class, ExtendedHtmlMapper.INSTANCE);
+    new HtmlParser().parse(new ByteArrayInputStream(html.getBytes(StandardCharsets.UTF_8)), handler, new Metadata(), context);
+    return writer.toString();
+  }
+
+  /**
+   * Sends a random but well formed sequence of SAX events, sometimes with a root or body element that the body
+   * matcher should not accept.
+   */
+  private static void replay(ContentHandler handler, long seed) throws SAXException {
+    Random random = new Random(seed);
+    AttributesImpl attributes = new AttributesImpl();
+    handler.startDocument();
+    String rootUri = random.nextInt(10) == 0 ? "" : XHTMLContentHandler.XHTML;
+    String rootName = random.nextInt(10) == 0 ? "root" : "html";
+    handler.startElement(rootUri, rootName, rootName, attributes);
+    text(handler, random);
+    int numChildren = 1 + random.nextInt(3);
+    for (int i = 0; i < numChildren; ++i) {
+      String name = random.nextInt(3) == 0 ? "head" : "body";
+      handler.startElement(XHTMLContentHandler.XHTML, name, name, attributes);
+      subtree(handler, random, 0);
+      handler.endElement(XHTMLContentHandler.XHTML, name, name);
+      text(handler, random);
+    }
+    handler.endElement(rootUri, rootName, rootName);
+    handler.endDocument();
+  }
+
+  private static void subtree(ContentHandler handler, Random random, int depth) throws SAXException {
+    int numChildren = depth > 4 ? 0 : random.nextInt(4);
+    text(handler, random);
+    for (int i = 0; i < numChildren; ++i) {
+      String name = ELEMENTS[random.nextInt(ELEMENTS.length)];
+      // Names that are not literals, so that the identity checks miss.
+      if (random.nextBoolean()) {
+        name = new String(name.toCharArray());
+      }
+      handler.startElement(XHTMLContentHandler.XHTML, name, name, new AttributesImpl());
+      subtree(handler, random, depth + 1);
+      handler.endElement(XHTMLContentHandler.XHTML, name, name);
+      text(handler, random);
+    }
+  }
+
+  private static void text(ContentHandler handler, Random random) throws SAXException {
+    switch (random.nextInt(3)) {
+      case 0:
+        char[] text = ("t" + random.nextInt(100)).toCharArray();
+        handler.characters(text, 0, text.length);
+        break;
+      case 1:
+        char[] whitespace = " \n".toCharArray();
+        handler.ignorableWhitespace(whitespace, 0, whitespace.length);
+        break;
+      default:
+        break;
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package org.apache.tika.fork.main;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+public class TikaUtf8WriterTest {
+
+  private static final char[] SAMPLE_CHARS = {'a', 'Z', ' ', '\n', '\u00e9', '\u07ff', '\u0800', '\u20ac', '\uffff',
+      '\ud83d', '\ude00', '\udbff', '\udfff'};
+
+  @Test
+  public void testSameBytesAsJdkEncoder() throws Exception {
+    Random random = new Random(7);
+    for (int i = 0; i < 1000; ++i) {
+      char[] text = new char[random.nextInt(200)];
+      for (int j = 0; j < text.length; ++j) {
+        text[j] = SAMPLE_CHARS[random.nextInt(SAMPLE_CHARS.length)];
+      }
+      ByteArrayOutputStream expected = new ByteArrayOutputStream();
+      ByteArrayOutputStream actual = new ByteArrayOutputStream();
+      // A tiny buffer so that surrogate pairs and multi byte chars end up on buffer and write boundaries.
+      try (Writer jdkWriter = new OutputStreamWriter(expected, StandardCharsets.UTF_8);
+           Writer utf8Writer = new TikaUtf8Writer(actual, 7)) {
+        int offset = 0;
+        while (offset < text.length) {
+          int length = Math.min(text.length - offset, 1 + random.nextInt(5));
+          jdkWriter.write(text, offset, length);
+          if (length == 1 && random.nextBoolean()) {
+            utf8Writer.write(text[offset]);
+          } else {
+            utf8Writer.write(text, offset, length);
+          }
+          offset += length;
+        }
+      }
+      Assert.assertArrayEquals(new String(text), expected.toByteArray(), actual.toByteArray());
+    }
+  }
+
+  @Test
+  public void testFlushWritesBufferedBytes() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Writer writer = new TikaUtf8Writer(out);
+    writer.write("caf\u00e9");
+    Assert.assertEquals(0, out.size());
+    writer.flush();
+    Assert.assertEquals("caf\u00e9", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    writer.write(" ok");
+    writer.flush();
+    Assert.assertEquals("caf\u00e9 ok", new String(out.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testOtherCharsets() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Writer writer = TikaUtf8Writer.create(out, StandardCharsets.UTF_16BE);
+    Assert.assertFalse(writer instanceof TikaUtf8Writer);
+    writer.write("ab");
+    writer.flush();
+    Assert.assertArrayEquals("ab".getBytes(StandardCharsets.UTF_16BE), out.toByteArray());
+  }
+}